@@ -3,8 +3,32 @@ package com.github.worldsender.mcanm;
 public class Reference {
 
 	public static final String config_reload_enabled = "enableReload";
+	public static final String config_parallel_skinning = "enableParallelSkinning";
+	public static final String config_parallel_skinning_threshold = "parallelSkinningThreshold";
+	public static final String config_pose_cache = "enablePoseCache";
+	public static final String config_pose_cache_frame_step = "poseCacheFrameStep";
+	public static final String config_pose_cache_size = "poseCacheSizeMB";
+	public static final String config_fast_bezier = "enableFastBezierInversion";
+	public static final String config_fast_bezier_tolerance = "fastBezierTolerance";
+	public static final String config_pose_prepass = "enablePosePrepass";
+	public static final String config_gpu_skinning = "enableGpuSkinning";
+	public static final String config_packed_vertices = "enablePackedVertices";
+	public static final String config_level_of_detail = "enableLevelOfDetail";
+	public static final String config_level_of_detail_distances = "levelOfDetailDistances";
 	public static final String gui_config_title = "mcanm.config.title";
 	public static final String gui_config_reload_enabled = "mcanm.config.autoreload";
+	public static final String gui_config_parallel_skinning = "mcanm.config.parallelskinning";
+	public static final String gui_config_parallel_skinning_threshold = "mcanm.config.parallelskinning.threshold";
+	public static final String gui_config_pose_cache = "mcanm.config.posecache";
+	public static final String gui_config_pose_cache_frame_step = "mcanm.config.posecache.framestep";
+	public static final String gui_config_pose_cache_size = "mcanm.config.posecache.size";
+	public static final String gui_config_fast_bezier = "mcanm.config.fastbezier";
+	public static final String gui_config_fast_bezier_tolerance = "mcanm.config.fastbezier.tolerance";
+	public static final String gui_config_pose_prepass = "mcanm.config.posecache.prepass";
+	public static final String gui_config_gpu_skinning = "mcanm.config.gpuskinning";
+	public static final String gui_config_packed_vertices = "mcanm.config.packedvertices";
+	public static final String gui_config_level_of_detail = "mcanm.config.lod";
+	public static final String gui_config_level_of_detail_distances = "mcanm.config.lod.distances";
 	public static final String[] model_suffix_list = { ".mhmd" };
 	public static final String model_type = "model_type";
 
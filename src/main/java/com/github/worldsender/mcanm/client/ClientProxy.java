@@ -3,6 +3,7 @@ package com.github.worldsender.mcanm.client;
 import com.github.worldsender.mcanm.MCAnm;
 import com.github.worldsender.mcanm.Proxy;
 import com.github.worldsender.mcanm.client.mcanmmodel.IModel;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.PoseCache;
 import com.github.worldsender.mcanm.client.model.IEntityAnimator;
 import com.github.worldsender.mcanm.client.model.ModelLoader;
 import com.github.worldsender.mcanm.client.renderer.entity.RenderAnimatedModel;
@@ -104,6 +105,7 @@ public class ClientProxy implements Proxy {
 			return;
 		}
 		MinecraftResourcePool.instance.onResourceManagerReloaded();
+		PoseCache.INSTANCE.invalidate();
 	}
 
 	@Override
@@ -22,4 +22,14 @@ public interface IRenderPass extends IRenderPassInformation {
 	 *            the resource to bind
 	 */
 	void bindTexture(ResourceLocation resLoc);
+
+	/**
+	 * The level of detail is chosen by the renderer, e.g. from the distance to the camera. Models that have fewer
+	 * levels render their coarsest one.
+	 *
+	 * @return the level of detail to render in, 0 is the full model
+	 */
+	default int getLevelOfDetail() {
+		return 0;
+	}
 }
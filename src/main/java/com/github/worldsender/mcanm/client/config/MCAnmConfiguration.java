@@ -4,6 +4,7 @@ import java.io.File;
 import java.util.List;
 
 import com.github.worldsender.mcanm.Reference;
+import com.github.worldsender.mcanm.common.animation.parts.BSplineInterpolation;
 
 import net.minecraftforge.common.config.ConfigElement;
 import net.minecraftforge.common.config.Configuration;
@@ -12,20 +13,75 @@ import net.minecraftforge.fml.client.config.IConfigElement;
 import net.minecraftforge.fml.client.event.ConfigChangedEvent.OnConfigChangedEvent;
 
 public class MCAnmConfiguration {
+	/** The most simplified levels of detail generated for each part */
+	public static final int MAX_LEVELS_OF_DETAIL = 3;
 
 	private Configuration config;
 	private Property enableReload;
+	private Property enableParallelSkinning;
+	private Property parallelSkinningThreshold;
+	private Property enablePoseCache;
+	private Property poseCacheFrameStep;
+	private Property poseCacheSize;
+	private Property enablePosePrepass;
+	private Property enableGpuSkinning;
+	private Property enablePackedVertices;
+	private Property enableLevelOfDetail;
+	private Property levelOfDetailDistances;
+	private Property enableFastBezier;
+	private Property fastBezierTolerance;
 
 	public MCAnmConfiguration(File loadFile) {
 		config = new Configuration(loadFile);
 		config.load();
 		enableReload = config.get(Configuration.CATEGORY_GENERAL, Reference.config_reload_enabled, true)
 				.setLanguageKey(Reference.gui_config_reload_enabled);
+		enableParallelSkinning = config
+				.get(Configuration.CATEGORY_GENERAL, Reference.config_parallel_skinning, false)
+				.setLanguageKey(Reference.gui_config_parallel_skinning);
+		parallelSkinningThreshold = config
+				.get(Configuration.CATEGORY_GENERAL, Reference.config_parallel_skinning_threshold, 10000)
+				.setMinValue(0).setLanguageKey(Reference.gui_config_parallel_skinning_threshold);
+		enablePoseCache = config.get(Configuration.CATEGORY_GENERAL, Reference.config_pose_cache, false)
+				.setLanguageKey(Reference.gui_config_pose_cache);
+		poseCacheFrameStep = config.get(Configuration.CATEGORY_GENERAL, Reference.config_pose_cache_frame_step, 0.25)
+				.setMinValue(0.001).setLanguageKey(Reference.gui_config_pose_cache_frame_step);
+		poseCacheSize = config.get(Configuration.CATEGORY_GENERAL, Reference.config_pose_cache_size, 16)
+				.setMinValue(0).setLanguageKey(Reference.gui_config_pose_cache_size);
+		enablePosePrepass = config.get(Configuration.CATEGORY_GENERAL, Reference.config_pose_prepass, false)
+				.setLanguageKey(Reference.gui_config_pose_prepass);
+		enableGpuSkinning = config.get(Configuration.CATEGORY_GENERAL, Reference.config_gpu_skinning, true)
+				.setLanguageKey(Reference.gui_config_gpu_skinning);
+		enablePackedVertices = config.get(Configuration.CATEGORY_GENERAL, Reference.config_packed_vertices, false)
+				.setLanguageKey(Reference.gui_config_packed_vertices);
+		enableLevelOfDetail = config.get(Configuration.CATEGORY_GENERAL, Reference.config_level_of_detail, false)
+				.setLanguageKey(Reference.gui_config_level_of_detail);
+		levelOfDetailDistances = config
+				.get(
+						Configuration.CATEGORY_GENERAL,
+						Reference.config_level_of_detail_distances,
+						new double[] { 16, 32, 48 })
+				.setMinValue(0).setMaxListLength(MAX_LEVELS_OF_DETAIL)
+				.setLanguageKey(Reference.gui_config_level_of_detail_distances);
+		enableFastBezier = config.get(Configuration.CATEGORY_GENERAL, Reference.config_fast_bezier, true)
+				.setLanguageKey(Reference.gui_config_fast_bezier);
+		fastBezierTolerance = config
+				.get(Configuration.CATEGORY_GENERAL, Reference.config_fast_bezier_tolerance, 1e-4)
+				.setMinValue(1e-6).setMaxValue(1).setLanguageKey(Reference.gui_config_fast_bezier_tolerance);
 		save();
+		applySettings();
 	}
 
 	public void onConfigChange(@SuppressWarnings("unused") OnConfigChangedEvent occe) {
 		save();
+		applySettings();
+	}
+
+	/**
+	 * Pushes the settings that are read by common code, possibly off the main thread, to where they are used.
+	 */
+	private void applySettings() {
+		BSplineInterpolation.setFastInversion(isFastBezierEnabled(), getFastBezierTolerance());
 	}
 
 	public void save() {
@@ -37,7 +93,101 @@ public class MCAnmConfiguration {
 		return this.enableReload.getBoolean();
 	}
 
+	public boolean isParallelSkinningEnabled() {
+		return this.enableParallelSkinning.getBoolean();
+	}
+
+	/**
+	 * @return the minimum number of vertices a part must have to be skinned in parallel
+	 */
+	public int getParallelSkinningThreshold() {
+		return this.parallelSkinningThreshold.getInt();
+	}
+
+	public boolean isPoseCacheEnabled() {
+		return this.enablePoseCache.getBoolean();
+	}
+
+	/**
+	 * @return the granularity in frames to which animations are rounded when looking up cached poses
+	 */
+	public float getPoseCacheFrameStep() {
+		return (float) this.poseCacheFrameStep.getDouble();
+	}
+
+	/**
+	 * @return the maximum memory in bytes used by the pose cache
+	 */
+	public long getPoseCacheSize() {
+		return this.poseCacheSize.getInt() * 1024L * 1024L;
+	}
+
+	/**
+	 * @return whether poses are evaluated in parallel before the world is rendered, only used with the pose cache
+	 */
+	public boolean isPosePrepassEnabled() {
+		return this.enablePosePrepass.getBoolean();
+	}
+
+	/**
+	 * @return whether models loaded from now on are skinned on the GPU if the context supports it
+	 */
+	public boolean isGpuSkinningEnabled() {
+		return this.enableGpuSkinning.getBoolean();
+	}
+
+	/**
+	 * @return whether vertices loaded from now on are stored with packed normals and texture coordinates
+	 */
+	public boolean isPackedVerticesEnabled() {
+		return this.enablePackedVertices.getBoolean();
+	}
+
+	public boolean isLevelOfDetailEnabled() {
+		return this.enableLevelOfDetail.getBoolean();
+	}
+
+	/**
+	 * @return the number of simplified levels of detail generated for parts loaded from now on
+	 */
+	public int getLevelOfDetailCount() {
+		if (!isLevelOfDetailEnabled()) {
+			return 0;
+		}
+		return Math.min(getLevelOfDetailDistances().length, MAX_LEVELS_OF_DETAIL);
+	}
+
+	/**
+	 * @return the distances in blocks from the camera beyond which entities are rendered one level coarser
+	 */
+	public double[] getLevelOfDetailDistances() {
+		return this.levelOfDetailDistances.getDoubleList();
+	}
+
+	public boolean isFastBezierEnabled() {
+		return this.enableFastBezier.getBoolean();
+	}
+
+	/**
+	 * @return the maximum error in frames when inverting bezier curves with the fast method
+	 */
+	public float getFastBezierTolerance() {
+		return (float) this.fastBezierTolerance.getDouble();
+	}
+
 	public void addPropertiesToDisplayList(List<IConfigElement> list) {
 		list.add(new ConfigElement(enableReload));
+		list.add(new ConfigElement(enableParallelSkinning));
+		list.add(new ConfigElement(parallelSkinningThreshold));
+		list.add(new ConfigElement(enablePoseCache));
+		list.add(new ConfigElement(poseCacheFrameStep));
+		list.add(new ConfigElement(poseCacheSize));
+		list.add(new ConfigElement(enablePosePrepass));
+		list.add(new ConfigElement(enableGpuSkinning));
+		list.add(new ConfigElement(enablePackedVertices));
+		list.add(new ConfigElement(enableLevelOfDetail));
+		list.add(new ConfigElement(levelOfDetailDistances));
+		list.add(new ConfigElement(enableFastBezier));
+		list.add(new ConfigElement(fastBezierTolerance));
 	}
 }
@@ -1,7 +1,22 @@
 package com.github.worldsender.mcanm.client.mcanmmodel;
 
 import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.PosePrepass;
+import com.github.worldsender.mcanm.client.model.IModelStateInformation;
 
 public interface IModel {
 	void render(IRenderPass renderPass);
+
+	/**
+	 * Queues the pose of the model in the state given to be evaluated before it is rendered, see {@link PosePrepass}.
+	 * Models that don't support this ignore the call.
+	 *
+	 * @param state
+	 *            the state the model will be rendered in, only read during this call
+	 * @param levelOfDetail
+	 *            the level of detail the model will be rendered in, see {@link IRenderPass#getLevelOfDetail()}
+	 * @param prepass
+	 *            the prepass to queue the pose in
+	 */
+	default void prepare(IModelStateInformation state, int levelOfDetail, PosePrepass prepass) {}
 }
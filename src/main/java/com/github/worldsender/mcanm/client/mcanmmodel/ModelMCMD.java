@@ -7,9 +7,12 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
+import com.github.worldsender.mcanm.MCAnm;
 import com.github.worldsender.mcanm.client.IRenderPass;
 import com.github.worldsender.mcanm.client.mcanmmodel.gl.IModelRenderData;
 import com.github.worldsender.mcanm.client.mcanmmodel.gl.ModelRenderDataGLArray;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.ModelRenderDataShader;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.PosePrepass;
 import com.github.worldsender.mcanm.client.mcanmmodel.stored.RawData;
 import com.github.worldsender.mcanm.client.mcanmmodel.visitor.IModelVisitable;
 import com.github.worldsender.mcanm.client.model.IModelStateInformation;
@@ -38,11 +41,15 @@ public class ModelMCMD extends ReloadableData<IModelVisitable> implements IModel
 		IModelRenderData loadFrom(IModelVisitable data, ISkeleton skelet);
 	}
 
-	private static final DataLoader LOADING_FUNC;
-
-	static {
-		// TODO: Decide depending on OpenGL capabilities?
-		LOADING_FUNC = ModelRenderDataGLArray::new;
+	/**
+	 * The capabilities of the context are only checked on the first draw, the shader model falls back to skinning on
+	 * the CPU if they are not sufficient. Read on every load so that changing the config takes effect on reload.
+	 */
+	private static DataLoader getLoadingFunc() {
+		if (MCAnm.configuration().isGpuSkinningEnabled()) {
+			return ModelRenderDataShader::new;
+		}
+		return ModelRenderDataGLArray::new;
 	}
 
 	private String artist;
@@ -67,7 +74,7 @@ public class ModelMCMD extends ReloadableData<IModelVisitable> implements IModel
 	protected void loadData(IModelVisitable data) {
 		this.artist = data.getArtist();
 		this.modelUUID = data.getModelUUID();
-		this.model = Optional.of(LOADING_FUNC.loadFrom(data, skeleton));
+		this.model = Optional.of(getLoadingFunc().loadFrom(data, skeleton));
 	}
 
 	/**
@@ -81,6 +88,11 @@ public class ModelMCMD extends ReloadableData<IModelVisitable> implements IModel
 		model.ifPresent(m -> m.render(renderPass));
 	}
 
+	@Override
+	public void prepare(IModelStateInformation state, int levelOfDetail, PosePrepass prepass) {
+		model.ifPresent(m -> m.prepare(state, levelOfDetail, prepass));
+	}
+
 	public List<BakedQuad> getAsBakedQuads(
 			IModelStateInformation currentPass,
 			Map<String, TextureAtlasSprite> slotToTex,
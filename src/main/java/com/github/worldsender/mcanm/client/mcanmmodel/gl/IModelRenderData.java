@@ -24,6 +24,19 @@ public interface IModelRenderData {
 	 */
 	public void render(IRenderPass pass);
 
+	/**
+	 * Queues the pose of the model in the state given to be evaluated in the prepass, if the model supports it. The
+	 * state is only read during this call.
+	 *
+	 * @param state
+	 *            the state the model will be rendered in
+	 * @param levelOfDetail
+	 *            the level of detail the model will be rendered in, see {@link IRenderPass#getLevelOfDetail()}
+	 * @param prepass
+	 *            the prepass to queue the pose in
+	 */
+	default void prepare(IModelStateInformation state, int levelOfDetail, PosePrepass prepass) {}
+
 	/**
 	 * The totally inefficient method of minecraft to get block data
 	 * 
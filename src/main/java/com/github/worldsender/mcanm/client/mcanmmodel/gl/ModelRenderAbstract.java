@@ -1,13 +1,16 @@
 package com.github.worldsender.mcanm.client.mcanmmodel.gl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import com.github.worldsender.mcanm.MCAnm;
 import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.config.MCAnmConfiguration;
 import com.github.worldsender.mcanm.client.mcanmmodel.parts.IPart;
 import com.github.worldsender.mcanm.client.mcanmmodel.parts.PartBuilder;
 import com.github.worldsender.mcanm.client.mcanmmodel.visitor.IMaterialVisitor;
@@ -16,13 +19,20 @@ import com.github.worldsender.mcanm.client.mcanmmodel.visitor.IModelVisitor;
 import com.github.worldsender.mcanm.client.mcanmmodel.visitor.IPartVisitor;
 import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
 import com.github.worldsender.mcanm.client.model.IModelStateInformation;
+import com.github.worldsender.mcanm.client.model.util.AnimationBlender;
+import com.github.worldsender.mcanm.client.renderer.DrawElementsTesselator;
 import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.animation.StoredAnimation;
+import com.github.worldsender.mcanm.common.skeleton.AbstractSkeleton;
 import com.github.worldsender.mcanm.common.skeleton.ISkeleton;
+import com.github.worldsender.mcanm.common.skeleton.Pose;
+import com.github.worldsender.mcanm.common.skeleton.PoseEvaluator;
 
 import net.minecraft.client.renderer.Tessellator;
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.util.ResourceLocation;
 
 public abstract class ModelRenderAbstract<P extends IPart> implements IModelRenderData {
 	private class ModelVisitor implements IModelVisitor {
@@ -84,10 +94,26 @@ public abstract class ModelRenderAbstract<P extends IPart> implements IModelRend
 		@Override
 		public void visitEnd() {
 			ModelRenderAbstract.this.parts = this.parts.toArray(new IPart[0]);
+			ModelRenderAbstract.this.isStatic = this.parts.stream().allMatch(IPart::isStatic);
+			ModelRenderAbstract.this.levelCount = this.parts.stream().mapToInt(IPart::getLevelCount).max().orElse(1);
 		}
 	}
 
 	private IPart[] parts; // May have Random order
+	/**
+	 * The parts grouped by texture, drawn instead of the parts one by one. Built on the first render, when it is known
+	 * which parts the GPU skins
+	 */
+	private PartBatch[] batches;
+	private boolean[] isBatchDrawn;
+	/** The parts that are skinned on the GPU, drawn one by one */
+	private int[] gpuSkinnedParts;
+	private boolean isStatic; // No part depends on the skeleton
+	/** The most levels of detail of any part */
+	private int levelCount;
+	// Scratch for the render thread, so that looking up a cached pose doesn't allocate
+	private final BitSet renderedPartsScratch = new BitSet();
+	private final PoseCache.Key keyScratch = new PoseCache.Key();
 	private final ISkeleton skeleton;
 	private final Function<PartBuilder, P> buildingFunc;
 
@@ -113,22 +139,173 @@ public abstract class ModelRenderAbstract<P extends IPart> implements IModelRend
 		skeleton.setup(anim, frame);
 	}
 
+	/**
+	 * Whether poses of this model are worth caching at the moment. Only called on the render thread.
+	 *
+	 * @return true if the parts of this model are skinned on the CPU
+	 */
+	protected boolean isPoseCacheable() {
+		return true;
+	}
+
 	public void setup(IModelStateInformation currAnimation) {
+		if (isStatic && !MCAnm.isDebug) {
+			// Nothing to pose, the debug view still wants the bones
+			return;
+		}
 		setupBones(currAnimation.getAnimation(), currAnimation.getFrame());
 	}
 
 	@Override
 	public void render(IRenderPass currentPass) {
-		setup(currentPass);
-		for (IPart part : this.parts) {
-			if (currentPass.shouldRenderPart(part.getName()))
-				part.render(currentPass);
+		MCAnmConfiguration config = MCAnm.configuration();
+		// The layers of a blender change between passes, its poses can't be shared
+		boolean isBlended = currentPass.getAnimation() instanceof AnimationBlender;
+		int level = clampLevel(currentPass.getLevelOfDetail());
+		if (!isStatic && !isBlended && config.isPoseCacheEnabled() && isPoseCacheable()) {
+			renderCached(currentPass, config, level);
+		} else {
+			setup(currentPass);
+			renderBatches(currentPass, getRenderedParts(currentPass), null, level);
 		}
 		if (MCAnm.isDebug) {
 			this.skeleton.debugDraw(Tessellator.getInstance());
 		}
 	}
 
+	/**
+	 * Renders the pose from the {@link PoseCache}, skinning and storing it first if it isn't cached yet. The frame is
+	 * rounded to the configured step so that the pose looks the same no matter which entity put it into the cache.
+	 */
+	private void renderCached(IRenderPass currentPass, MCAnmConfiguration config, int level) {
+		float frameStep = config.getPoseCacheFrameStep();
+		long frameIndex = Math.round(currentPass.getFrame() / frameStep);
+		BitSet renderedParts = getRenderedParts(currentPass);
+		PoseCache.Key key = keyScratch.set(this, currentPass.getAnimation(), frameIndex, renderedParts, level);
+		float[][] pose = PoseCache.INSTANCE.get(key);
+		if (pose == null) {
+			setupBones(currentPass.getAnimation(), frameIndex * frameStep);
+			pose = new float[parts.length][];
+			for (int i = renderedParts.nextSetBit(0); i >= 0; i = renderedParts.nextSetBit(i + 1)) {
+				// Static parts are not worth the memory
+				if (!parts[i].isStatic()) {
+					int length = parts[i].getVertexCount(level) * DrawElementsTesselator.FLOATS_PER_VERTEX;
+					pose[i] = PoseCache.INSTANCE.obtainBuffer(length);
+					System.arraycopy(parts[i].skin(level), 0, pose[i], 0, length);
+				}
+			}
+			PoseCache.INSTANCE.put(key.copy(), pose, config.getPoseCacheSize());
+		}
+		renderBatches(currentPass, renderedParts, pose, level);
+	}
+
+	/**
+	 * Draws the batches grouped by the texture they resolve to in the pass, so each texture is bound once.
+	 *
+	 * @param skinnedVertices
+	 *            see {@link PartBatch#render(IRenderPass, IPart[], BitSet, float[][], int)}
+	 * @param level
+	 *            the level of detail to draw
+	 */
+	private void renderBatches(IRenderPass currentPass, BitSet renderedParts, float[][] skinnedVertices, int level) {
+		if (batches == null) {
+			buildBatches();
+		}
+		for (int b = 0; b < batches.length; b++) {
+			batches[b].resolveTexture(currentPass);
+			isBatchDrawn[b] = false;
+		}
+		for (int b = 0; b < batches.length; b++) {
+			if (isBatchDrawn[b])
+				continue;
+			ResourceLocation texture = batches[b].getTexture();
+			currentPass.bindTexture(texture);
+			for (int other = b; other < batches.length; other++) {
+				if (!isBatchDrawn[other] && texture.equals(batches[other].getTexture())) {
+					batches[other].render(currentPass, parts, renderedParts, skinnedVertices, level);
+					isBatchDrawn[other] = true;
+				}
+			}
+		}
+		for (int i : gpuSkinnedParts) {
+			if (renderedParts.get(i))
+				parts[i].render(currentPass, level);
+		}
+	}
+
+	/**
+	 * Only called on the render thread, whether a part is skinned on the GPU is only known once it is about to be
+	 * drawn.
+	 */
+	private void buildBatches() {
+		batches = PartBatch.build(parts);
+		isBatchDrawn = new boolean[batches.length];
+		gpuSkinnedParts = IntStream.range(0, parts.length).filter(i -> parts[i].isSkinnedOnGpu()).toArray();
+	}
+
+	/**
+	 * Levels past the coarsest level of all parts look the same as the coarsest level, they share cached poses.
+	 */
+	private int clampLevel(int level) {
+		return Math.max(0, Math.min(level, levelCount - 1));
+	}
+
+	/**
+	 * @return the parts to render, in a scratch set that is only valid until the next call
+	 */
+	private BitSet getRenderedParts(IModelStateInformation state) {
+		BitSet renderedParts = renderedPartsScratch;
+		renderedParts.clear();
+		for (int i = 0; i < parts.length; i++) {
+			if (state.shouldRenderPart(parts[i].getName()))
+				renderedParts.set(i);
+		}
+		return renderedParts;
+	}
+
+	/**
+	 * Queues the pose for {@link #renderCached(IRenderPass, MCAnmConfiguration, int)} if it isn't cached yet. Only
+	 * stored animations are evaluated in the prepass, other animations might not be safe to sample from the workers.
+	 */
+	@Override
+	public void prepare(IModelStateInformation state, int levelOfDetail, PosePrepass prepass) {
+		MCAnmConfiguration config = MCAnm.configuration();
+		IAnimation animation = state.getAnimation();
+		if (isStatic || !config.isPoseCacheEnabled() || !isPoseCacheable() || !(animation instanceof StoredAnimation)
+				|| !(skeleton instanceof AbstractSkeleton)) {
+			return;
+		}
+		float frameStep = config.getPoseCacheFrameStep();
+		long frameIndex = Math.round(state.getFrame() / frameStep);
+		int level = clampLevel(levelOfDetail);
+		PoseCache.Key lookup = keyScratch.set(this, animation, frameIndex, getRenderedParts(state), level);
+		if (PoseCache.INSTANCE.contains(lookup) || prepass.isQueued(lookup)) {
+			return;
+		}
+		PoseCache.Key key = lookup.copy();
+		BitSet renderedParts = key.getRenderedParts();
+		long maxBytes = config.getPoseCacheSize();
+		prepass.enqueue(key, context -> {
+			AbstractSkeleton poseSkeleton = (AbstractSkeleton) skeleton;
+			PoseEvaluator evaluator = poseSkeleton.acquirePoseEvaluator();
+			try {
+				Pose pose = evaluator.getScratchPose();
+				evaluator.evaluate(animation, frameIndex * frameStep, pose);
+				float[][] vertices = new float[parts.length][];
+				for (int i = renderedParts.nextSetBit(0); i >= 0; i = renderedParts.nextSetBit(i + 1)) {
+					if (parts[i].isStatic())
+						continue;
+					int length = parts[i].getVertexCount(level) * DrawElementsTesselator.FLOATS_PER_VERTEX;
+					vertices[i] = PoseCache.INSTANCE.obtainBuffer(length);
+					parts[i].skin(pose, level, vertices[i], context);
+				}
+				PoseCache.INSTANCE.put(key, vertices, maxBytes);
+			} finally {
+				poseSkeleton.releasePoseEvaluator(evaluator);
+			}
+		});
+	}
+
 	// Totally inefficient
 	@Override
 	public List<BakedQuad> getAsBakedQuads(
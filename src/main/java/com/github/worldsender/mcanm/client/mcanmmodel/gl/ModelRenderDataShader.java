@@ -0,0 +1,23 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.gl;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.parts.PartShader;
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.IModelVisitable;
+import com.github.worldsender.mcanm.client.renderer.SkinningProgram;
+import com.github.worldsender.mcanm.common.skeleton.ISkeleton;
+
+/**
+ * Skins the model on the GPU if the context supports it, see {@link PartShader}. Falls back to the same rendering as
+ * {@link ModelRenderDataGLArray} otherwise.
+ */
+public class ModelRenderDataShader extends ModelRenderAbstract<PartShader> {
+
+	public ModelRenderDataShader(IModelVisitable data, ISkeleton skeleton) {
+		super(data, skeleton, PartShader::new);
+	}
+
+	@Override
+	protected boolean isPoseCacheable() {
+		// Nothing to save when the GPU skins
+		return !SkinningProgram.INSTANCE.isAvailable();
+	}
+}
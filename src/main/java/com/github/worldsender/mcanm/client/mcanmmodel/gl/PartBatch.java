@@ -0,0 +1,215 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.gl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.mcanmmodel.parts.IPart;
+import com.github.worldsender.mcanm.client.renderer.DrawElementsTesselator;
+
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Parts of a model that share a texture slot and are either all static or all animated, stored in one buffer so that
+ * they can be drawn together. The indices of each part are a contiguous range in the buffer, parts that are rendered
+ * one after the other are drawn with a single call, the client state is only set up once per batch.<br>
+ * The indices of all levels of detail are stored, sorted by level so that the members stay contiguous in each level.
+ */
+class PartBatch {
+	/** The largest vertex index that can be stored as unsigned short */
+	private static final int MAX_VERTICES = 0x10000;
+
+	private final String textureSlot;
+	private final boolean isStatic;
+	/** The index of each member in the parts of the model */
+	private final int[] members;
+	private final int[] firstVertices;
+	/** The first index of each member in each level of detail */
+	private final int[][] firstIndices;
+	private final int[][] indexCounts;
+	private final DrawElementsTesselator tesselator;
+	// The ranges to draw, scratch
+	private final int[] rangeStarts;
+	private final int[] rangeCounts;
+	/** Resolved for the current pass */
+	private ResourceLocation texture;
+
+	private PartBatch(IPart[] parts, List<Integer> members) {
+		IPart first = parts[members.get(0)];
+		this.textureSlot = first.getTextureSlot();
+		this.isStatic = first.isStatic();
+		int memberCount = members.size();
+		this.members = members.stream().mapToInt(Integer::intValue).toArray();
+		this.firstVertices = new int[memberCount];
+		int levelCount = 1, vertexCount = 0;
+		for (int m = 0; m < memberCount; m++) {
+			IPart part = parts[this.members[m]];
+			firstVertices[m] = vertexCount;
+			vertexCount += part.getVertexCount();
+			levelCount = Math.max(levelCount, part.getLevelCount());
+		}
+		this.firstIndices = new int[levelCount][memberCount];
+		this.indexCounts = new int[levelCount][memberCount];
+		int indexCount = 0;
+		for (int l = 0; l < levelCount; l++) {
+			for (int m = 0; m < memberCount; m++) {
+				IPart part = parts[this.members[m]];
+				if (l > 0 && part.getIndices(l) == part.getIndices(l - 1)) {
+					// Same as the previous level, don't store it twice
+					firstIndices[l][m] = firstIndices[l - 1][m];
+					indexCounts[l][m] = indexCounts[l - 1][m];
+					continue;
+				}
+				firstIndices[l][m] = indexCount;
+				indexCounts[l][m] = part.getIndices(l).length;
+				indexCount += indexCounts[l][m];
+			}
+		}
+		short[] indices = new short[indexCount];
+		for (int l = 0; l < levelCount; l++) {
+			for (int m = 0; m < memberCount; m++) {
+				IPart part = parts[this.members[m]];
+				short[] partIndices = part.getIndices(l);
+				if (l > 0 && partIndices == part.getIndices(l - 1))
+					continue;
+				for (int i = 0; i < partIndices.length; i++) {
+					indices[firstIndices[l][m] + i] = (short) ((partIndices[i] & 0xFFFF) + firstVertices[m]);
+				}
+			}
+		}
+		this.tesselator = DrawElementsTesselator.create(vertexCount, indices);
+		if (isStatic) {
+			float[] vertices = new float[vertexCount * DrawElementsTesselator.FLOATS_PER_VERTEX];
+			for (int m = 0; m < memberCount; m++) {
+				IPart part = parts[this.members[m]];
+				copyVertices(part.skin(), m, part.getVertexCount(), vertices);
+			}
+			tesselator.fill(vertices);
+		}
+		this.rangeStarts = new int[memberCount];
+		this.rangeCounts = new int[memberCount];
+	}
+
+	/**
+	 * Groups the parts into batches. Parts keep their relative order inside a batch. Parts that are skinned on the GPU
+	 * are left out, they have to be rendered on their own.
+	 *
+	 * @param parts
+	 *            the parts of a model
+	 * @return the batches, sorted by texture slot
+	 */
+	public static PartBatch[] build(IPart[] parts) {
+		Map<String, List<Integer>> groups = new LinkedHashMap<>();
+		for (int i = 0; i < parts.length; i++) {
+			IPart part = parts[i];
+			if (part.isSkinnedOnGpu())
+				continue;
+			String key = (part.isStatic() ? "static:" : "animated:") + part.getTextureSlot();
+			groups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		}
+		List<PartBatch> batches = new ArrayList<>();
+		for (List<Integer> group : groups.values()) {
+			int from = 0, vertexCount = 0;
+			for (int g = 0; g < group.size(); g++) {
+				int partVertices = parts[group.get(g)].getVertexCount();
+				if (g > from && vertexCount + partVertices > MAX_VERTICES) {
+					batches.add(new PartBatch(parts, group.subList(from, g)));
+					from = g;
+					vertexCount = 0;
+				}
+				vertexCount += partVertices;
+			}
+			batches.add(new PartBatch(parts, group.subList(from, group.size())));
+		}
+		batches.sort(Comparator.comparing(b -> b.textureSlot));
+		return batches.toArray(new PartBatch[batches.size()]);
+	}
+
+	/**
+	 * Resolves the texture of this batch for the pass given, see {@link #getTexture()}.
+	 */
+	public void resolveTexture(IRenderPass currentPass) {
+		this.texture = currentPass.getActualResourceLocation(textureSlot);
+	}
+
+	/**
+	 * @return the texture resolved by the last call to {@link #resolveTexture(IRenderPass)}
+	 */
+	public ResourceLocation getTexture() {
+		return texture;
+	}
+
+	/**
+	 * Draws the members that are rendered in the pass. The texture of the batch must be bound already.
+	 *
+	 * @param currentPass
+	 *            the current pass
+	 * @param parts
+	 *            the parts of the model
+	 * @param renderedParts
+	 *            the indices of the parts to render
+	 * @param skinnedVertices
+	 *            the skinned vertices of each part in the level of detail, e.g. from the {@link PoseCache}. Parts
+	 *            without an entry are skinned. May be null
+	 * @param level
+	 *            the level of detail, members with fewer levels draw their coarsest one
+	 */
+	public void render(
+			IRenderPass currentPass,
+			IPart[] parts,
+			BitSet renderedParts,
+			float[][] skinnedVertices,
+			int level) {
+		level = Math.min(level, firstIndices.length - 1);
+		int[] levelFirstIndices = firstIndices[level], levelIndexCounts = indexCounts[level];
+		int ranges = 0;
+		for (int m = 0; m < members.length; m++) {
+			int index = members[m];
+			IPart part = parts[index];
+			if (!renderedParts.get(index))
+				continue;
+			if (ranges > 0 && rangeStarts[ranges - 1] + rangeCounts[ranges - 1] == levelFirstIndices[m]) {
+				rangeCounts[ranges - 1] += levelIndexCounts[m];
+			} else {
+				rangeStarts[ranges] = levelFirstIndices[m];
+				rangeCounts[ranges] = levelIndexCounts[m];
+				ranges++;
+			}
+		}
+		if (ranges == 0) {
+			return;
+		}
+		if (isStatic) {
+			tesselator.redraw(rangeStarts, rangeCounts, ranges);
+			return;
+		}
+		// Streamed straight into the tesselator. Vertices of members that are not rendered or not used by the level are
+		// skipped and stale, but they are not drawn either
+		tesselator.startDrawing();
+		for (int m = 0; m < members.length; m++) {
+			int index = members[m];
+			IPart part = parts[index];
+			int skipped = part.getVertexCount();
+			if (renderedParts.get(index)) {
+				float[] skinned = skinnedVertices == null ? null : skinnedVertices[index];
+				int vertexCount = part.getVertexCount(level);
+				tesselator.addVertices(
+						skinned == null ? part.skin(level) : skinned,
+						0,
+						vertexCount * DrawElementsTesselator.FLOATS_PER_VERTEX);
+				skipped -= vertexCount;
+			}
+			tesselator.skipVertices(skipped);
+		}
+		tesselator.draw(rangeStarts, rangeCounts, ranges);
+	}
+
+	private void copyVertices(float[] partVertices, int member, int vertexCount, float[] dst) {
+		int offset = firstVertices[member] * DrawElementsTesselator.FLOATS_PER_VERTEX;
+		System.arraycopy(partVertices, 0, dst, offset, vertexCount * DrawElementsTesselator.FLOATS_PER_VERTEX);
+	}
+}
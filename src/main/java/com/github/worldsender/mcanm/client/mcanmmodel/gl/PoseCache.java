@@ -0,0 +1,258 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.gl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation;
+
+/**
+ * A least-recently-used cache of skinned vertex data, shared between all models. Entities that play the same animation
+ * at (nearly) the same frame can reuse the vertices skinned for the first of them instead of setting up the skeleton
+ * and skinning all parts again.<br>
+ * The memory used by the cached vertices is bounded, the least recently used poses are dropped first. The cache has to
+ * be invalidated whenever models, skeletons or animations are reloaded.<br>
+ * The arrays of dropped poses are kept and handed out again by {@link #obtainBuffer(int)}, so that skinning new poses
+ * doesn't allocate once the cache is full. Poses returned by {@link #get(Key)} are thus only valid until the next
+ * {@link #put(Key, float[][], long)}.
+ */
+public class PoseCache {
+	public static final PoseCache INSTANCE = new PoseCache();
+
+	/**
+	 * Identifies a skinned pose. The model is compared by identity, a reloaded model never hits entries of its previous
+	 * incarnation.<br>
+	 * Keys used for lookups may be scratch keys that are {@link #set(IModelRenderData, IAnimation, long, BitSet, int)
+	 * set} again for each lookup. Keys that are stored must not change, store a {@link #copy()} of a scratch key.
+	 */
+	public static final class Key {
+		private IModelRenderData model;
+		private IAnimation animation;
+		private long frameIndex;
+		private BitSet renderedParts;
+		private int levelOfDetail;
+		private int hash;
+
+		/**
+		 * Creates a scratch key, it has to be set before it is used.
+		 */
+		Key() {}
+
+		public Key(
+				IModelRenderData model,
+				IAnimation animation,
+				long frameIndex,
+				BitSet renderedParts,
+				int levelOfDetail) {
+			set(model, animation, frameIndex, renderedParts, levelOfDetail);
+		}
+
+		/**
+		 * Changes a scratch key to identify another pose.
+		 *
+		 * @param renderedParts
+		 *            kept by the key, not copied
+		 * @return this
+		 */
+		Key set(
+				IModelRenderData model,
+				IAnimation animation,
+				long frameIndex,
+				BitSet renderedParts,
+				int levelOfDetail) {
+			this.model = Objects.requireNonNull(model);
+			this.animation = animation;
+			this.frameIndex = frameIndex;
+			this.renderedParts = Objects.requireNonNull(renderedParts);
+			this.levelOfDetail = levelOfDetail;
+			this.hash = Objects.hash(
+					System.identityHashCode(model),
+					animation,
+					frameIndex,
+					renderedParts,
+					levelOfDetail);
+			return this;
+		}
+
+		/**
+		 * @return a key for the same pose that doesn't share the parts with this key
+		 */
+		public Key copy() {
+			return new Key(model, animation, frameIndex, (BitSet) renderedParts.clone(), levelOfDetail);
+		}
+
+		/**
+		 * @return the parts of the model that are rendered in the pose, must not be modified
+		 */
+		public BitSet getRenderedParts() {
+			return renderedParts;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return model == other.model && frameIndex == other.frameIndex && levelOfDetail == other.levelOfDetail
+					&& Objects.equals(animation, other.animation) && renderedParts.equals(other.renderedParts);
+		}
+	}
+
+	private final LinkedHashMap<Key, float[][]> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long usedBytes = 0;
+	/** The arrays of dropped poses, at most as many bytes as the budget of the last put */
+	private final List<float[]> freeBuffers = new ArrayList<>();
+	private long freeBytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	private PoseCache() {}
+
+	private static long sizeOf(float[][] pose) {
+		long size = 0;
+		for (float[] partVertices : pose) {
+			if (partVertices != null)
+				size += 4L * partVertices.length;
+		}
+		return size;
+	}
+
+	/**
+	 * Looks up a previously stored pose and counts the hit or miss.
+	 *
+	 * @param key
+	 *            the pose to look up
+	 * @return the vertices of each part, or null if the pose is not cached
+	 */
+	public synchronized float[][] get(Key key) {
+		float[][] pose = entries.get(key);
+		if (pose == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return pose;
+	}
+
+	/**
+	 * Checks if a pose is cached without counting a hit or miss and without marking it as used.
+	 *
+	 * @param key
+	 *            the pose to look up
+	 * @return true if the pose is cached
+	 */
+	public synchronized boolean contains(Key key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Hands out an array of a dropped pose if there is one with the length given, otherwise allocates one.
+	 *
+	 * @param length
+	 *            the length of the array
+	 * @return an array of that length, with any content
+	 */
+	public synchronized float[] obtainBuffer(int length) {
+		// Most recently dropped first, the parts of a pose are usually dropped together
+		for (int i = freeBuffers.size() - 1; i >= 0; i--) {
+			float[] buffer = freeBuffers.get(i);
+			if (buffer.length == length) {
+				float[] last = freeBuffers.remove(freeBuffers.size() - 1);
+				if (i < freeBuffers.size()) {
+					freeBuffers.set(i, last);
+				}
+				freeBytes -= 4L * length;
+				return buffer;
+			}
+		}
+		return new float[length];
+	}
+
+	private void recycle(float[][] pose, long maxBytes) {
+		for (float[] partVertices : pose) {
+			if (partVertices == null || freeBytes + 4L * partVertices.length > maxBytes) {
+				continue;
+			}
+			freeBuffers.add(partVertices);
+			freeBytes += 4L * partVertices.length;
+		}
+	}
+
+	/**
+	 * Stores a pose, evicting the least recently used poses until the cache fits into the budget given. The arrays are
+	 * stored as is and must not be modified afterwards, they may come from {@link #obtainBuffer(int)}.
+	 *
+	 * @param key
+	 *            the pose
+	 * @param pose
+	 *            the skinned vertices of each part, null for parts that are not cached
+	 * @param maxBytes
+	 *            the maximum memory that may be used by all cached poses
+	 */
+	public synchronized void put(Key key, float[][] pose, long maxBytes) {
+		long size = sizeOf(pose);
+		if (size > maxBytes) {
+			return;
+		}
+		float[][] previous = entries.put(key, pose);
+		if (previous != null) {
+			usedBytes -= sizeOf(previous);
+			if (previous != pose) {
+				recycle(previous, maxBytes);
+			}
+		}
+		usedBytes += size;
+		Iterator<Map.Entry<Key, float[][]>> eldest = entries.entrySet().iterator();
+		while (usedBytes > maxBytes) {
+			float[][] dropped = eldest.next().getValue();
+			usedBytes -= sizeOf(dropped);
+			eldest.remove();
+			recycle(dropped, maxBytes);
+		}
+	}
+
+	/**
+	 * Drops all cached poses and their arrays. Called when resources are reloaded.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+		usedBytes = 0;
+		freeBuffers.clear();
+		freeBytes = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format(
+				"PoseCache[poses=%d, bytes=%d, hits=%d, misses=%d]",
+				entries.size(),
+				usedBytes,
+				hits,
+				misses);
+	}
+}
@@ -0,0 +1,109 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.gl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.parts.SkinningContext;
+import com.github.worldsender.mcanm.client.mcanmmodel.parts.WorkerPool;
+
+/**
+ * Poses and skins the models of the animated entities that are about to be rendered, before the world is rendered and
+ * in parallel on the {@link WorkerPool}. The results are put into the {@link PoseCache}, where the render thread finds
+ * them and only has to submit the vertices to OpenGL.<br>
+ * Models queue their poses from the render thread, poses that are already queued are only evaluated once. Whatever is
+ * not evaluated in the prepass, e.g. because it didn't fit into the cache, is still rendered the usual way.
+ */
+public class PosePrepass {
+	public static final PosePrepass INSTANCE = new PosePrepass();
+	/** The queued poses are split into chunks of at most this size */
+	private static final int POSES_PER_TASK = 2;
+
+	/**
+	 * Evaluates a pose and puts it into the {@link PoseCache}, called from a worker thread.
+	 */
+	@FunctionalInterface
+	public static interface Evaluation {
+		/**
+		 * @param context
+		 *            the scratch of the worker, only to be used until this returns
+		 */
+		void evaluate(SkinningContext context);
+	}
+
+	private class EvaluationTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Evaluation[] evaluations;
+		private final int from;
+		private final int to;
+
+		public EvaluationTask(Evaluation[] evaluations, int from, int to) {
+			this.evaluations = evaluations;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= POSES_PER_TASK) {
+				SkinningContext context = contexts.poll();
+				if (context == null) {
+					context = new SkinningContext();
+				}
+				try {
+					for (int i = from; i < to; i++) {
+						evaluations[i].evaluate(context);
+					}
+				} finally {
+					contexts.offer(context);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new EvaluationTask(evaluations, from, middle), new EvaluationTask(evaluations, middle, to));
+		}
+	}
+
+	private final Map<PoseCache.Key, Evaluation> queued = new LinkedHashMap<>();
+	/** At most one per worker, reused by all prepasses */
+	private final Queue<SkinningContext> contexts = new ConcurrentLinkedQueue<>();
+
+	private PosePrepass() {}
+
+	/**
+	 * Queues a pose to be evaluated with the next {@link #run()}. Only call this from the render thread.
+	 *
+	 * @param key
+	 *            the pose to evaluate, must not change afterwards
+	 * @param evaluation
+	 *            evaluates the pose and puts it into the {@link PoseCache}
+	 * @return false if the pose was already queued
+	 */
+	public boolean enqueue(PoseCache.Key key, Evaluation evaluation) {
+		return queued.putIfAbsent(key, evaluation) == null;
+	}
+
+	/**
+	 * @param key
+	 *            the pose
+	 * @return true if the pose is queued to be evaluated with the next {@link #run()}
+	 */
+	public boolean isQueued(PoseCache.Key key) {
+		return queued.containsKey(key);
+	}
+
+	/**
+	 * Evaluates all queued poses in parallel and returns when all of them are done. Only call this from the render
+	 * thread.
+	 */
+	public void run() {
+		if (queued.isEmpty()) {
+			return;
+		}
+		Evaluation[] evaluations = queued.values().toArray(new Evaluation[queued.size()]);
+		queued.clear();
+		WorkerPool.POOL.invoke(new EvaluationTask(evaluations, 0, evaluations.length));
+	}
+}
@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.renderer.DrawElementsTesselator;
+import com.github.worldsender.mcanm.common.skeleton.Pose;
 
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
@@ -13,6 +15,86 @@ public interface IPart {
 
 	void render(IRenderPass currentPass);
 
+	/**
+	 * Renders a level of detail of this part, see {@link #getLevelCount()}.
+	 *
+	 * @param currentPass
+	 * @param level
+	 *            the level of detail, levels past the coarsest one render the coarsest one
+	 */
+	default void render(IRenderPass currentPass, int level) {
+		render(currentPass);
+	}
+
+	/**
+	 * Skins this part in the current pose of the skeleton. The returned array is owned by the part and is overwritten
+	 * by the next call.
+	 *
+	 * @return the skinned vertices, see {@link DrawElementsTesselator#FLOATS_PER_VERTEX} for the layout
+	 */
+	float[] skin();
+
+	/**
+	 * Skins this part in the pose given into a new array. The state of the part is not touched, this may be called
+	 * from any thread.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this part was built with
+	 * @return the skinned vertices, see {@link DrawElementsTesselator#FLOATS_PER_VERTEX} for the layout
+	 */
+	float[] skin(Pose pose);
+
+	/**
+	 * Same as {@link #skin()} but only the vertices used by the level of detail are skinned, the others are stale.
+	 *
+	 * @param level
+	 *            the level of detail, levels past the coarsest one skin the coarsest one
+	 * @return the skinned vertices
+	 */
+	default float[] skin(int level) {
+		return skin();
+	}
+
+	/**
+	 * Same as {@link #skin(Pose)} but only the vertices used by the level of detail are skinned.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this part was built with
+	 * @param level
+	 *            the level of detail, levels past the coarsest one skin the coarsest one
+	 * @return the skinned vertices, the array may only be large enough for those
+	 */
+	default float[] skin(Pose pose, int level) {
+		return skin(pose);
+	}
+
+	/**
+	 * Same as {@link #skin(Pose, int)} but writes into the array given. Parts that skin on the CPU take their scratch
+	 * from the context instead of allocating it.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this part was built with
+	 * @param level
+	 *            the level of detail, levels past the coarsest one skin the coarsest one
+	 * @param out
+	 *            the array to write to, must hold at least {@link #getVertexCount(int)} vertices
+	 * @param context
+	 *            the scratch of the calling thread
+	 */
+	default void skin(Pose pose, int level, float[] out, SkinningContext context) {
+		float[] vertices = skin(pose, level);
+		System.arraycopy(vertices, 0, out, 0, getVertexCount(level) * DrawElementsTesselator.FLOATS_PER_VERTEX);
+	}
+
+	/**
+	 * Renders this part with vertices previously returned from {@link #skin()}, possibly by an earlier call.
+	 *
+	 * @param currentPass
+	 * @param vertices
+	 *            the skinned vertices
+	 */
+	void draw(IRenderPass currentPass, float[] vertices);
+
 	/**
 	 * The totally inefficient way minecraft wants us to render item models.
 	 * 
@@ -23,4 +105,63 @@ public interface IPart {
 	void getAsBakedQuads(Map<String, TextureAtlasSprite> slotToTex, VertexFormat format, List<BakedQuad> out);
 
 	String getName();
+
+	/**
+	 * @return the texture slot of this part, to be resolved by {@link IRenderPass#getActualResourceLocation(String)}
+	 */
+	String getTextureSlot();
+
+	/**
+	 * @return the number of vertices returned by {@link #skin()}
+	 */
+	int getVertexCount();
+
+	/**
+	 * @return the indices of the triangles of this part into the vertices returned by {@link #skin()}, to be
+	 *         interpreted as unsigned. Must not be modified.
+	 */
+	short[] getIndices();
+
+	/**
+	 * @return the number of levels of detail of this part, at least one. Level 0 is the full mesh, each further level
+	 *         is coarser than the previous one
+	 */
+	default int getLevelCount() {
+		return 1;
+	}
+
+	/**
+	 * @param level
+	 *            the level of detail, levels past the coarsest one return the coarsest one
+	 * @return the number of vertices used by the level, these are always the first vertices
+	 */
+	default int getVertexCount(int level) {
+		return getVertexCount();
+	}
+
+	/**
+	 * @param level
+	 *            the level of detail, levels past the coarsest one return the coarsest one
+	 * @return the indices of the triangles of the level, see {@link #getIndices()}
+	 */
+	default short[] getIndices(int level) {
+		return getIndices();
+	}
+
+	/**
+	 * Parts skinned on the GPU have to be drawn with {@link #render(IRenderPass)}, their vertices can't be drawn
+	 * together with those of other parts.
+	 *
+	 * @return whether the part is currently skinned on the GPU, only valid on the render thread
+	 */
+	default boolean isSkinnedOnGpu() {
+		return false;
+	}
+
+	/**
+	 * A static part is not affected by the skeleton at all and looks the same in every pose.
+	 *
+	 * @return true if the part doesn't depend on the skeleton's pose
+	 */
+	boolean isStatic();
 }
@@ -0,0 +1,220 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reorders the triangles and vertices of a mesh for the GPU and the skinning loop. The triangles are sorted for the
+ * post-transform vertex cache with the algorithm of Tom Forsyth ("Linear-Speed Vertex Cache Optimisation"). The
+ * vertices are then sorted by their first use, so that both the GPU and the CPU fetch them mostly in order.<br>
+ * Levels of detail generated by the {@link MeshSimplifier} are sorted together. The vertices used by the coarsest level
+ * come first, so the vertices used by each level are a prefix of all vertices and skinning can stop early.
+ */
+public final class MeshOptimizer {
+	/** The size of the simulated cache, larger than most real caches as recommended by the paper */
+	private static final int CACHE_SIZE = 32;
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	private static final float LAST_TRIANGLE_SCORE = 0.75f;
+	private static final float VALENCE_BOOST_SCALE = 2.0f;
+	private static final float VALENCE_BOOST_POWER = 0.5f;
+
+	private MeshOptimizer() {}
+
+	/**
+	 * Reorders the triangles of each level of the mesh and then its vertices, see
+	 * {@link #optimizeTriangleOrder(short[], int)} and {@link #optimizeVertexOrder(int, short[][])}.
+	 *
+	 * @param points
+	 *            the vertices of the mesh, reordered in place
+	 * @param levels
+	 *            the indices of the triangles of each level, finest first, to be interpreted as unsigned. Each level
+	 *            must only use vertices used by the finer levels. Levels may share arrays
+	 * @return the new indices of each level into the reordered vertices, levels that shared arrays still do
+	 */
+	public static <T> short[][] optimize(List<T> points, short[]... levels) {
+		int vertexCount = points.size();
+		short[][] optimized = new short[levels.length][];
+		short[][] coarsestFirst = new short[levels.length][];
+		for (int l = 0; l < levels.length; l++) {
+			boolean isShared = l > 0 && levels[l] == levels[l - 1];
+			optimized[l] = isShared ? optimized[l - 1] : optimizeTriangleOrder(levels[l], vertexCount);
+			coarsestFirst[levels.length - 1 - l] = optimized[l];
+		}
+		int[] newIndices = optimizeVertexOrder(vertexCount, coarsestFirst);
+		List<T> oldPoints = new ArrayList<>(points);
+		for (int v = 0; v < vertexCount; v++) {
+			points.set(newIndices[v], oldPoints.get(v));
+		}
+		for (int l = 0; l < levels.length; l++) {
+			if (l > 0 && optimized[l] == optimized[l - 1])
+				continue;
+			short[] indices = optimized[l];
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = (short) newIndices[indices[i] & 0xFFFF];
+			}
+		}
+		return optimized;
+	}
+
+	/**
+	 * Sorts the triangles so that consecutive triangles share as many vertices as possible.
+	 *
+	 * @param indices
+	 *            the indices of the triangles, to be interpreted as unsigned
+	 * @param vertexCount
+	 *            the number of vertices of the mesh
+	 * @return the indices of the same triangles in the new order, the winding of each triangle is kept
+	 */
+	public static short[] optimizeTriangleOrder(short[] indices, int vertexCount) {
+		int triangleCount = indices.length / 3;
+		// The triangles using each vertex, the active ones of vertex v are the entries
+		// [adjacencyOffsets[v], adjacencyOffsets[v] + activeTriangles[v])
+		int[] activeTriangles = new int[vertexCount];
+		for (int i = 0; i < triangleCount * 3; i++) {
+			activeTriangles[indices[i] & 0xFFFF]++;
+		}
+		int[] adjacencyOffsets = new int[vertexCount + 1];
+		for (int v = 0; v < vertexCount; v++) {
+			adjacencyOffsets[v + 1] = adjacencyOffsets[v] + activeTriangles[v];
+		}
+		int[] adjacency = new int[adjacencyOffsets[vertexCount]];
+		int[] fill = Arrays.copyOf(adjacencyOffsets, vertexCount);
+		for (int i = 0; i < triangleCount * 3; i++) {
+			adjacency[fill[indices[i] & 0xFFFF]++] = i / 3;
+		}
+
+		int[] cachePositions = new int[vertexCount];
+		Arrays.fill(cachePositions, -1);
+		float[] vertexScores = new float[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			vertexScores[v] = vertexScore(-1, activeTriangles[v]);
+		}
+		boolean[] isEmitted = new boolean[triangleCount];
+
+		short[] out = new short[triangleCount * 3];
+		// Three more entries for the vertices of the triangle that is added
+		int[] cache = new int[CACHE_SIZE + 3], nextCache = new int[CACHE_SIZE + 3];
+		int cacheSize = 0;
+		int bestTriangle = -1;
+		int scanCursor = 0;
+		for (int emitted = 0; emitted < triangleCount; emitted++) {
+			if (bestTriangle == -1) {
+				// Nothing adjacent to the cache, continue with the next triangle not emitted yet
+				while (isEmitted[scanCursor]) {
+					scanCursor++;
+				}
+				bestTriangle = scanCursor;
+			}
+			int t = bestTriangle;
+			isEmitted[t] = true;
+			System.arraycopy(indices, t * 3, out, emitted * 3, 3);
+
+			int nextSize = 0;
+			for (int c = 0; c < 3; c++) {
+				int v = indices[t * 3 + c] & 0xFFFF;
+				// Remove the triangle from the active ones of the vertex
+				int first = adjacencyOffsets[v], last = first + activeTriangles[v] - 1;
+				for (int a = first; a <= last; a++) {
+					if (adjacency[a] == t) {
+						adjacency[a] = adjacency[last];
+						adjacency[last] = t;
+						activeTriangles[v]--;
+						break;
+					}
+				}
+				if (cachePositions[v] != -2) {
+					nextCache[nextSize++] = v;
+					// Mark as already in the next cache
+					cachePositions[v] = -2;
+				}
+			}
+			for (int c = 0; c < cacheSize; c++) {
+				int v = cache[c];
+				if (cachePositions[v] != -2) {
+					nextCache[nextSize++] = v;
+					cachePositions[v] = -2;
+				}
+			}
+			int[] swap = cache;
+			cache = nextCache;
+			nextCache = swap;
+			for (int c = 0; c < nextSize; c++) {
+				int v = cache[c];
+				cachePositions[v] = c < CACHE_SIZE ? c : -1;
+				vertexScores[v] = vertexScore(cachePositions[v], activeTriangles[v]);
+			}
+			cacheSize = Math.min(nextSize, CACHE_SIZE);
+
+			bestTriangle = -1;
+			float bestScore = -1;
+			for (int c = 0; c < nextSize; c++) {
+				int v = cache[c];
+				for (int a = adjacencyOffsets[v]; a < adjacencyOffsets[v] + activeTriangles[v]; a++) {
+					int adjacent = adjacency[a];
+					float score = triangleScore(indices, adjacent, vertexScores);
+					if (score > bestScore) {
+						bestScore = score;
+						bestTriangle = adjacent;
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Orders the vertices by their first use in the triangles. Vertices that are not used come last.
+	 *
+	 * @param vertexCount
+	 *            the number of vertices of the mesh
+	 * @param indices
+	 *            the indices of the triangles, to be interpreted as unsigned. Several arrays are walked one after
+	 *            the other
+	 * @return the new index of each vertex
+	 */
+	public static int[] optimizeVertexOrder(int vertexCount, short[]... indices) {
+		int[] newIndices = new int[vertexCount];
+		Arrays.fill(newIndices, -1);
+		int next = 0;
+		for (short[] triangles : indices) {
+			for (short index : triangles) {
+				int v = index & 0xFFFF;
+				if (newIndices[v] == -1) {
+					newIndices[v] = next++;
+				}
+			}
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			if (newIndices[v] == -1) {
+				newIndices[v] = next++;
+			}
+		}
+		return newIndices;
+	}
+
+	private static float triangleScore(short[] indices, int t, float[] vertexScores) {
+		return vertexScores[indices[t * 3] & 0xFFFF] + vertexScores[indices[t * 3 + 1] & 0xFFFF]
+				+ vertexScores[indices[t * 3 + 2] & 0xFFFF];
+	}
+
+	private static float vertexScore(int cachePosition, int activeTriangles) {
+		if (activeTriangles == 0) {
+			// Not needed anymore
+			return -1;
+		}
+		float score = 0;
+		if (cachePosition >= 0) {
+			if (cachePosition < 3) {
+				// Part of the last triangle, the exact position doesn't matter
+				score = LAST_TRIANGLE_SCORE;
+			} else {
+				float scaler = 1.0f / (CACHE_SIZE - 3);
+				score = (float) Math.pow(1.0f - (cachePosition - 3) * scaler, CACHE_DECAY_POWER);
+			}
+		}
+		// Prefer vertices with few triangles left, so that they leave the mesh early
+		score += VALENCE_BOOST_SCALE * (float) Math.pow(activeTriangles, -VALENCE_BOOST_POWER);
+		return score;
+	}
+}
@@ -0,0 +1,441 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.BoneBinding;
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
+
+/**
+ * Generates simplified levels of detail of a mesh by collapsing edges, ordered by the quadric error metric of Garland
+ * and Heckbert. A vertex is always collapsed onto one of its neighbours, so all levels use the original vertices and
+ * the vertices used by a level are a subset of those used by the finer levels.<br>
+ * Vertices on the border of the mesh are never moved. The exporter splits vertices along UV seams, so this keeps the
+ * seams intact. Vertices are only collapsed onto vertices with similar bone bindings, so that the simplified mesh still
+ * deforms like the original.
+ */
+public final class MeshSimplifier {
+	/** Parts with fewer triangles are not simplified */
+	private static final int MIN_TRIANGLES = 32;
+	/** The largest summed difference of the bone weights of two vertices that may be collapsed */
+	private static final float MAX_BINDING_DIFFERENCE = 0.5f;
+	/** The cost of a full binding difference, relative to the squared size of the mesh */
+	private static final double BINDING_PENALTY = 1e-3;
+	/** Collapses that turn a triangle by more than about 80 degrees are rejected */
+	private static final double MIN_NORMAL_COSINE = 0.2;
+
+	private static class Collapse implements Comparable<Collapse> {
+		private final double cost;
+		private final int from;
+		private final int to;
+		private final int version;
+
+		public Collapse(double cost, int from, int to, int version) {
+			this.cost = cost;
+			this.from = from;
+			this.to = to;
+			this.version = version;
+		}
+
+		@Override
+		public int compareTo(Collapse o) {
+			return Double.compare(cost, o.cost);
+		}
+	}
+
+	private final int vertexCount;
+	private final double[] positions;
+	/** The symmetric 4x4 error quadric of each vertex, 10 entries per vertex */
+	private final double[] quadrics;
+	/** Sorted by bone */
+	private final int[][] bindingBones;
+	/** Normalized to sum up to one */
+	private final float[][] bindingWeights;
+	private final boolean[] isLocked;
+	private final boolean[] isCollapsed;
+	private final int[] versions;
+	private final int[] triangles;
+	private final boolean[] isTriangleAlive;
+	private int aliveTriangles;
+	/** The triangles using each vertex, may contain dead triangles */
+	private final int[][] vertexTriangles;
+	private final int[] vertexTriangleCounts;
+	private final double bindingPenalty;
+	private final PriorityQueue<Collapse> collapses = new PriorityQueue<>();
+	// Scratch for the link condition
+	private final int[] marks;
+	private int mark = 0;
+
+	private MeshSimplifier(List<TesselationPoint> points, short[] indices) {
+		int count = points.size();
+		this.vertexCount = count;
+		this.positions = new double[count * 3];
+		this.bindingBones = new int[count][];
+		this.bindingWeights = new float[count][];
+		double[] min = { Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE };
+		double[] max = { -Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int v = 0; v < count; v++) {
+			TesselationPoint point = points.get(v);
+			positions[v * 3] = point.coords.x;
+			positions[v * 3 + 1] = point.coords.y;
+			positions[v * 3 + 2] = point.coords.z;
+			for (int c = 0; c < 3; c++) {
+				min[c] = Math.min(min[c], positions[v * 3 + c]);
+				max[c] = Math.max(max[c], positions[v * 3 + c]);
+			}
+			readBindings(point.boneBindings, v);
+		}
+		double diagonalSquared = 0;
+		for (int c = 0; c < 3; c++) {
+			diagonalSquared += count == 0 ? 0 : (max[c] - min[c]) * (max[c] - min[c]);
+		}
+		this.bindingPenalty = BINDING_PENALTY * diagonalSquared;
+
+		int triangleCount = indices.length / 3;
+		this.triangles = new int[triangleCount * 3];
+		this.isTriangleAlive = new boolean[triangleCount];
+		this.vertexTriangles = new int[count][];
+		this.vertexTriangleCounts = new int[count];
+		this.quadrics = new double[count * 10];
+		for (int t = 0; t < triangleCount; t++) {
+			int a = indices[t * 3] & 0xFFFF, b = indices[t * 3 + 1] & 0xFFFF, c = indices[t * 3 + 2] & 0xFFFF;
+			triangles[t * 3] = a;
+			triangles[t * 3 + 1] = b;
+			triangles[t * 3 + 2] = c;
+			if (a == b || b == c || c == a) {
+				// Degenerate, doesn't show up anyway
+				continue;
+			}
+			isTriangleAlive[t] = true;
+			aliveTriangles++;
+			addTriangle(a, t);
+			addTriangle(b, t);
+			addTriangle(c, t);
+			addPlaneQuadric(a, b, c);
+		}
+		this.isLocked = findBorderVertices(triangleCount);
+		this.isCollapsed = new boolean[count];
+		this.versions = new int[count];
+		this.marks = new int[count];
+	}
+
+	/**
+	 * Generates the levels of detail of a mesh. Each level has about half the triangles of the previous one, unless
+	 * the mesh can't be simplified any further.
+	 *
+	 * @param points
+	 *            the vertices of the mesh
+	 * @param indices
+	 *            the indices of the triangles, to be interpreted as unsigned
+	 * @param levelCount
+	 *            the number of simplified levels to generate
+	 * @return the indices of each level into the same vertices, starting with the full mesh at index 0. Levels that
+	 *         couldn't be simplified share the array of the previous level
+	 */
+	public static short[][] simplify(List<TesselationPoint> points, short[] indices, int levelCount) {
+		short[][] levels = new short[levelCount + 1][];
+		levels[0] = indices;
+		if (indices.length / 3 < MIN_TRIANGLES) {
+			Arrays.fill(levels, indices);
+			return levels;
+		}
+		MeshSimplifier simplifier = new MeshSimplifier(points, indices);
+		simplifier.queueAllCollapses();
+		for (int level = 1; level <= levelCount; level++) {
+			int remaining = simplifier.aliveTriangles;
+			simplifier.collapseUntil((indices.length / 3) >> level);
+			levels[level] = simplifier.aliveTriangles == remaining ? levels[level - 1] : simplifier.getIndices();
+		}
+		return levels;
+	}
+
+	private void readBindings(BoneBinding[] bindings, int v) {
+		Map<Integer, Float> weights = new HashMap<>();
+		float summed = 0;
+		for (BoneBinding binding : bindings) {
+			if (binding.bindingValue <= 0.0f)
+				continue;
+			weights.merge(Byte.toUnsignedInt(binding.boneIndex), binding.bindingValue, Float::sum);
+			summed += binding.bindingValue;
+		}
+		int[] bones = weights.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+		float[] normalized = new float[bones.length];
+		for (int b = 0; b < bones.length; b++) {
+			normalized[b] = weights.get(bones[b]) / summed;
+		}
+		bindingBones[v] = bones;
+		bindingWeights[v] = normalized;
+	}
+
+	private void addTriangle(int v, int t) {
+		int[] adjacent = vertexTriangles[v];
+		int count = vertexTriangleCounts[v];
+		if (adjacent == null) {
+			adjacent = vertexTriangles[v] = new int[4];
+		} else if (count == adjacent.length) {
+			adjacent = vertexTriangles[v] = Arrays.copyOf(adjacent, count * 2);
+		}
+		adjacent[count] = t;
+		vertexTriangleCounts[v]++;
+	}
+
+	/**
+	 * Adds the quadric of the plane of the triangle to its vertices, weighted by the area of the triangle.
+	 */
+	private void addPlaneQuadric(int a, int b, int c) {
+		double[] n = normal(a, b, c, positions[b * 3], positions[b * 3 + 1], positions[b * 3 + 2]);
+		double length = Math.sqrt(n[0] * n[0] + n[1] * n[1] + n[2] * n[2]);
+		if (length == 0) {
+			return;
+		}
+		double area = length / 2;
+		double nx = n[0] / length, ny = n[1] / length, nz = n[2] / length;
+		double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+		double[] plane = { nx, ny, nz, d };
+		for (int v : new int[] { a, b, c }) {
+			int o = v * 10;
+			for (int i = 0; i < 4; i++) {
+				for (int j = i; j < 4; j++) {
+					quadrics[o++] += area * plane[i] * plane[j];
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the unnormalized normal of the triangle abc, with b moved to (bx, by, bz)
+	 */
+	private double[] normal(int a, int b, int c, double bx, double by, double bz) {
+		double ax = positions[a * 3], ay = positions[a * 3 + 1], az = positions[a * 3 + 2];
+		double cx = positions[c * 3], cy = positions[c * 3 + 1], cz = positions[c * 3 + 2];
+		double ux = bx - ax, uy = by - ay, uz = bz - az;
+		double vx = cx - ax, vy = cy - ay, vz = cz - az;
+		return new double[] { uy * vz - uz * vy, uz * vx - ux * vz, ux * vy - uy * vx };
+	}
+
+	/**
+	 * Finds the vertices on edges used by only one triangle, or by more than two.
+	 */
+	private boolean[] findBorderVertices(int triangleCount) {
+		Map<Long, Integer> edgeUses = new HashMap<>();
+		for (int t = 0; t < triangleCount; t++) {
+			if (!isTriangleAlive[t])
+				continue;
+			for (int c = 0; c < 3; c++) {
+				edgeUses.merge(edgeKey(triangles[t * 3 + c], triangles[t * 3 + (c + 1) % 3]), 1, Integer::sum);
+			}
+		}
+		boolean[] isBorder = new boolean[vertexCount];
+		for (Map.Entry<Long, Integer> edge : edgeUses.entrySet()) {
+			if (edge.getValue() != 2) {
+				long key = edge.getKey();
+				isBorder[(int) (key >>> 32)] = true;
+				isBorder[(int) key] = true;
+			}
+		}
+		return isBorder;
+	}
+
+	private static long edgeKey(int a, int b) {
+		return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+	}
+
+	private void queueAllCollapses() {
+		for (int v = 0; v < vertexCount; v++) {
+			queueCollapse(v);
+		}
+	}
+
+	/**
+	 * Queues the cheapest valid collapse of the vertex onto one of its neighbours, if there is one.
+	 */
+	private void queueCollapse(int from) {
+		if (isLocked[from] || isCollapsed[from]) {
+			return;
+		}
+		double bestCost = Double.MAX_VALUE;
+		int bestTarget = -1;
+		for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+			int t = vertexTriangles[from][i];
+			if (!isTriangleAlive[t])
+				continue;
+			for (int c = 0; c < 3; c++) {
+				int to = triangles[t * 3 + c];
+				if (to == from)
+					continue;
+				float bindingDifference = bindingDifference(from, to);
+				if (bindingDifference > MAX_BINDING_DIFFERENCE)
+					continue;
+				double cost = error(from, to) + bindingPenalty * bindingDifference;
+				if (cost < bestCost && isValidCollapse(from, to)) {
+					bestCost = cost;
+					bestTarget = to;
+				}
+			}
+		}
+		if (bestTarget != -1) {
+			collapses.add(new Collapse(bestCost, from, bestTarget, versions[from]));
+		}
+	}
+
+	private float bindingDifference(int u, int v) {
+		int[] bonesU = bindingBones[u], bonesV = bindingBones[v];
+		float[] weightsU = bindingWeights[u], weightsV = bindingWeights[v];
+		float difference = 0;
+		int i = 0, j = 0;
+		while (i < bonesU.length || j < bonesV.length) {
+			if (j == bonesV.length || (i < bonesU.length && bonesU[i] < bonesV[j])) {
+				difference += weightsU[i++];
+			} else if (i == bonesU.length || bonesV[j] < bonesU[i]) {
+				difference += weightsV[j++];
+			} else {
+				difference += Math.abs(weightsU[i++] - weightsV[j++]);
+			}
+		}
+		return difference;
+	}
+
+	/**
+	 * @return the error of the summed quadrics of both vertices at the position of the target
+	 */
+	private double error(int from, int to) {
+		double x = positions[to * 3], y = positions[to * 3 + 1], z = positions[to * 3 + 2];
+		double[] q = quadrics;
+		int a = from * 10, b = to * 10;
+		double q00 = q[a] + q[b], q01 = q[a + 1] + q[b + 1], q02 = q[a + 2] + q[b + 2], q03 = q[a + 3] + q[b + 3];
+		double q11 = q[a + 4] + q[b + 4], q12 = q[a + 5] + q[b + 5], q13 = q[a + 6] + q[b + 6];
+		double q22 = q[a + 7] + q[b + 7], q23 = q[a + 8] + q[b + 8], q33 = q[a + 9] + q[b + 9];
+		return q00 * x * x + 2 * q01 * x * y + 2 * q02 * x * z + 2 * q03 * x + q11 * y * y + 2 * q12 * y * z
+				+ 2 * q13 * y + q22 * z * z + 2 * q23 * z + q33;
+	}
+
+	/**
+	 * Checks that the collapse keeps the mesh manifold and doesn't flip any of the remaining triangles.
+	 */
+	private boolean isValidCollapse(int from, int to) {
+		// Link condition: the only common neighbours are the opposite vertices of the triangles on the edge
+		mark++;
+		int sharedTriangles = 0;
+		for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+			int t = vertexTriangles[to][i];
+			if (!isTriangleAlive[t])
+				continue;
+			for (int c = 0; c < 3; c++) {
+				marks[triangles[t * 3 + c]] = mark;
+			}
+		}
+		int commonNeighbours = 0;
+		for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+			int t = vertexTriangles[from][i];
+			if (!isTriangleAlive[t])
+				continue;
+			boolean isShared = false;
+			for (int c = 0; c < 3; c++) {
+				int v = triangles[t * 3 + c];
+				if (v == to) {
+					isShared = true;
+				} else if (v != from && marks[v] == mark) {
+					// Don't count it again
+					marks[v] = mark - 1;
+					commonNeighbours++;
+				}
+			}
+			if (isShared) {
+				sharedTriangles++;
+				continue;
+			}
+			int c = triangles[t * 3] == from ? 0 : triangles[t * 3 + 1] == from ? 1 : 2;
+			int a = triangles[t * 3 + (c + 2) % 3], b = triangles[t * 3 + (c + 1) % 3];
+			double[] before = normal(a, from, b, positions[from * 3], positions[from * 3 + 1], positions[from * 3 + 2]);
+			double[] after = normal(a, from, b, positions[to * 3], positions[to * 3 + 1], positions[to * 3 + 2]);
+			double dot = before[0] * after[0] + before[1] * after[1] + before[2] * after[2];
+			double lengths = Math.sqrt((before[0] * before[0] + before[1] * before[1] + before[2] * before[2])
+					* (after[0] * after[0] + after[1] * after[1] + after[2] * after[2]));
+			if (lengths == 0 || dot < MIN_NORMAL_COSINE * lengths) {
+				return false;
+			}
+		}
+		return sharedTriangles > 0 && commonNeighbours == sharedTriangles;
+	}
+
+	private void collapseUntil(int targetTriangles) {
+		while (aliveTriangles > targetTriangles && !collapses.isEmpty()) {
+			Collapse collapse = collapses.poll();
+			if (isCollapsed[collapse.from] || collapse.version != versions[collapse.from]
+					|| isCollapsed[collapse.to]) {
+				// Outdated, the vertex has been queued again if it can still be collapsed
+				continue;
+			}
+			if (!isValidCollapse(collapse.from, collapse.to)) {
+				// The neighbourhood of the target changed since the collapse was queued
+				versions[collapse.from]++;
+				queueCollapse(collapse.from);
+				continue;
+			}
+			collapse(collapse.from, collapse.to);
+		}
+	}
+
+	private void collapse(int from, int to) {
+		for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+			int t = vertexTriangles[from][i];
+			if (!isTriangleAlive[t])
+				continue;
+			int c = triangles[t * 3] == from ? 0 : triangles[t * 3 + 1] == from ? 1 : 2;
+			if (triangles[t * 3] == to || triangles[t * 3 + 1] == to || triangles[t * 3 + 2] == to) {
+				isTriangleAlive[t] = false;
+				aliveTriangles--;
+			} else {
+				triangles[t * 3 + c] = to;
+				addTriangle(to, t);
+			}
+		}
+		for (int k = 0; k < 10; k++) {
+			quadrics[to * 10 + k] += quadrics[from * 10 + k];
+		}
+		isCollapsed[from] = true;
+		compactTriangles(to);
+		// Everything around the target has a different neighbourhood now
+		mark++;
+		for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+			int t = vertexTriangles[to][i];
+			for (int c = 0; c < 3; c++) {
+				int v = triangles[t * 3 + c];
+				if (marks[v] == mark)
+					continue;
+				marks[v] = mark;
+				versions[v]++;
+				queueCollapse(v);
+			}
+		}
+	}
+
+	/**
+	 * Removes the dead triangles from the triangles of the vertex.
+	 */
+	private void compactTriangles(int v) {
+		int[] adjacent = vertexTriangles[v];
+		int count = 0;
+		for (int i = 0; i < vertexTriangleCounts[v]; i++) {
+			if (isTriangleAlive[adjacent[i]])
+				adjacent[count++] = adjacent[i];
+		}
+		vertexTriangleCounts[v] = count;
+	}
+
+	private short[] getIndices() {
+		short[] indices = new short[aliveTriangles * 3];
+		int o = 0;
+		for (int t = 0; t < isTriangleAlive.length; t++) {
+			if (!isTriangleAlive[t])
+				continue;
+			indices[o++] = (short) triangles[t * 3];
+			indices[o++] = (short) triangles[t * 3 + 1];
+			indices[o++] = (short) triangles[t * 3 + 2];
+		}
+		return indices;
+	}
+}
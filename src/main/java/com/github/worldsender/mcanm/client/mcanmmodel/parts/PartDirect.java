@@ -1,18 +1,23 @@
 package com.github.worldsender.mcanm.client.mcanmmodel.parts;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.IntStream;
 
+import com.github.worldsender.mcanm.MCAnm;
 import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.config.MCAnmConfiguration;
 import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
 import com.github.worldsender.mcanm.client.model.ModelLoader;
 import com.github.worldsender.mcanm.client.renderer.DrawElementsTesselator;
+import com.github.worldsender.mcanm.common.skeleton.Pose;
 
 import net.minecraft.client.renderer.block.model.BakedQuad;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.client.renderer.vertex.VertexFormatElement;
 import net.minecraft.util.ResourceLocation;
 import net.minecraftforge.client.model.pipeline.UnpackedBakedQuad;
 
@@ -20,62 +25,260 @@ public class PartDirect implements IPart {
 	private final String textureSlot;
 	private final String name;
 	private final String textureSlotWithOct;
-	private final Point[] pointsList;
+	private final SkinnedMesh mesh;
+	private final float[] vertexData;
+	/** The number of vertices in vertexData that hold a complete skinning result that can be updated partially */
+	private int skinnedVertexCount = 0;
 	private final int[] indices;
-	private final DrawElementsTesselator directTesselator;
+	/** The indices of each level of detail, the full mesh first. Levels may share arrays */
+	private final short[][] levelIndices;
+	/** The number of vertices used by each level, always the first ones */
+	private final int[] levelVertexCounts;
+	/** The first index of each level in {@link #getAllIndices()} */
+	private final int[] levelFirstIndices;
+	/** Only created when the part is drawn on its own, holds the indices of all levels */
+	private DrawElementsTesselator directTesselator;
+	// The range to draw, scratch
+	private final int[] directFirstIndex = new int[1];
+	private final int[] directIndexCount = new int[1];
 
 	public PartDirect(PartBuilder builder) {
-		Point[] points = new Point[builder.pointList.size()];
-		int idx = 0;
-		for (TesselationPoint point : builder.pointList) {
-			points[idx++] = Point.from(point, builder.skeleton);
-		}
-		short[] indices = new short[builder.indexBuf.readableBytes() / 2];
-		builder.indexBuf.nioBuffer().asShortBuffer().get(indices);
-		for (short i : indices) {
-			if (i < 0 || i >= points.length) {
-				throw new IllegalArgumentException(
-						"face index " + i + " too big. Only " + points.length + " points available");
+		List<TesselationPoint> points = new ArrayList<>(builder.pointList);
+		int vertexCount = points.size();
+		int levelCount = MCAnm.configuration().getLevelOfDetailCount();
+		short[][] levels = MeshSimplifier.simplify(points, readIndices(builder, vertexCount), levelCount);
+		// Reordered for the vertex cache of the GPU and so that skinning walks the vertices in drawing order. Each
+		// level only uses the first vertices, so skinning a coarser level can stop early
+		levels = MeshOptimizer.optimize(points, levels);
+		SkinnedMesh mesh = new SkinnedMesh(points, builder.skeleton);
+		this.levelIndices = levels;
+		this.levelVertexCounts = new int[levels.length];
+		this.levelFirstIndices = new int[levels.length];
+		levelVertexCounts[0] = vertexCount;
+		for (int l = 1; l < levels.length; l++) {
+			int maxIndex = -1;
+			for (short index : levels[l]) {
+				maxIndex = Math.max(maxIndex, index & 0xFFFF);
 			}
+			levelVertexCounts[l] = maxIndex + 1;
+			assert usesVertexPrefix(levels[l], levelVertexCounts[l]) : "level " + l + " skips vertices";
+			assert levelVertexCounts[l] <= levelVertexCounts[l - 1] : "level " + l + " uses more vertices";
+			boolean isShared = levels[l] == levels[l - 1];
+			levelFirstIndices[l] = levelFirstIndices[l - 1] + (isShared ? 0 : levels[l - 1].length);
 		}
-		this.pointsList = points;
+		short[] indices = levels[0];
+		this.mesh = mesh;
+		this.vertexData = new float[vertexCount * DrawElementsTesselator.FLOATS_PER_VERTEX];
 		this.name = Objects.requireNonNull(builder.name, "A name is required");
 		this.textureSlot = Objects.requireNonNull(builder.textureName, "texture name required");
 		this.textureSlotWithOct = "#" + textureSlot;
-		directTesselator = new DrawElementsTesselator(pointsList.length, indices);
+		if (mesh.isStatic()) {
+			mesh.skin(vertexData);
+		}
 		// Required for the stupid item rendering...
 		this.indices = IntStream.range(0, indices.length).map(i -> indices[i] & 0xFFFF).toArray();
 	}
 
+	/**
+	 * @return the indices of the faces in the builder, checked to be valid
+	 */
+	private static short[] readIndices(PartBuilder builder, int vertexCount) {
+		short[] indices = new short[builder.indexBuf.readableBytes() / 2];
+		builder.indexBuf.nioBuffer().asShortBuffer().get(indices);
+		for (short i : indices) {
+			if (i < 0 || i >= vertexCount) {
+				throw new IllegalArgumentException(
+						"face index " + i + " too big. Only " + vertexCount + " points available");
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * @return if the indices use exactly the first vertexCount vertices, each at least once
+	 */
+	private static boolean usesVertexPrefix(short[] indices, int vertexCount) {
+		boolean[] isUsed = new boolean[vertexCount];
+		for (short index : indices) {
+			int v = index & 0xFFFF;
+			if (v >= vertexCount) {
+				return false;
+			}
+			isUsed[v] = true;
+		}
+		for (boolean used : isUsed) {
+			if (!used) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected SkinnedMesh getMesh() {
+		return mesh;
+	}
+
+	/**
+	 * @return the indices of all levels of detail one after the other, see {@link #getFirstIndex(int)}
+	 */
+	protected short[] getAllIndices() {
+		int last = levelIndices.length - 1;
+		short[] all = new short[levelFirstIndices[last] + levelIndices[last].length];
+		for (int l = 0; l <= last; l++) {
+			System.arraycopy(levelIndices[l], 0, all, levelFirstIndices[l], levelIndices[l].length);
+		}
+		return all;
+	}
+
+	/**
+	 * @return the first index of the level in {@link #getAllIndices()}, clamped like {@link #getIndices(int)}
+	 */
+	protected int getFirstIndex(int level) {
+		return levelFirstIndices[clampLevel(level)];
+	}
+
+	private int clampLevel(int level) {
+		return Math.max(0, Math.min(level, levelIndices.length - 1));
+	}
+
+	@Override
+	public float[] skin() {
+		return skin(0);
+	}
+
+	@Override
+	public float[] skin(int level) {
+		if (mesh.isStatic()) {
+			return vertexData;
+		}
+		int count = levelVertexCounts[clampLevel(level)];
+		mesh.fetchBoneTransforms();
+		MCAnmConfiguration config = MCAnm.configuration();
+		boolean isUpdate = skinnedVertexCount >= count;
+		int skinnedVertices = isUpdate ? mesh.getChangedVertexCount() : count;
+		if (skinnedVertices == 0) {
+			return vertexData;
+		}
+		if (config.isParallelSkinningEnabled() && skinnedVertices >= config.getParallelSkinningThreshold()) {
+			mesh.skinParallel(vertexData, count);
+		} else if (isUpdate) {
+			mesh.skinChanged(vertexData, count);
+		} else {
+			mesh.skin(vertexData, count);
+		}
+		// Vertices past the level missed the changes of this fetch
+		skinnedVertexCount = count;
+		return vertexData;
+	}
+
+	@Override
+	public float[] skin(Pose pose) {
+		return skin(pose, 0);
+	}
+
+	@Override
+	public float[] skin(Pose pose, int level) {
+		int count = levelVertexCounts[clampLevel(level)];
+		float[] vertices = new float[count * DrawElementsTesselator.FLOATS_PER_VERTEX];
+		mesh.skin(pose, vertices, count);
+		return vertices;
+	}
+
+	@Override
+	public void skin(Pose pose, int level, float[] out, SkinningContext context) {
+		mesh.skin(pose, out, levelVertexCounts[clampLevel(level)], context);
+	}
+
 	@Override
 	public void render(IRenderPass currentPass) {
-		ResourceLocation texture = currentPass.getActualResourceLocation(textureSlot);
-		currentPass.bindTexture(texture);
+		render(currentPass, 0);
+	}
 
-		directTesselator.startDrawing();
-		for (Point p : this.pointsList) {
-			p.render(directTesselator);
+	@Override
+	public void render(IRenderPass currentPass, int level) {
+		draw(currentPass, skin(level), level);
+	}
+
+	@Override
+	public void draw(IRenderPass currentPass, float[] vertices) {
+		draw(currentPass, vertices, 0);
+	}
+
+	private void draw(IRenderPass currentPass, float[] vertices, int level) {
+		bindTexture(currentPass);
+
+		if (directTesselator == null) {
+			directTesselator = DrawElementsTesselator.create(mesh.getVertexCount(), getAllIndices());
+			if (mesh.isStatic()) {
+				// Upload once, only draw from now on
+				directTesselator.fill(vertexData);
+			}
+		}
+		directFirstIndex[0] = getFirstIndex(level);
+		directIndexCount[0] = getIndices(level).length;
+		if (mesh.isStatic()) {
+			directTesselator.redraw(directFirstIndex, directIndexCount, 1);
+			return;
 		}
-		directTesselator.draw();
+		directTesselator.startDrawing();
+		directTesselator.addVertices(vertices);
+		directTesselator.draw(directFirstIndex, directIndexCount, 1);
+	}
+
+	protected void bindTexture(IRenderPass currentPass) {
+		ResourceLocation texture = currentPass.getActualResourceLocation(textureSlot);
+		currentPass.bindTexture(texture);
 	}
 
 	@Override
 	public void getAsBakedQuads(Map<String, TextureAtlasSprite> slotToTex, VertexFormat format, List<BakedQuad> out) {
 		TextureAtlasSprite tex = retrieveSprite(slotToTex);
+		skin();
 		for (int i = 0; i < indices.length; i += 3) {
-			Point point1 = pointsList[indices[i]];
-			Point point2 = pointsList[indices[i + 1]];
-			Point point3 = pointsList[indices[i + 2]];
 			UnpackedBakedQuad.Builder builder = new UnpackedBakedQuad.Builder(format);
-			point1.putIntoBakedQuadBuilder(builder, tex);
-			point2.putIntoBakedQuadBuilder(builder, tex);
-			point3.putIntoBakedQuadBuilder(builder, tex);
-			point1.putIntoBakedQuadBuilder(builder, tex);
+			putIntoBakedQuadBuilder(builder, tex, indices[i]);
+			putIntoBakedQuadBuilder(builder, tex, indices[i + 1]);
+			putIntoBakedQuadBuilder(builder, tex, indices[i + 2]);
+			putIntoBakedQuadBuilder(builder, tex, indices[i]);
 			builder.setTexture(tex);
 			out.add(builder.build());
 		}
 	}
 
+	private void putIntoBakedQuadBuilder(UnpackedBakedQuad.Builder builder, TextureAtlasSprite sprite, int vertex) {
+		int offset = vertex * DrawElementsTesselator.FLOATS_PER_VERTEX;
+		float[] data = this.vertexData;
+
+		VertexFormat vertexFormat = builder.getVertexFormat();
+		int elementCount = vertexFormat.getElementCount();
+		for (int e = 0; e < elementCount; e++) {
+			VertexFormatElement element = vertexFormat.getElement(e);
+			switch (element.getUsage()) {
+			case POSITION:
+				builder.put(e, data[offset], data[offset + 1], data[offset + 2], 1);
+				break;
+			case NORMAL:
+				builder.put(e, data[offset + 3], data[offset + 4], data[offset + 5], 0);
+				break;
+			case UV:
+				if (element.getIndex() != 0)
+					break;
+				builder.put(
+						e,
+						sprite.getInterpolatedU(data[offset + 6] * 16),
+						sprite.getInterpolatedV(data[offset + 7] * 16),
+						0,
+						1);
+				break;
+			case COLOR:
+				builder.put(e, 1, 1, 1, 1);
+				break;
+			default:
+				builder.put(e);
+			}
+		}
+	}
+
 	private TextureAtlasSprite retrieveSprite(Map<String, TextureAtlasSprite> slotToTex) {
 		TextureAtlasSprite tex = slotToTex.get(textureSlotWithOct);
 		if (tex != null) {
@@ -88,4 +291,39 @@ public class PartDirect implements IPart {
 	public String getName() {
 		return this.name;
 	}
+
+	@Override
+	public String getTextureSlot() {
+		return this.textureSlot;
+	}
+
+	@Override
+	public int getVertexCount() {
+		return mesh.getVertexCount();
+	}
+
+	@Override
+	public short[] getIndices() {
+		return levelIndices[0];
+	}
+
+	@Override
+	public int getLevelCount() {
+		return levelIndices.length;
+	}
+
+	@Override
+	public int getVertexCount(int level) {
+		return levelVertexCounts[clampLevel(level)];
+	}
+
+	@Override
+	public short[] getIndices(int level) {
+		return levelIndices[clampLevel(level)];
+	}
+
+	@Override
+	public boolean isStatic() {
+		return mesh.isStatic();
+	}
 }
@@ -0,0 +1,64 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import com.github.worldsender.mcanm.client.IRenderPass;
+import com.github.worldsender.mcanm.client.renderer.SkinningProgram;
+import com.github.worldsender.mcanm.client.renderer.SkinningTesselator;
+
+import net.minecraft.client.renderer.OpenGlHelper;
+
+/**
+ * A part that is skinned on the GPU by the {@link SkinningProgram}. The rest mesh and the bone bindings are uploaded
+ * once, each draw only uploads the transformations of the bones the part references.<br>
+ * Parts that reference more bones than the program supports, static parts and parts drawn while the program is not
+ * available are skinned on the CPU like a {@link PartDirect}. {@link #skin()} always skins on the CPU.
+ */
+public class PartShader extends PartDirect {
+	/** Null if the part can't be skinned on the GPU */
+	private final SkinningTesselator gpuTesselator;
+	private final float[] bonePalette;
+	// The range to draw, scratch
+	private final int[] firstIndex = new int[1];
+	private final int[] indexCount = new int[1];
+
+	public PartShader(PartBuilder builder) {
+		super(builder);
+		SkinnedMesh mesh = getMesh();
+		if (mesh.isStatic() || !OpenGlHelper.vboSupported || mesh.getBoneCount() > SkinningProgram.MAX_BONES
+				|| mesh.getMaxBindingsPerVertex() > SkinningProgram.BINDINGS_PER_VERTEX) {
+			this.gpuTesselator = null;
+			this.bonePalette = null;
+			return;
+		}
+		int vertexCount = mesh.getVertexCount();
+		float[] vertices = new float[vertexCount * SkinningTesselator.FLOATS_PER_VERTEX];
+		mesh.getRestVertices(vertices, SkinningTesselator.FLOATS_PER_VERTEX);
+		mesh.getVertexBindings(
+				vertices,
+				SkinningTesselator.FLOATS_PER_VERTEX,
+				SkinningTesselator.FLOATS_PER_VERTEX - 2 * SkinningProgram.BINDINGS_PER_VERTEX,
+				SkinningProgram.BINDINGS_PER_VERTEX);
+		this.gpuTesselator = new SkinningTesselator(vertexCount, getAllIndices());
+		this.gpuTesselator.fill(vertices);
+		this.bonePalette = new float[mesh.getBoneCount() * 12];
+	}
+
+	@Override
+	public boolean isSkinnedOnGpu() {
+		return gpuTesselator != null && SkinningProgram.INSTANCE.isAvailable();
+	}
+
+	@Override
+	public void render(IRenderPass currentPass, int level) {
+		if (!isSkinnedOnGpu()) {
+			super.render(currentPass, level);
+			return;
+		}
+		bindTexture(currentPass);
+		getMesh().getBonePalette(bonePalette);
+		SkinningProgram.INSTANCE.use(bonePalette, getMesh().getBoneCount());
+		firstIndex[0] = getFirstIndex(level);
+		indexCount[0] = getIndices(level).length;
+		gpuTesselator.redraw(firstIndex, indexCount, 1);
+		SkinningProgram.INSTANCE.release();
+	}
+}
@@ -0,0 +1,592 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.stored.RawDataV1;
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.BoneBinding;
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
+import com.github.worldsender.mcanm.client.renderer.DrawElementsTesselator;
+import com.github.worldsender.mcanm.common.skeleton.IBone;
+import com.github.worldsender.mcanm.common.skeleton.ISkeleton;
+import com.github.worldsender.mcanm.common.skeleton.Pose;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+/**
+ * The rest mesh of a part together with its bone bindings, stored in flat primitive arrays. Skinning walks these arrays
+ * linearly and writes the transformed vertices interleaved in the layout of {@link DrawElementsTesselator}.<br>
+ * Vertices with exactly the same bindings (bones and weights) form a bind group. The bone matrices are blended once per
+ * group and frame, so each vertex only has to be transformed by a single matrix.
+ */
+public class SkinnedMesh {
+	// 3x4 for positions, 3x3 for normals
+	private static final int FLOATS_PER_BONE = 12 + 9;
+	/** When skinning in parallel, the vertices are split into chunks of at most this size */
+	private static final int VERTICES_PER_TASK = 2048;
+
+	/**
+	 * Skins a range of vertices, splitting it up until each chunk is small enough. The bone matrices are only read, all
+	 * other scratch is local to the worker skinning a chunk.
+	 */
+	private class SkinningTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final float[] out;
+		private final int from;
+		private final int to;
+
+		public SkinningTask(float[] out, int from, int to) {
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= VERTICES_PER_TASK) {
+				skin(out, from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new SkinningTask(out, from, middle), new SkinningTask(out, middle, to));
+		}
+	}
+
+	/**
+	 * A set of (bone, weight) pairs, sorted by bone. Used as a key to find vertices with identical bindings.
+	 */
+	private static class BindingSet {
+		private final int[] bones;
+		private final float[] weights;
+
+		public BindingSet(int[] bones, float[] weights) {
+			this.bones = bones;
+			this.weights = weights;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(bones) + Arrays.hashCode(weights);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof BindingSet)) {
+				return false;
+			}
+			BindingSet other = (BindingSet) obj;
+			return Arrays.equals(bones, other.bones) && Arrays.equals(weights, other.weights);
+		}
+	}
+
+	private final int vertexCount;
+	/** x, y, z per vertex */
+	private final float[] positions;
+	/** x, y, z per vertex */
+	private final float[] normals;
+	/** u, v per vertex */
+	private final float[] uvs;
+	/** The bind group of each vertex, -1 for vertices that are not bound to any bone */
+	private final int[] vertexGroups;
+	/** The bindings of group i are the entries [groupOffsets[i], groupOffsets[i + 1]) */
+	private final int[] groupOffsets;
+	/** Index into {@link #bones} */
+	private final int[] groupBones;
+	/** Normalized so that the weights of each group sum up to one */
+	private final float[] groupWeights;
+	/** All bones referenced by this mesh */
+	private final IBone[] bones;
+	/** The index of each bone in the skeleton, -1 for bones that never move */
+	private final int[] boneIndices;
+
+	/** The vertices of group i are the entries [groupVertexOffsets[i], groupVertexOffsets[i + 1]) */
+	private final int[] groupVertexOffsets;
+	private final int[] groupVertices;
+
+	private final float[] boneMatrices;
+	private final float[] groupMatrices;
+	/** The version of each bone when its transformation was last fetched */
+	private final int[] boneVersions;
+	private final boolean[] changedBones;
+	/** The groups affected by the bones that changed in the last fetch */
+	private final int[] changedGroups;
+	private int changedGroupCount;
+	private int changedVertexCount;
+	private final Matrix3x4f matrixBuffer = new Matrix3x4f();
+
+	public SkinnedMesh(List<TesselationPoint> points, ISkeleton skeleton) {
+		int count = points.size();
+		this.vertexCount = count;
+		this.positions = new float[count * 3];
+		this.normals = new float[count * 3];
+		this.uvs = new float[count * 2];
+		this.vertexGroups = new int[count];
+
+		List<IBone> usedBones = new ArrayList<>();
+		List<Integer> usedBoneIndices = new ArrayList<>();
+		Map<BindingSet, Integer> groupIndices = new HashMap<>();
+		List<BindingSet> groups = new ArrayList<>();
+		int[] bindBones = new int[RawDataV1.MAX_NBR_BONEBINDINGS];
+		float[] bindWeights = new float[RawDataV1.MAX_NBR_BONEBINDINGS];
+		for (int i = 0; i < count; i++) {
+			TesselationPoint point = points.get(i);
+			positions[i * 3] = point.coords.x;
+			positions[i * 3 + 1] = point.coords.y;
+			positions[i * 3 + 2] = point.coords.z;
+			normals[i * 3] = point.normal.x;
+			normals[i * 3 + 1] = point.normal.y;
+			normals[i * 3 + 2] = point.normal.z;
+			uvs[i * 2] = point.texCoords.x;
+			uvs[i * 2 + 1] = point.texCoords.y;
+
+			int bindCount = 0;
+			float strengthSummed = 0.0F;
+			boolean onlyStaticBones = true;
+			for (BoneBinding bind : point.boneBindings) {
+				if (bind.bindingValue <= 0.0f)
+					continue;
+				int skeletonIndex = Byte.toUnsignedInt(bind.boneIndex);
+				IBone bone = skeleton.getBoneByIndex(skeletonIndex);
+				onlyStaticBones &= bone == IBone.STATIC_BONE;
+				int boneIndex = usedBones.indexOf(bone);
+				if (boneIndex == -1) {
+					boneIndex = usedBones.size();
+					usedBones.add(bone);
+					usedBoneIndices.add(bone == IBone.STATIC_BONE ? -1 : skeletonIndex);
+				}
+				if (bindCount == bindBones.length) {
+					bindBones = Arrays.copyOf(bindBones, bindCount * 2);
+					bindWeights = Arrays.copyOf(bindWeights, bindCount * 2);
+				}
+				// Insertion sort by bone, so that the order of the bindings doesn't matter
+				int insert = bindCount++;
+				while (insert > 0 && bindBones[insert - 1] > boneIndex) {
+					bindBones[insert] = bindBones[insert - 1];
+					bindWeights[insert] = bindWeights[insert - 1];
+					insert--;
+				}
+				bindBones[insert] = boneIndex;
+				bindWeights[insert] = bind.bindingValue;
+				strengthSummed += bind.bindingValue;
+			}
+			// A blend of identities is the identity, treat those vertices like unbound ones
+			if (bindCount == 0 || onlyStaticBones) {
+				vertexGroups[i] = -1;
+				continue;
+			}
+			float[] weights = Arrays.copyOf(bindWeights, bindCount);
+			for (int b = 0; b < bindCount; b++) {
+				weights[b] /= strengthSummed;
+			}
+			BindingSet bindingSet = new BindingSet(Arrays.copyOf(bindBones, bindCount), weights);
+			Integer group = groupIndices.get(bindingSet);
+			if (group == null) {
+				group = groups.size();
+				groups.add(bindingSet);
+				groupIndices.put(bindingSet, group);
+			}
+			vertexGroups[i] = group;
+		}
+
+		this.groupOffsets = new int[groups.size() + 1];
+		int bindingCount = 0;
+		for (int g = 0; g < groups.size(); g++) {
+			groupOffsets[g] = bindingCount;
+			bindingCount += groups.get(g).bones.length;
+		}
+		groupOffsets[groups.size()] = bindingCount;
+		this.groupBones = new int[bindingCount];
+		this.groupWeights = new float[bindingCount];
+		for (int g = 0; g < groups.size(); g++) {
+			BindingSet group = groups.get(g);
+			System.arraycopy(group.bones, 0, groupBones, groupOffsets[g], group.bones.length);
+			System.arraycopy(group.weights, 0, groupWeights, groupOffsets[g], group.weights.length);
+		}
+		this.groupVertexOffsets = new int[groups.size() + 1];
+		for (int group : vertexGroups) {
+			if (group != -1)
+				groupVertexOffsets[group + 1]++;
+		}
+		for (int g = 0; g < groups.size(); g++) {
+			groupVertexOffsets[g + 1] += groupVertexOffsets[g];
+		}
+		this.groupVertices = new int[groupVertexOffsets[groups.size()]];
+		int[] groupFill = Arrays.copyOf(groupVertexOffsets, groups.size());
+		for (int i = 0; i < count; i++) {
+			if (vertexGroups[i] != -1)
+				groupVertices[groupFill[vertexGroups[i]]++] = i;
+		}
+		this.bones = usedBones.toArray(new IBone[usedBones.size()]);
+		this.boneIndices = usedBoneIndices.stream().mapToInt(Integer::intValue).toArray();
+		this.boneMatrices = new float[bones.length * FLOATS_PER_BONE];
+		this.groupMatrices = new float[groups.size() * FLOATS_PER_BONE];
+		this.boneVersions = new int[bones.length];
+		this.changedBones = new boolean[bones.length];
+		this.changedGroups = new int[groups.size()];
+		invalidate();
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * @return the number of bones referenced by this mesh, the size of the palette of {@link #getBonePalette(float[])}
+	 */
+	public int getBoneCount() {
+		return bones.length;
+	}
+
+	/**
+	 * @return the largest number of bones a single vertex is bound to
+	 */
+	public int getMaxBindingsPerVertex() {
+		int max = 0;
+		for (int g = 0; g < groupOffsets.length - 1; g++) {
+			max = Math.max(max, groupOffsets[g + 1] - groupOffsets[g]);
+		}
+		return max;
+	}
+
+	/**
+	 * Stores the bindings of each vertex, to skin the mesh somewhere else, e.g. on the GPU. A binding refers to a bone
+	 * by its position in the palette of {@link #getBonePalette(float[])}. Vertices that are not bound to a moving bone
+	 * have all weights zero.
+	 *
+	 * @param out
+	 *            the array to write to, the bones and weights of vertex v start at v * stride + offset. First come
+	 *            the bones of the vertex, then the weights, each padded to bindingsPerVertex
+	 * @param stride
+	 *            the number of floats between the bindings of two vertices
+	 * @param offset
+	 *            the index of the bindings of the first vertex
+	 * @param bindingsPerVertex
+	 *            the number of bindings to store per vertex, at least {@link #getMaxBindingsPerVertex()}
+	 */
+	public void getVertexBindings(float[] out, int stride, int offset, int bindingsPerVertex) {
+		if (bindingsPerVertex < getMaxBindingsPerVertex()) {
+			throw new IllegalArgumentException(
+					"Vertices are bound to up to " + getMaxBindingsPerVertex() + " bones, can't store them in "
+							+ bindingsPerVertex);
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			int o = v * stride + offset;
+			Arrays.fill(out, o, o + 2 * bindingsPerVertex, 0);
+			int group = vertexGroups[v];
+			if (group == -1)
+				continue;
+			for (int b = groupOffsets[group]; b < groupOffsets[group + 1]; b++) {
+				out[o] = groupBones[b];
+				out[o + bindingsPerVertex] = groupWeights[b];
+				o++;
+			}
+		}
+	}
+
+	/**
+	 * Stores the vertices in the rest pose in the layout of {@link DrawElementsTesselator#FLOATS_PER_VERTEX}. Unlike
+	 * the skinned vertices, the coordinates are not converted to minecraft's coordinate system.
+	 *
+	 * @param out
+	 *            the array to write to, vertex v starts at v * stride
+	 * @param stride
+	 *            the number of floats between two vertices
+	 */
+	public void getRestVertices(float[] out, int stride) {
+		for (int v = 0; v < vertexCount; v++) {
+			int o = v * stride;
+			System.arraycopy(positions, v * 3, out, o, 3);
+			System.arraycopy(normals, v * 3, out, o + 3, 3);
+			System.arraycopy(uvs, v * 2, out, o + 6, 2);
+		}
+	}
+
+	/**
+	 * Stores the current transformation of each bone referenced by this mesh, see
+	 * {@link IBone#getTransformGlobal(Matrix3x4f)}. Has to be called after the skeleton has been set up.
+	 *
+	 * @param out
+	 *            the array to write the matrices to, row by row, 12 floats per bone
+	 */
+	public void getBonePalette(float[] out) {
+		Matrix3x4f m = matrixBuffer;
+		for (int i = 0; i < bones.length; i++) {
+			bones[i].getTransformGlobal(m);
+			m.get(out, i * 12);
+		}
+	}
+
+	/**
+	 * A mesh is static if none of its vertices is bound to a bone that can move. Skinning such a mesh always gives the
+	 * rest pose, it only has to be done once.
+	 *
+	 * @return true if the mesh never changes
+	 */
+	public boolean isStatic() {
+		return groupMatrices.length == 0;
+	}
+
+	/**
+	 * Forgets about the bone transformations fetched so far, the next fetch considers all bones as changed.
+	 */
+	public void invalidate() {
+		for (int i = 0; i < bones.length; i++) {
+			boneVersions[i] = bones[i].getVersion() - 1;
+		}
+	}
+
+	/**
+	 * @return the number of vertices that {@link #skinChanged(float[])} would skin after the last fetch
+	 */
+	public int getChangedVertexCount() {
+		return changedVertexCount;
+	}
+
+	/**
+	 * Fetches the current transformation of every bone referenced by this mesh that changed since the last fetch and
+	 * blends them for each affected bind group. Has to be called after the skeleton has been set up and before skinning.
+	 */
+	public void fetchBoneTransforms() {
+		Matrix3x4f m = matrixBuffer;
+		float[] matrices = boneMatrices;
+		for (int i = 0, o = 0; i < bones.length; i++, o += FLOATS_PER_BONE) {
+			int version = bones[i].getVersion();
+			changedBones[i] = version != boneVersions[i];
+			if (!changedBones[i])
+				continue;
+			boneVersions[i] = version;
+			bones[i].getTransformGlobal(m);
+			m.get(matrices, o);
+			bones[i].getTransformITGlobal(m);
+			m.getRotationScale(matrices, o + 12);
+		}
+		collectChangedGroups();
+		blendChangedGroups();
+	}
+
+	private void collectChangedGroups() {
+		final int groupCount = groupOffsets.length - 1;
+		int changed = 0, vertices = 0;
+		for (int g = 0; g < groupCount; g++) {
+			for (int b = groupOffsets[g]; b < groupOffsets[g + 1]; b++) {
+				if (changedBones[groupBones[b]]) {
+					changedGroups[changed++] = g;
+					vertices += groupVertexOffsets[g + 1] - groupVertexOffsets[g];
+					break;
+				}
+			}
+		}
+		changedGroupCount = changed;
+		changedVertexCount = vertices;
+	}
+
+	private void blendChangedGroups() {
+		for (int c = 0; c < changedGroupCount; c++) {
+			blendGroup(changedGroups[c], boneMatrices, groupMatrices);
+		}
+	}
+
+	private void blendGroup(int g, float[] matrices, float[] blended) {
+		int o = g * FLOATS_PER_BONE;
+		int first = groupOffsets[g], end = groupOffsets[g + 1];
+		int m = groupBones[first] * FLOATS_PER_BONE;
+		if (end - first == 1) {
+			// Weight is exactly one
+			System.arraycopy(matrices, m, blended, o, FLOATS_PER_BONE);
+			return;
+		}
+		float w = groupWeights[first];
+		for (int k = 0; k < FLOATS_PER_BONE; k++) {
+			blended[o + k] = w * matrices[m + k];
+		}
+		for (int b = first + 1; b < end; b++) {
+			m = groupBones[b] * FLOATS_PER_BONE;
+			w = groupWeights[b];
+			for (int k = 0; k < FLOATS_PER_BONE; k++) {
+				blended[o + k] += w * matrices[m + k];
+			}
+		}
+	}
+
+	/**
+	 * Skins all vertices with the bone transforms last fetched by {@link #fetchBoneTransforms()} and stores them
+	 * interleaved in the target array, see {@link DrawElementsTesselator#FLOATS_PER_VERTEX}. The coordinates are
+	 * converted to minecraft's coordinate system (y up) on the way.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least {@link #getVertexCount()} vertices
+	 */
+	public void skin(float[] out) {
+		skin(out, 0, vertexCount);
+	}
+
+	/**
+	 * Same as {@link #skin(float[])} but only skins the first vertices, e.g. those used by a level of detail.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least the vertices to skin
+	 * @param count
+	 *            the number of vertices to skin
+	 */
+	public void skin(float[] out, int count) {
+		skin(out, 0, count);
+	}
+
+	/**
+	 * Same as {@link #skin(float[])} but splits the vertices across a pool of worker threads. Returns when all vertices
+	 * have been skinned.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least {@link #getVertexCount()} vertices
+	 */
+	public void skinParallel(float[] out) {
+		skinParallel(out, vertexCount);
+	}
+
+	/**
+	 * Same as {@link #skinParallel(float[])} but only skins the first vertices.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least the vertices to skin
+	 * @param count
+	 *            the number of vertices to skin
+	 */
+	public void skinParallel(float[] out, int count) {
+		WorkerPool.POOL.invoke(new SkinningTask(out, 0, count));
+	}
+
+	/**
+	 * Only skins the vertices bound to a bone that changed in the last fetch. All other vertices in the target array
+	 * are left untouched, so the array must hold the result of the skinning before the last fetch.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least {@link #getVertexCount()} vertices
+	 */
+	public void skinChanged(float[] out) {
+		skinChanged(out, vertexCount);
+	}
+
+	/**
+	 * Same as {@link #skinChanged(float[])} but only skins the first vertices. The others are stale afterwards.
+	 *
+	 * @param out
+	 *            the array to write to, must hold at least the vertices to skin
+	 * @param count
+	 *            the number of vertices to skin
+	 */
+	public void skinChanged(float[] out, int count) {
+		for (int c = 0; c < changedGroupCount; c++) {
+			int g = changedGroups[c];
+			// The vertices of a group are sorted
+			for (int i = groupVertexOffsets[g]; i < groupVertexOffsets[g + 1] && groupVertices[i] < count; i++) {
+				skinVertex(out, groupVertices[i], groupMatrices);
+			}
+		}
+	}
+
+	/**
+	 * Skins all vertices in the pose given instead of the current pose of the skeleton. The bone transforms fetched
+	 * from the skeleton are neither used nor changed, so this may be called from any thread, even while the mesh is
+	 * skinned elsewhere.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this mesh was built with
+	 * @param out
+	 *            the array to write to, must hold at least {@link #getVertexCount()} vertices
+	 */
+	public void skin(Pose pose, float[] out) {
+		skin(pose, out, vertexCount);
+	}
+
+	/**
+	 * Same as {@link #skin(Pose, float[])} but only skins the first vertices.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this mesh was built with
+	 * @param out
+	 *            the array to write to, must hold at least the vertices to skin
+	 * @param count
+	 *            the number of vertices to skin
+	 */
+	public void skin(Pose pose, float[] out, int count) {
+		skin(pose, out, count, new SkinningContext());
+	}
+
+	/**
+	 * Same as {@link #skin(Pose, float[], int)} but takes the scratch from the context given instead of allocating it.
+	 * Use this when skinning many poses.
+	 *
+	 * @param pose
+	 *            the pose of the skeleton this mesh was built with
+	 * @param out
+	 *            the array to write to, must hold at least the vertices to skin
+	 * @param count
+	 *            the number of vertices to skin
+	 * @param context
+	 *            the scratch of the calling thread
+	 */
+	public void skin(Pose pose, float[] out, int count, SkinningContext context) {
+		Matrix3x4f m = context.matrix, inverseTranspose = context.inverseTranspose;
+		float[] matrices = context.getBoneMatrices(boneMatrices.length);
+		float[] blended = context.getGroupMatrices(groupMatrices.length);
+		for (int i = 0, o = 0; i < bones.length; i++, o += FLOATS_PER_BONE) {
+			if (boneIndices[i] == -1) {
+				m.setIdentity();
+			} else {
+				pose.getTransformGlobal(boneIndices[i], m);
+			}
+			m.get(matrices, o);
+			inverseTranspose.setInverseTranspose(m);
+			inverseTranspose.getRotationScale(matrices, o + 12);
+		}
+		for (int g = 0; g < groupOffsets.length - 1; g++) {
+			blendGroup(g, matrices, blended);
+		}
+		for (int v = 0; v < count; v++) {
+			skinVertex(out, v, blended);
+		}
+	}
+
+	private void skin(float[] out, int from, int to) {
+		for (int v = from; v < to; v++) {
+			skinVertex(out, v, groupMatrices);
+		}
+	}
+
+	private void skinVertex(float[] out, int v, float[] matrices) {
+		final float[] pos = positions, norm = normals;
+		final int o = v * DrawElementsTesselator.FLOATS_PER_VERTEX;
+		float x = pos[v * 3], y = pos[v * 3 + 1], z = pos[v * 3 + 2];
+		float nx = norm[v * 3], ny = norm[v * 3 + 1], nz = norm[v * 3 + 2];
+		int group = vertexGroups[v];
+		if (group != -1) {
+			int m = group * FLOATS_PER_BONE;
+			float px = matrices[m] * x + matrices[m + 1] * y + matrices[m + 2] * z + matrices[m + 3];
+			float py = matrices[m + 4] * x + matrices[m + 5] * y + matrices[m + 6] * z + matrices[m + 7];
+			float pz = matrices[m + 8] * x + matrices[m + 9] * y + matrices[m + 10] * z + matrices[m + 11];
+			float tnx = matrices[m + 12] * nx + matrices[m + 13] * ny + matrices[m + 14] * nz;
+			float tny = matrices[m + 15] * nx + matrices[m + 16] * ny + matrices[m + 17] * nz;
+			float tnz = matrices[m + 18] * nx + matrices[m + 19] * ny + matrices[m + 20] * nz;
+			x = px;
+			y = py;
+			z = pz;
+			nx = tnx;
+			ny = tny;
+			nz = tnz;
+		}
+		out[o] = x;
+		out[o + 1] = z;
+		out[o + 2] = -y;
+		out[o + 3] = nx;
+		out[o + 4] = nz;
+		out[o + 5] = -ny;
+		out[o + 6] = uvs[v * 2];
+		out[o + 7] = uvs[v * 2 + 1];
+	}
+}
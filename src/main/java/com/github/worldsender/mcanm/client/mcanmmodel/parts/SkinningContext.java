@@ -0,0 +1,38 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import com.github.worldsender.mcanm.common.skeleton.Pose;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+/**
+ * Scratch for skinning meshes in a {@link Pose}, owned by the caller and passed along so that skinning doesn't need
+ * thread locals or allocations. A context must only be used by one thread at a time, it grows to fit the largest mesh
+ * skinned with it.
+ *
+ * @see SkinnedMesh#skin(Pose, float[], int, SkinningContext)
+ */
+public class SkinningContext {
+	final Matrix3x4f matrix = new Matrix3x4f();
+	final Matrix3x4f inverseTranspose = new Matrix3x4f();
+	private float[] boneMatrices = new float[0];
+	private float[] groupMatrices = new float[0];
+
+	/**
+	 * @return an array of at least the length given, for the matrices of the bones
+	 */
+	float[] getBoneMatrices(int length) {
+		if (boneMatrices.length < length) {
+			boneMatrices = new float[length];
+		}
+		return boneMatrices;
+	}
+
+	/**
+	 * @return an array of at least the length given, for the blended matrices of the bind groups
+	 */
+	float[] getGroupMatrices(int length) {
+		if (groupMatrices.length < length) {
+			groupMatrices = new float[length];
+		}
+		return groupMatrices;
+	}
+}
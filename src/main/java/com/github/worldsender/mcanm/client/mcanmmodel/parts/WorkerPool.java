@@ -0,0 +1,23 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * The threads that skin and pose models off the render thread. The render thread only blocks while it waits for the
+ * result of {@link ForkJoinPool#invoke(java.util.concurrent.ForkJoinTask)}, it doesn't take part in the work, so there
+ * is one worker per processor.
+ */
+public final class WorkerPool {
+	public static final ForkJoinPool POOL = new ForkJoinPool(
+			Runtime.getRuntime().availableProcessors(),
+			pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("MCAnm Worker " + thread.getPoolIndex());
+				return thread;
+			},
+			null,
+			false);
+
+	private WorkerPool() {}
+}
@@ -60,4 +60,21 @@ public interface IEntityAnimator<T extends EntityLiving> {
 			float uRotfloat,
 			float headYaw,
 			float interpolatedPitch);
+
+	/**
+	 * Whether the pose of the entity may be prepared in the pose prepass before it is rendered. The prepass calls
+	 * {@link #preRenderCallback(EntityLiving, RenderPassInformation, float, float, float, float, float, float)
+	 * preRenderCallback} once more per frame, with the same arguments as the render and with any OpenGL
+	 * transformation discarded.<br>
+	 * Only return true if the callback is pure: it doesn't change any state and returns the same animation and frame
+	 * when it is called again with the same arguments. Otherwise the animator advances twice per frame and the
+	 * prepared pose is not the one that is rendered.
+	 *
+	 * @param entity
+	 *            the entity that is about to be rendered
+	 * @return true if the callback may be called in the prepass, false by default
+	 */
+	default boolean supportsPrepass(T entity) {
+		return false;
+	}
 }
@@ -2,6 +2,7 @@ package com.github.worldsender.mcanm.client.model;
 
 import com.github.worldsender.mcanm.client.IRenderPass;
 import com.github.worldsender.mcanm.client.mcanmmodel.IModel;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.PosePrepass;
 
 import net.minecraft.client.model.ModelBase;
 import net.minecraft.client.model.ModelRenderer;
@@ -71,6 +72,20 @@ public class ModelAnimated extends ModelBase {
 		return this.model;
 	}
 
+	/**
+	 * Queues the pose of the model in the state given for the prepass.
+	 *
+	 * @param state
+	 *            the state the model will be rendered in
+	 * @param levelOfDetail
+	 *            the level of detail the model will be rendered in
+	 * @param prepass
+	 *            the prepass to queue the pose in
+	 */
+	public void prepare(IModelStateInformation state, int levelOfDetail, PosePrepass prepass) {
+		getModel().prepare(state, levelOfDetail, prepass);
+	}
+
 	public void setRenderPass(IRenderPass renderPass) {
 		this.renderPass = renderPass;
 	}
@@ -0,0 +1,273 @@
+package com.github.worldsender.mcanm.client.model.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+import com.github.worldsender.mcanm.common.animation.TransformComponents;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * An animation that blends other animations, each playing at its own frame, in layers. Layers are applied in the
+ * order they were added, starting from the bind pose:
+ * <ul>
+ * <li>A blended layer replaces the pose below by its weight, so a crossfade from walking to running is a walk layer
+ * with weight 1 followed by a run layer whose weight goes from 0 to 1. Bones that the animation of the layer doesn't
+ * animate are blended towards their bind pose.
+ * <li>An additive layer is applied on top of the pose below, scaled by its weight.
+ * </ul>
+ * Each layer may be restricted to some bones with a mask. Blending works on the {@link TransformComponents} of the
+ * bones, each layer samples its animation once per bone and no matrices are blended.<br>
+ * The frame the blender itself is asked for is ignored. The blender is meant to be reused, call {@link #clear()} and
+ * add the current layers before each render pass, see {@link RenderPassInformation#blendAnimations()}.
+ */
+public class AnimationBlender implements IAnimation {
+	/** A suitable mask to apply a layer to all bones */
+	public static final Predicate<String> ALL_BONES = b -> true;
+
+	private static enum BlendMode {
+		BLEND,
+		ADD;
+	}
+
+	private static class Layer {
+		private IAnimation animation;
+		private float frame;
+		private float weight;
+		private BlendMode mode;
+		private Predicate<String> mask;
+	}
+
+	/**
+	 * The blender bound to a skeleton. The animations of the layers are bound when they are first seen, the masks are
+	 * evaluated whenever they change.
+	 */
+	private class BoundBlender implements IBoundAnimation {
+		private final String[] boneNames;
+		private final LoadingCache<IAnimation, IBoundAnimation> boundAnimations;
+		// Per layer, what it was last bound to
+		private IAnimation[] layerAnimations = new IAnimation[0];
+		private IBoundAnimation[] layerBindings = new IBoundAnimation[0];
+		private Predicate<?>[] layerMasks = new Predicate<?>[0];
+		private boolean[][] layerMaskBits = new boolean[0][];
+		// Scratch space for the result and a sample
+		private final float[] blended = new float[2 * TransformComponents.COMPONENTS];
+		// For storeCurrentTransformation, which gets no context
+		private final SamplingContext context = new SamplingContext();
+
+		public BoundBlender(String[] boneNames) {
+			this.boneNames = boneNames.clone();
+			this.boundAnimations = CacheBuilder.newBuilder().weakKeys().maximumSize(16)
+					.build(new CacheLoader<IAnimation, IBoundAnimation>() {
+						@Override
+						public IBoundAnimation load(IAnimation key) {
+							return key.bindTo(BoundBlender.this.boneNames);
+						}
+					});
+		}
+
+		private void growTo(int count) {
+			if (layerAnimations.length >= count) {
+				return;
+			}
+			layerAnimations = Arrays.copyOf(layerAnimations, count);
+			layerBindings = Arrays.copyOf(layerBindings, count);
+			layerMasks = Arrays.copyOf(layerMasks, count);
+			layerMaskBits = Arrays.copyOf(layerMaskBits, count);
+		}
+
+		private IBoundAnimation getBinding(int index, Layer layer) {
+			if (layerAnimations[index] != layer.animation) {
+				layerBindings[index] = boundAnimations.getUnchecked(layer.animation);
+				layerAnimations[index] = layer.animation;
+			}
+			return layerBindings[index];
+		}
+
+		private boolean isInMask(int index, Layer layer, int channel) {
+			if (layer.mask == ALL_BONES) {
+				return true;
+			}
+			if (layerMasks[index] != layer.mask) {
+				boolean[] bits = layerMaskBits[index];
+				if (bits == null) {
+					bits = layerMaskBits[index] = new boolean[boneNames.length];
+				}
+				for (int i = 0; i < boneNames.length; i++) {
+					bits[i] = layer.mask.test(boneNames[i]);
+				}
+				layerMasks[index] = layer.mask;
+			}
+			return layerMaskBits[index][channel];
+		}
+
+		@Override
+		public boolean storeCurrentTransformation(int channel, float frame, BoneTransformation transform) {
+			if (!sample(channel, frame, context)) {
+				return false;
+			}
+			TransformComponents.compose(blended, 0, transform.matrix);
+			return true;
+		}
+
+		@Override
+		public boolean sample(int channel, float frame, SamplingContext context) {
+			int sample = TransformComponents.COMPONENTS;
+			growTo(layerCount);
+			TransformComponents.setIdentity(blended, 0);
+			boolean isAnimated = false;
+			for (int i = 0; i < layerCount; i++) {
+				Layer layer = layers.get(i);
+				if (layer.weight <= 0 || !isInMask(i, layer, channel)) {
+					continue;
+				}
+				if (getBinding(i, layer).sample(channel, layer.frame, context)) {
+					context.getComponents(blended, sample);
+					isAnimated = true;
+				} else if (layer.mode == BlendMode.BLEND) {
+					// Not animated by the layer, so it is in the bind pose there
+					TransformComponents.setIdentity(blended, sample);
+				} else {
+					// Adding the bind pose changes nothing
+					continue;
+				}
+				if (layer.mode == BlendMode.BLEND) {
+					float weight = Math.min(layer.weight, 1);
+					TransformComponents.interpolate(blended, 0, blended, sample, weight, blended, 0);
+				} else {
+					TransformComponents.add(blended, 0, blended, sample, layer.weight);
+				}
+			}
+			// The layers are done with the context, the result becomes its sample
+			System.arraycopy(blended, 0, context.beginComponents(), 0, TransformComponents.COMPONENTS);
+			return isAnimated;
+		}
+	}
+
+	private final List<Layer> layers = new ArrayList<>();
+	private int layerCount = 0;
+	/** The bindings to single bones used by {@link #storeCurrentTransformation(String, float, BoneTransformation)} */
+	private final Map<String, IBoundAnimation> boneBindings = new HashMap<>();
+
+	/**
+	 * Removes all layers. The blender can then be reused without allocating new layers.
+	 *
+	 * @return this
+	 */
+	public AnimationBlender clear() {
+		for (int i = 0; i < layerCount; i++) {
+			layers.get(i).animation = null;
+			layers.get(i).mask = null;
+		}
+		layerCount = 0;
+		return this;
+	}
+
+	private AnimationBlender addLayer(
+			IAnimation animation,
+			float frame,
+			float weight,
+			BlendMode mode,
+			Predicate<String> boneMask) {
+		if (layerCount == layers.size()) {
+			layers.add(new Layer());
+		}
+		Layer layer = layers.get(layerCount++);
+		layer.animation = Objects.requireNonNull(animation);
+		layer.frame = frame;
+		layer.weight = weight;
+		layer.mode = mode;
+		layer.mask = Objects.requireNonNull(boneMask);
+		return this;
+	}
+
+	/**
+	 * Adds a layer that replaces the pose of all bones below by its weight.
+	 *
+	 * @param animation
+	 *            the animation to play
+	 * @param frame
+	 *            the frame of the animation
+	 * @param weight
+	 *            how much of the pose below is replaced, in [0, 1]
+	 * @return this
+	 */
+	public AnimationBlender blend(IAnimation animation, float frame, float weight) {
+		return blend(animation, frame, weight, ALL_BONES);
+	}
+
+	/**
+	 * Same as {@link #blend(IAnimation, float, float)}, but only for the bones accepted by the mask. Reuse the mask
+	 * instance between passes, it is evaluated for all bones whenever it changes.
+	 *
+	 * @param animation
+	 *            the animation to play
+	 * @param frame
+	 *            the frame of the animation
+	 * @param weight
+	 *            how much of the pose below is replaced, in [0, 1]
+	 * @param boneMask
+	 *            the bones affected by the layer
+	 * @return this
+	 */
+	public AnimationBlender blend(IAnimation animation, float frame, float weight, Predicate<String> boneMask) {
+		return addLayer(animation, frame, weight, BlendMode.BLEND, boneMask);
+	}
+
+	/**
+	 * Adds a layer that is applied on top of the pose below. The animation is played relative to the bind pose, its
+	 * translation is added, its rotation applied after and its scale multiplied with the pose below.
+	 *
+	 * @param animation
+	 *            the animation to play
+	 * @param frame
+	 *            the frame of the animation
+	 * @param weight
+	 *            how much of the animation to apply
+	 * @return this
+	 */
+	public AnimationBlender add(IAnimation animation, float frame, float weight) {
+		return add(animation, frame, weight, ALL_BONES);
+	}
+
+	/**
+	 * Same as {@link #add(IAnimation, float, float)}, but only for the bones accepted by the mask.
+	 *
+	 * @param animation
+	 *            the animation to play
+	 * @param frame
+	 *            the frame of the animation
+	 * @param weight
+	 *            how much of the animation to apply
+	 * @param boneMask
+	 *            the bones affected by the layer
+	 * @return this
+	 */
+	public AnimationBlender add(IAnimation animation, float frame, float weight, Predicate<String> boneMask) {
+		return addLayer(animation, frame, weight, BlendMode.ADD, boneMask);
+	}
+
+	/**
+	 * Blends the animations by bone name. Each bone is bound on its own the first time it is asked for, the blender is
+	 * meant to be bound with {@link #bindTo(String[])} instead.
+	 */
+	@Override
+	public boolean storeCurrentTransformation(String bone, float frame, BoneTransformation transform) {
+		IBoundAnimation binding = boneBindings.computeIfAbsent(bone, b -> bindTo(new String[] { b }));
+		return binding.storeCurrentTransformation(0, frame, transform);
+	}
+
+	@Override
+	public IBoundAnimation bindTo(String[] boneNames) {
+		return new BoundBlender(boneNames);
+	}
+}
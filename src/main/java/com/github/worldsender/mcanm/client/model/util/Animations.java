@@ -4,13 +4,93 @@ import java.util.Arrays;
 
 import com.github.worldsender.mcanm.common.animation.IAnimation;
 import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 public class Animations {
+	/**
+	 * The bindings of the choices of combined animations, shared by all combined animations. The outer keys are the
+	 * bone names animations are bound to, compared by identity. Skeletons and pose evaluators bind to the same array
+	 * every time, so each of them gets its own bindings. The inner keys are the choices, also compared by identity.
+	 */
+	private static final LoadingCache<String[], LoadingCache<IAnimation, IBoundAnimation>> CHOICE_BINDINGS =
+			CacheBuilder.newBuilder().weakKeys().maximumSize(64)
+					.build(new CacheLoader<String[], LoadingCache<IAnimation, IBoundAnimation>>() {
+						@Override
+						public LoadingCache<IAnimation, IBoundAnimation> load(String[] key) {
+							// Not the key itself, so that it can be collected
+							String[] boneNames = key.clone();
+							return CacheBuilder.newBuilder().weakKeys().maximumSize(64)
+									.build(new CacheLoader<IAnimation, IBoundAnimation>() {
+										@Override
+										public IBoundAnimation load(IAnimation choice) {
+											return choice.bindTo(boneNames);
+										}
+									});
+						}
+					});
+
+	/**
+	 * A combined animation bound to some bones. The choices are iterated on every sample, so changes to them are
+	 * followed. Their bindings are looked up in {@link #CHOICE_BINDINGS} when a choice is first seen at its position.
+	 */
+	private static class CombinedBinding implements IBoundAnimation {
+		private final Iterable<IAnimation> choices;
+		private final LoadingCache<IAnimation, IBoundAnimation> choiceBindings;
+		// Per position, the choice that was last seen there and its binding
+		private IAnimation[] lastChoices = new IAnimation[0];
+		private IBoundAnimation[] lastBindings = new IBoundAnimation[0];
+
+		public CombinedBinding(Iterable<IAnimation> choices, String[] boneNames) {
+			this.choices = choices;
+			this.choiceBindings = CHOICE_BINDINGS.getUnchecked(boneNames);
+		}
+
+		private IBoundAnimation getBinding(int index, IAnimation choice) {
+			if (index >= lastChoices.length) {
+				lastChoices = Arrays.copyOf(lastChoices, index + 1);
+				lastBindings = Arrays.copyOf(lastBindings, index + 1);
+			}
+			if (lastChoices[index] != choice) {
+				lastBindings[index] = choiceBindings.getUnchecked(choice);
+				lastChoices[index] = choice;
+			}
+			return lastBindings[index];
+		}
+
+		@Override
+		public boolean storeCurrentTransformation(int channel, float frame, BoneTransformation transform) {
+			int index = 0;
+			for (IAnimation choice : choices) {
+				if (getBinding(index++, choice).storeCurrentTransformation(channel, frame, transform)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public boolean sample(int channel, float frame, SamplingContext context) {
+			int index = 0;
+			for (IAnimation choice : choices) {
+				if (getBinding(index++, choice).sample(channel, frame, context)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * A wrapper to chain animations together. If a position for bone &lt;bone&gt; is not given by the firstChoice, it
 	 * subsequently asks the second choice and then the other choices.<br>
 	 * The animations returned returns no {@link BoneTransformation} if and only if none of the animations would return
-	 * a Transformation. Else the Transformation of the first animation that does return one is returned.
+	 * a Transformation. Else the Transformation of the first animation that does return one is returned.<br>
+	 * Combining the animations again for every render pass is cheap. Binding the combined animation doesn't bind the
+	 * choices again, their bindings are shared by all combined animations.
 	 *
 	 * @param choices
 	 *            the choices, in the induced order. Usually two or more are given
@@ -21,7 +101,8 @@ public class Animations {
 	}
 
 	/**
-	 * The same as {@link #combined(IAnimation...)}, but the animations are given as an {@link Iterable}.
+	 * The same as {@link #combined(IAnimation...)}, but the animations are given as an {@link Iterable}. The iterable
+	 * is iterated whenever a bone is sampled, changes to it are followed.
 	 *
 	 * @param choices
 	 *            the choices to choose from, in the induced order.
@@ -39,6 +120,11 @@ public class Animations {
 				}
 				return false;
 			}
+
+			@Override
+			public IBoundAnimation bindTo(String[] boneNames) {
+				return new CombinedBinding(choices, boneNames);
+			}
 		};
 	}
 }
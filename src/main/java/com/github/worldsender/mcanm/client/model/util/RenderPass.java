@@ -19,6 +19,7 @@ import net.minecraft.util.ResourceLocation;
 public class RenderPass<T extends EntityLiving> implements IRenderPass {
 	private IRenderPassInformation userInfo;
 	private IEntityRender<T> render;
+	private int levelOfDetail = 0;
 
 	public RenderPass(IRenderPassInformation info, IEntityRender<T> renderer) {
 		this.userInfo = Objects.requireNonNull(info);
@@ -50,8 +51,18 @@ public class RenderPass<T extends EntityLiving> implements IRenderPass {
 		this.render.bindTextureFrom(resLoc);
 	}
 
+	@Override
+	public int getLevelOfDetail() {
+		return levelOfDetail;
+	}
+
 	public RenderPass<T> setRenderPassInformation(IRenderPassInformation info) {
 		this.userInfo = Objects.requireNonNull(info);
 		return this;
 	}
+
+	public RenderPass<T> setLevelOfDetail(int levelOfDetail) {
+		this.levelOfDetail = levelOfDetail;
+		return this;
+	}
 }
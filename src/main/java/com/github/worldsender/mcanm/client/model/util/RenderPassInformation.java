@@ -45,6 +45,7 @@ public class RenderPassInformation extends ModelStateInformation implements IRen
 	public static final Function<ResourceLocation, ResourceLocation> IDENTITY = Function.identity();
 
 	private Function<String, ResourceLocation> textureRemap;
+	private final AnimationBlender blender = new AnimationBlender();
 
 	public RenderPassInformation() {
 		this.reset();
@@ -84,6 +85,18 @@ public class RenderPassInformation extends ModelStateInformation implements IRen
 		return this;
 	}
 
+	/**
+	 * Plays blended animations in this pass. The {@link AnimationBlender} of this information is cleared and set as the
+	 * animation, add the layers to play to the blender returned. It is reused between passes, so blending doesn't
+	 * allocate once the layers have been added the first time.
+	 *
+	 * @return the blender to add layers to
+	 */
+	public AnimationBlender blendAnimations() {
+		setAnimation(blender.clear());
+		return blender;
+	}
+
 	/**
 	 * @param frame
 	 *            the frame to set
@@ -2,45 +2,100 @@ package com.github.worldsender.mcanm.client.renderer;
 
 import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.ShortBuffer;
 
 import org.lwjgl.opengl.GL11;
 
+import com.github.worldsender.mcanm.MCAnm;
 import com.google.common.base.Preconditions;
 
 import net.minecraft.client.renderer.GLAllocation;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
 
 /**
  * Only used to draw triangles!!! Implements a tesselator that draws a model with never-changing indices but changing
- * vertices.
+ * vertices.<br>
+ * The vertices and indices are kept in client memory and handed to GL on every draw. Use
+ * {@link #create(int, short[])} to get a {@link VertexBufferTesselator} instead when the context supports buffer
+ * objects. The vertices are encoded in a {@link VertexLayout} on the way into the buffer.
  * 
  * @author WorldSEnder
  *
  */
 public class DrawElementsTesselator implements ITesselator {
-	// Pos, Normal, Uv
-	private static final int BYTES_PER_VERTEX = 4 * (3 + 3 + 2);
+	/** Pos, Normal, Uv */
+	public static final int FLOATS_PER_VERTEX = 3 + 3 + 2;
 	/** The byte buffer used for GL allocation. */
+	private ByteBuffer byteBuffer;
 	private FloatBuffer floatBuffer;
+	private ByteBuffer indexBytes;
 	private ShortBuffer indexBuffer;
+	private final VertexLayout layout;
+	private final int bytesPerVertex;
+	/** The range of all indices */
+	private final int[] allFirstIndices = { 0 };
+	private final int[] allIndexCounts = new int[1];
 
 	private float texU, texV;
 	private float normalX, normalY, normalZ;
 	private boolean isDrawing;
+	private boolean isFilled;
 
 	public DrawElementsTesselator(int vertexCount, short[] indices) {
+		this(vertexCount, indices, VertexLayout.FLOAT);
+	}
+
+	public DrawElementsTesselator(int vertexCount, short[] indices, VertexLayout layout) {
+		this.layout = layout;
+		this.bytesPerVertex = layout.getBytesPerVertex();
+		setBuffer(vertexCount, indices);
+		this.isDrawing = false;
+	}
+
+	/**
+	 * For subclasses that store more than {@link #FLOATS_PER_VERTEX} per vertex. The first floats of each vertex still
+	 * have the layout of {@link #FLOATS_PER_VERTEX}.
+	 */
+	protected DrawElementsTesselator(int vertexCount, int floatsPerVertex, short[] indices) {
+		Preconditions.checkArgument(floatsPerVertex >= FLOATS_PER_VERTEX, "too few floats per vertex");
+		this.layout = VertexLayout.FLOAT;
+		this.bytesPerVertex = 4 * floatsPerVertex;
 		setBuffer(vertexCount, indices);
 		this.isDrawing = false;
 	}
 
+	/**
+	 * Creates the tesselator best suited for the current GL context. It is safe to call this from any thread, the GL
+	 * objects are only created on the first draw. The vertices are packed if the configuration says so.
+	 *
+	 * @param vertexCount
+	 *            the number of vertices of the mesh
+	 * @param indices
+	 *            the indices of the triangles
+	 * @return a {@link VertexBufferTesselator} if vertex buffer objects are supported, else a tesselator that draws
+	 *         from client memory
+	 */
+	public static DrawElementsTesselator create(int vertexCount, short[] indices) {
+		boolean isPacked = MCAnm.configuration().isPackedVerticesEnabled();
+		VertexLayout layout = isPacked ? VertexLayout.PACKED : VertexLayout.FLOAT;
+		if (OpenGlHelper.vboSupported) {
+			return new VertexBufferTesselator(vertexCount, indices, layout);
+		}
+		return new DrawElementsTesselator(vertexCount, indices, layout);
+	}
+
 	private void setBuffer(int vertexCount, short[] indices) {
-		floatBuffer = GLAllocation.createDirectByteBuffer(vertexCount * BYTES_PER_VERTEX).asFloatBuffer();
+		byteBuffer = GLAllocation.createDirectByteBuffer(vertexCount * bytesPerVertex);
+		floatBuffer = byteBuffer.asFloatBuffer();
 		// Could check if all indices are in range, but meh
-		indexBuffer = GLAllocation.createDirectByteBuffer(indices.length * 2).asShortBuffer();
+		indexBytes = GLAllocation.createDirectByteBuffer(indices.length * 2);
+		indexBuffer = indexBytes.asShortBuffer();
 		indexBuffer.put(indices);
 		indexBuffer.position(0);
+		allIndexCounts[0] = indices.length;
 	}
 
 	/**
@@ -49,7 +104,9 @@ public class DrawElementsTesselator implements ITesselator {
 	public void startDrawing() {
 		Preconditions.checkState(!isDrawing, "already drawing");
 		isDrawing = true;
-		floatBuffer.position(0);
+		isFilled = false;
+		floatBuffer.clear();
+		byteBuffer.clear();
 	}
 
 	@Override
@@ -67,29 +124,236 @@ public class DrawElementsTesselator implements ITesselator {
 
 	@Override
 	public void addVertex(double x, double y, double z) {
+		if (layout == VertexLayout.PACKED) {
+			putPacked((float) x, (float) y, (float) z, normalX, normalY, normalZ, texU, texV);
+			return;
+		}
 		this.floatBuffer.put((float) x).put((float) y).put((float) z).put(normalX).put(normalY).put(normalZ).put(texU)
 				.put(texV);
 	}
 
+	/**
+	 * Adds all vertices stored interleaved in the array given at once. See {@link #FLOATS_PER_VERTEX} for the layout.
+	 *
+	 * @param vertices
+	 *            the vertex data
+	 */
+	public void addVertices(float[] vertices) {
+		addVertices(vertices, 0, vertices.length);
+	}
+
+	/**
+	 * Same as {@link #addVertices(float[])}, but only adds some of the vertices in the array.
+	 *
+	 * @param vertices
+	 *            the vertex data
+	 * @param offset
+	 *            the index of the first float to add, the start of a vertex
+	 * @param length
+	 *            the number of floats to add, a multiple of {@link #FLOATS_PER_VERTEX}
+	 */
+	public void addVertices(float[] vertices, int offset, int length) {
+		Preconditions.checkState(isDrawing, "not drawing");
+		if (layout == VertexLayout.PACKED) {
+			for (int o = offset; o < offset + length; o += FLOATS_PER_VERTEX) {
+				putPacked(
+						vertices[o],
+						vertices[o + 1],
+						vertices[o + 2],
+						vertices[o + 3],
+						vertices[o + 4],
+						vertices[o + 5],
+						vertices[o + 6],
+						vertices[o + 7]);
+			}
+			return;
+		}
+		this.floatBuffer.put(vertices, offset, length);
+	}
+
+	/**
+	 * Skips vertices that are not drawn by the next draw. They keep whatever they held before.
+	 *
+	 * @param count
+	 *            the number of vertices to skip
+	 */
+	public void skipVertices(int count) {
+		Preconditions.checkState(isDrawing, "not drawing");
+		if (layout == VertexLayout.PACKED) {
+			byteBuffer.position(byteBuffer.position() + count * bytesPerVertex);
+			return;
+		}
+		floatBuffer.position(floatBuffer.position() + count * bytesPerVertex / 4);
+	}
+
+	private void putPacked(float x, float y, float z, float nx, float ny, float nz, float u, float v) {
+		ByteBuffer buffer = this.byteBuffer;
+		buffer.putFloat(x).putFloat(y).putFloat(z);
+		float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+		float normalScale = length == 0 ? 0 : 127 / length;
+		buffer.put((byte) Math.round(nx * normalScale));
+		buffer.put((byte) Math.round(ny * normalScale));
+		buffer.put((byte) Math.round(nz * normalScale));
+		buffer.put((byte) 0);
+		buffer.putShort(packUv(u)).putShort(packUv(v));
+	}
+
+	private static short packUv(float uv) {
+		int packed = Math.round(uv * VertexLayout.UV_SCALE);
+		return (short) Math.max(Math.min(packed, Short.MAX_VALUE), Short.MIN_VALUE);
+	}
+
+	private boolean isComplete() {
+		if (layout == VertexLayout.PACKED) {
+			return byteBuffer.remaining() == 0;
+		}
+		return floatBuffer.remaining() == 0;
+	}
+
 	public void draw() {
+		draw(allFirstIndices, allIndexCounts, 1);
+	}
+
+	/**
+	 * Same as {@link #draw()}, but only draws some ranges of the indices. The client state is only set up once for all
+	 * ranges.
+	 *
+	 * @param firstIndices
+	 *            the first index of each range
+	 * @param indexCounts
+	 *            the number of indices in each range
+	 * @param rangeCount
+	 *            the number of ranges to draw
+	 */
+	public void draw(int[] firstIndices, int[] indexCounts, int rangeCount) {
 		Preconditions.checkState(isDrawing, "not drawing");
-		Preconditions.checkState(floatBuffer.remaining() == 0, "not all vertices filled");
+		Preconditions.checkState(isComplete(), "not all vertices filled");
 		isDrawing = false;
+		isFilled = true;
+		uploadVertices(false);
+		drawBuffer(firstIndices, indexCounts, rangeCount);
+	}
 
-		this.floatBuffer.position(0);
-		GL11.glVertexPointer(3, BYTES_PER_VERTEX, this.floatBuffer);
+	/**
+	 * Draws the vertices of the last completed draw again, without having to add them anew. Useful for meshes that
+	 * never change.
+	 */
+	public void redraw() {
+		redraw(allFirstIndices, allIndexCounts, 1);
+	}
+
+	/**
+	 * Same as {@link #redraw()}, but only draws some ranges of the indices, see {@link #draw(int[], int[], int)}.
+	 */
+	public void redraw(int[] firstIndices, int[] indexCounts, int rangeCount) {
+		Preconditions.checkState(!isDrawing, "currently drawing");
+		Preconditions.checkState(isFilled, "no vertices to redraw");
+		drawBuffer(firstIndices, indexCounts, rangeCount);
+	}
+
+	/**
+	 * Fills the buffer with the vertices given without drawing them. They can later be drawn with {@link #redraw()}.
+	 *
+	 * @param vertices
+	 *            the vertex data, see {@link #addVertices(float[])}
+	 */
+	public void fill(float[] vertices) {
+		startDrawing();
+		addVertices(vertices);
+		Preconditions.checkState(isComplete(), "not all vertices filled");
+		isDrawing = false;
+		isFilled = true;
+		uploadVertices(true);
+	}
+
+	/**
+	 * @return all vertices, as bytes
+	 */
+	protected ByteBuffer getVertexBytes() {
+		byteBuffer.clear();
+		return byteBuffer;
+	}
+
+	/**
+	 * @return all indices, as bytes
+	 */
+	protected ByteBuffer getIndexBytes() {
+		indexBytes.clear();
+		return indexBytes;
+	}
+
+	protected int getBytesPerVertex() {
+		return bytesPerVertex;
+	}
+
+	protected VertexLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Called when all vertices have been added, before they are drawn. Nothing needs to be done when drawing from
+	 * client memory.
+	 *
+	 * @param isFinal
+	 *            true if the vertices will only be redrawn from now on
+	 */
+	protected void uploadVertices(boolean isFinal) {}
+
+	private void drawBuffer(int[] firstIndices, int[] indexCounts, int rangeCount) {
+		boolean isPacked = layout == VertexLayout.PACKED;
+		if (isPacked) {
+			scaleTextureMatrix(1f / VertexLayout.UV_SCALE);
+		}
+		enableArrays();
+		for (int i = 0; i < rangeCount; i++) {
+			drawElements(firstIndices[i], indexCounts[i]);
+		}
+		disableArrays();
+		if (isPacked) {
+			// Exact, the scale is a power of two
+			scaleTextureMatrix(VertexLayout.UV_SCALE);
+		}
+	}
+
+	/**
+	 * Scales the texture matrix instead of pushing it, the stack may be only two deep and already in use, e.g. by the
+	 * enchantment glint.
+	 */
+	private static void scaleTextureMatrix(float scale) {
+		GlStateManager.matrixMode(GL11.GL_TEXTURE);
+		GlStateManager.scale(scale, scale, 1);
+		GlStateManager.matrixMode(GL11.GL_MODELVIEW);
+	}
+
+	/**
+	 * Points GL to the vertex data and enables the client state needed to draw it.
+	 */
+	protected void enableArrays() {
+		ByteBuffer buffer = this.byteBuffer;
+		buffer.clear();
+		GL11.glVertexPointer(3, GL11.GL_FLOAT, bytesPerVertex, buffer);
 		GlStateManager.glEnableClientState(GL11.GL_VERTEX_ARRAY);
 
-		this.floatBuffer.position(3);
-		GL11.glNormalPointer(BYTES_PER_VERTEX, this.floatBuffer);
+		buffer.position(layout.getNormalOffset());
+		GL11.glNormalPointer(layout.getNormalType(), bytesPerVertex, buffer);
 		GlStateManager.glEnableClientState(GL11.GL_NORMAL_ARRAY);
 
-		this.floatBuffer.position(6);
-		GL11.glTexCoordPointer(2, BYTES_PER_VERTEX, this.floatBuffer);
+		buffer.position(layout.getUvOffset());
+		GL11.glTexCoordPointer(2, layout.getUvType(), bytesPerVertex, buffer);
 		GlStateManager.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		buffer.clear();
+	}
 
+	protected void drawElements(int firstIndex, int indexCount) {
+		indexBuffer.limit(firstIndex + indexCount).position(firstIndex);
 		GL11.glDrawElements(GL_TRIANGLES, indexBuffer);
+		indexBuffer.clear();
+	}
 
+	/**
+	 * Disables everything enabled by {@link #enableArrays()}.
+	 */
+	protected void disableArrays() {
 		GlStateManager.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
 		GlStateManager.glDisableClientState(GL11.GL_NORMAL_ARRAY);
 		GlStateManager.glDisableClientState(GL11.GL_VERTEX_ARRAY);
@@ -36,6 +36,11 @@ public interface IAnimatedObject {
 					float interpolatedPitch) {
 				return IAnimatedObject.class.cast(entity).preRenderCallback(partialTick, buffer);
 			}
+
+			@Override
+			public boolean supportsPrepass(T entity) {
+				return IAnimatedObject.class.cast(entity).supportsPrepass();
+			}
 		};
 	}
 
@@ -50,4 +55,13 @@ public interface IAnimatedObject {
 	 * @return A {@link RenderPassInformation} to use in the current pass, not null
 	 */
 	public RenderPassInformation preRenderCallback(float subFrame, RenderPassInformation callback);
+
+	/**
+	 * Whether the pose of the object may be prepared in the pose prepass, see {@link IEntityAnimator#supportsPrepass}.
+	 *
+	 * @return true if {@link #preRenderCallback(float, RenderPassInformation)} is pure, false by default
+	 */
+	public default boolean supportsPrepass() {
+		return false;
+	}
 }
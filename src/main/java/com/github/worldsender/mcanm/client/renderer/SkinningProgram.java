@@ -0,0 +1,107 @@
+package com.github.worldsender.mcanm.client.renderer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLContext;
+
+import com.github.worldsender.mcanm.MCAnm;
+import com.github.worldsender.mcanm.common.Utils;
+import com.google.common.base.Preconditions;
+
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * The vertex shader that skins meshes on the GPU. Each mesh uploads a palette of the bones it references before it is
+ * drawn, each vertex refers to up to {@link #BINDINGS_PER_VERTEX} bones of that palette. The fragments are left to the
+ * fixed function pipeline.<br>
+ * The program is compiled on first use. If the context doesn't support shaders or the program fails to compile, it is
+ * not available and meshes have to be skinned on the CPU.
+ */
+public class SkinningProgram {
+	public static final SkinningProgram INSTANCE = new SkinningProgram();
+	/** The maximum size of the palette, must match the shader */
+	public static final int MAX_BONES = 32;
+	public static final int BINDINGS_PER_VERTEX = 4;
+	public static final int BONE_INDICES_ATTRIBUTE = 6;
+	public static final int BONE_WEIGHTS_ATTRIBUTE = 7;
+	private static final ResourceLocation SOURCE = new ResourceLocation("mcanm:shaders/skinning.vsh");
+
+	private boolean isLoaded = false;
+	/** 0 if the program is not available */
+	private int program = 0;
+	private int bonesUniform;
+	private int lightingUniform;
+	private final FloatBuffer palette = Utils.directFloatBuffer(MAX_BONES * 12);
+
+	private SkinningProgram() {}
+
+	/**
+	 * Must only be called from the render thread, compiles the program if it isn't yet.
+	 *
+	 * @return whether the program can be used
+	 */
+	public boolean isAvailable() {
+		if (!isLoaded) {
+			isLoaded = true;
+			program = load();
+		}
+		return program != 0;
+	}
+
+	private int load() {
+		if (!OpenGlHelper.vboSupported || !GLContext.getCapabilities().OpenGL20) {
+			return 0;
+		}
+		int program = 0, shader = 0;
+		try (InputStream is = Minecraft.getMinecraft().getResourceManager().getResource(SOURCE).getInputStream()) {
+			shader = Utils.compileShaderSafe(GL20.GL_VERTEX_SHADER, is);
+			program = Utils.createProgramSafe();
+			GL20.glAttachShader(program, shader);
+			GL20.glBindAttribLocation(program, BONE_INDICES_ATTRIBUTE, "boneIndices");
+			GL20.glBindAttribLocation(program, BONE_WEIGHTS_ATTRIBUTE, "boneWeights");
+			Utils.linkProgramSafe(program);
+			bonesUniform = GL20.glGetUniformLocation(program, "bones");
+			lightingUniform = GL20.glGetUniformLocation(program, "lighting");
+			return program;
+		} catch (IOException | IllegalStateException e) {
+			MCAnm.logger().error("Failed loading the skinning shader, skinning on the CPU", e);
+			if (program != 0) {
+				GL20.glDeleteProgram(program);
+			}
+			return 0;
+		} finally {
+			if (shader != 0) {
+				// Only flagged for deletion while attached
+				GL20.glDeleteShader(shader);
+			}
+		}
+	}
+
+	/**
+	 * Binds the program and uploads the palette given. Call {@link #release()} after drawing.
+	 *
+	 * @param bones
+	 *            the transformation of each bone, row by row, 12 floats per bone
+	 * @param boneCount
+	 *            the number of bones in the palette, at most {@link #MAX_BONES}
+	 */
+	public void use(float[] bones, int boneCount) {
+		Preconditions.checkState(isAvailable(), "program not available");
+		Preconditions.checkArgument(boneCount <= MAX_BONES, "too many bones: %s", boneCount);
+		GL20.glUseProgram(program);
+		palette.clear();
+		palette.put(bones, 0, boneCount * 12).flip();
+		GL20.glUniform4(bonesUniform, palette);
+		GL20.glUniform1i(lightingUniform, GL11.glIsEnabled(GL11.GL_LIGHTING) ? 1 : 0);
+	}
+
+	public void release() {
+		GL20.glUseProgram(0);
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.worldsender.mcanm.client.renderer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Draws a mesh in its rest pose together with its bone bindings, to be skinned by the {@link SkinningProgram}. Each
+ * vertex is laid out as in {@link DrawElementsTesselator#FLOATS_PER_VERTEX}, followed by the indices and then the
+ * weights of {@link SkinningProgram#BINDINGS_PER_VERTEX} bones. The vertices are filled once and only redrawn.
+ */
+public class SkinningTesselator extends VertexBufferTesselator {
+	public static final int FLOATS_PER_VERTEX = DrawElementsTesselator.FLOATS_PER_VERTEX
+			+ 2 * SkinningProgram.BINDINGS_PER_VERTEX;
+
+	public SkinningTesselator(int vertexCount, short[] indices) {
+		super(vertexCount, FLOATS_PER_VERTEX, indices);
+	}
+
+	@Override
+	protected void enableArrays() {
+		super.enableArrays();
+		int stride = getBytesPerVertex();
+		int bindings = SkinningProgram.BINDINGS_PER_VERTEX;
+		int indices = SkinningProgram.BONE_INDICES_ATTRIBUTE, weights = SkinningProgram.BONE_WEIGHTS_ATTRIBUTE;
+		long offset = 4 * DrawElementsTesselator.FLOATS_PER_VERTEX;
+		GL20.glVertexAttribPointer(indices, bindings, GL11.GL_FLOAT, false, stride, offset);
+		GL20.glEnableVertexAttribArray(indices);
+		offset += 4 * bindings;
+		GL20.glVertexAttribPointer(weights, bindings, GL11.GL_FLOAT, false, stride, offset);
+		GL20.glEnableVertexAttribArray(weights);
+	}
+
+	@Override
+	protected void disableArrays() {
+		GL20.glDisableVertexAttribArray(SkinningProgram.BONE_WEIGHTS_ATTRIBUTE);
+		GL20.glDisableVertexAttribArray(SkinningProgram.BONE_INDICES_ATTRIBUTE);
+		super.disableArrays();
+	}
+}
@@ -0,0 +1,137 @@
+package com.github.worldsender.mcanm.client.renderer;
+
+import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+
+/**
+ * A {@link DrawElementsTesselator} that keeps the indices in an element buffer object, they are uploaded once. The
+ * vertices are streamed into a vertex buffer object. Each upload respecifies the whole storage of the buffer, so the
+ * driver can hand out fresh memory instead of waiting for the draw of the last frame (orphaning). Vertices that are
+ * final are uploaded once and only drawn from then on.<br>
+ * The buffers are created on the first draw. Buffers of tesselators that have been garbage collected, e.g. after a
+ * resource reload, are deleted the next time any tesselator creates its buffers.
+ */
+public class VertexBufferTesselator extends DrawElementsTesselator {
+	private static final ReferenceQueue<VertexBufferTesselator> collected = new ReferenceQueue<>();
+	/** Keeps the references alive until their tesselator has been collected */
+	private static final Set<BufferReference> liveBuffers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	private BufferReference buffers;
+	private boolean isStatic = false;
+
+	public VertexBufferTesselator(int vertexCount, short[] indices) {
+		super(vertexCount, indices);
+	}
+
+	public VertexBufferTesselator(int vertexCount, short[] indices, VertexLayout layout) {
+		super(vertexCount, indices, layout);
+	}
+
+	/**
+	 * @see DrawElementsTesselator#DrawElementsTesselator(int, int, short[])
+	 */
+	protected VertexBufferTesselator(int vertexCount, int floatsPerVertex, short[] indices) {
+		super(vertexCount, floatsPerVertex, indices);
+	}
+
+	private BufferReference getBuffers() {
+		if (buffers == null) {
+			deleteCollectedBuffers();
+			buffers = new BufferReference(this, OpenGlHelper.glGenBuffers(), OpenGlHelper.glGenBuffers());
+			liveBuffers.add(buffers);
+			OpenGlHelper.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers.indexBuffer);
+			OpenGlHelper.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, getIndexBytes(), GL15.GL_STATIC_DRAW);
+			OpenGlHelper.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		}
+		return buffers;
+	}
+
+	@Override
+	protected void uploadVertices(boolean isFinal) {
+		// Vertices are only filled on the render thread when they are drawn, defer the upload until then
+		isStatic = isFinal;
+		if (buffers == null && isFinal) {
+			return;
+		}
+		upload(getBuffers());
+	}
+
+	private void upload(BufferReference buffers) {
+		OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, buffers.vertexBuffer);
+		int usage = isStatic ? GL15.GL_STATIC_DRAW : GL15.GL_STREAM_DRAW;
+		OpenGlHelper.glBufferData(OpenGlHelper.GL_ARRAY_BUFFER, getVertexBytes(), usage);
+		OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, 0);
+	}
+
+	/**
+	 * Binds the buffers and points GL to the vertex data in them. Subclasses that store more per vertex can enable more
+	 * arrays here.
+	 */
+	@Override
+	protected void enableArrays() {
+		BufferReference buffers = this.buffers;
+		if (buffers == null) {
+			buffers = getBuffers();
+			upload(buffers);
+		}
+		OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, buffers.vertexBuffer);
+		OpenGlHelper.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, buffers.indexBuffer);
+
+		int stride = getBytesPerVertex();
+		VertexLayout layout = getLayout();
+		GL11.glVertexPointer(3, GL11.GL_FLOAT, stride, 0);
+		GlStateManager.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+
+		GL11.glNormalPointer(layout.getNormalType(), stride, layout.getNormalOffset());
+		GlStateManager.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+
+		GL11.glTexCoordPointer(2, layout.getUvType(), stride, layout.getUvOffset());
+		GlStateManager.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+	}
+
+	@Override
+	protected void drawElements(int firstIndex, int indexCount) {
+		GL11.glDrawElements(GL_TRIANGLES, indexCount, GL11.GL_UNSIGNED_SHORT, firstIndex * 2L);
+	}
+
+	@Override
+	protected void disableArrays() {
+		GlStateManager.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GlStateManager.glDisableClientState(GL11.GL_NORMAL_ARRAY);
+		GlStateManager.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		// The rest of minecraft draws from client memory
+		OpenGlHelper.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+		OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, 0);
+	}
+
+	private static void deleteCollectedBuffers() {
+		BufferReference reference;
+		while ((reference = (BufferReference) collected.poll()) != null) {
+			liveBuffers.remove(reference);
+			OpenGlHelper.glDeleteBuffers(reference.vertexBuffer);
+			OpenGlHelper.glDeleteBuffers(reference.indexBuffer);
+		}
+	}
+
+	private static class BufferReference extends WeakReference<VertexBufferTesselator> {
+		private final int vertexBuffer;
+		private final int indexBuffer;
+
+		public BufferReference(VertexBufferTesselator referent, int vertexBuffer, int indexBuffer) {
+			super(referent, collected);
+			this.vertexBuffer = vertexBuffer;
+			this.indexBuffer = indexBuffer;
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package com.github.worldsender.mcanm.client.renderer;
+
+import org.lwjgl.opengl.GL11;
+
+/**
+ * How a {@link DrawElementsTesselator} stores its vertices for GL. Vertices are always added as floats in the layout
+ * of {@link DrawElementsTesselator#FLOATS_PER_VERTEX} and encoded when they are added.
+ */
+public enum VertexLayout {
+	/** Everything as floats, 32 bytes per vertex */
+	FLOAT(32, GL11.GL_FLOAT, 12, GL11.GL_FLOAT, 24),
+	/**
+	 * Positions as floats, normals as normalized signed bytes padded to four bytes and texture coordinates as shorts in
+	 * fixed point, see {@link #UV_SCALE}. 20 bytes per vertex.
+	 */
+	PACKED(20, GL11.GL_BYTE, 12, GL11.GL_SHORT, 16);
+
+	/**
+	 * Packed texture coordinates are stored multiplied by this and scaled back by the texture matrix. A power of two,
+	 * so that the texture matrix can be restored exactly. Coordinates in [-16, 16) can be stored.
+	 */
+	public static final int UV_SCALE = 2048;
+
+	private final int bytesPerVertex;
+	private final int normalType;
+	private final int normalOffset;
+	private final int uvType;
+	private final int uvOffset;
+
+	private VertexLayout(int bytesPerVertex, int normalType, int normalOffset, int uvType, int uvOffset) {
+		this.bytesPerVertex = bytesPerVertex;
+		this.normalType = normalType;
+		this.normalOffset = normalOffset;
+		this.uvType = uvType;
+		this.uvOffset = uvOffset;
+	}
+
+	public int getBytesPerVertex() {
+		return bytesPerVertex;
+	}
+
+	/**
+	 * @return the GL type of the normal components
+	 */
+	public int getNormalType() {
+		return normalType;
+	}
+
+	/**
+	 * @return the offset of the normal in bytes, relative to the start of the vertex
+	 */
+	public int getNormalOffset() {
+		return normalOffset;
+	}
+
+	/**
+	 * @return the GL type of the texture coordinates
+	 */
+	public int getUvType() {
+		return uvType;
+	}
+
+	/**
+	 * @return the offset of the texture coordinates in bytes, relative to the start of the vertex
+	 */
+	public int getUvOffset() {
+		return uvOffset;
+	}
+}
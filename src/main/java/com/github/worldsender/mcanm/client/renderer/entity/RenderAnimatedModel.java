@@ -1,7 +1,11 @@
 package com.github.worldsender.mcanm.client.renderer.entity;
 
+import com.github.worldsender.mcanm.MCAnm;
+import com.github.worldsender.mcanm.Reference;
 import com.github.worldsender.mcanm.client.ClientLoader;
+import com.github.worldsender.mcanm.client.config.MCAnmConfiguration;
 import com.github.worldsender.mcanm.client.mcanmmodel.IModel;
+import com.github.worldsender.mcanm.client.mcanmmodel.gl.PosePrepass;
 import com.github.worldsender.mcanm.client.model.IEntityAnimator;
 import com.github.worldsender.mcanm.client.model.IEntityRender;
 import com.github.worldsender.mcanm.client.model.IRenderPassInformation;
@@ -11,21 +15,107 @@ import com.github.worldsender.mcanm.client.model.util.RenderPassInformation;
 import com.github.worldsender.mcanm.client.renderer.IAnimatedObject;
 import com.github.worldsender.mcanm.common.skeleton.ISkeleton;
 
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.culling.ClippingHelper;
+import net.minecraft.client.renderer.culling.ClippingHelperImpl;
+import net.minecraft.client.renderer.culling.Frustum;
+import net.minecraft.client.renderer.culling.ICamera;
+import net.minecraft.client.renderer.entity.Render;
 import net.minecraft.client.renderer.entity.RenderLiving;
 import net.minecraft.client.renderer.entity.RenderManager;
 import net.minecraft.client.resources.DefaultPlayerSkin;
+import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLiving;
 import net.minecraft.util.ResourceLocation;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
 import net.minecraftforge.fml.client.registry.IRenderFactory;
+import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
+import net.minecraftforge.fml.common.gameevent.TickEvent.RenderTickEvent;
+import net.minecraftforge.fml.relauncher.Side;
 
 public class RenderAnimatedModel<T extends EntityLiving> extends RenderLiving<T> implements IEntityRender<T> {
 	private static final ResourceLocation UNUSED_TEXTURE = DefaultPlayerSkin.getDefaultSkinLegacy();
+
+	/**
+	 * Runs the {@link PosePrepass} at the start of each frame, for all animated entities that will be rendered. The
+	 * entities are culled the same way the {@link RenderManager} culls them. The camera of this frame isn't set up yet
+	 * at that point, so the clipping planes of the last frame are saved while its camera is still set up and are used
+	 * at the position of this frame. Entities that are culled wrongly are still rendered the usual way.
+	 */
+	@EventBusSubscriber(modid = Reference.core_modid, value = Side.CLIENT)
+	private static class EventListener {
+		/** The clipping planes of the world camera in the last frame */
+		private static final ClippingHelper LAST_CLIPPING = new ClippingHelper();
+		private static final ICamera CAMERA = new Frustum(LAST_CLIPPING);
+		private static boolean hasLastClipping = false;
+
+		@SubscribeEvent
+		public static void atRenderWorldLast(RenderWorldLastEvent event) {
+			MCAnmConfiguration config = MCAnm.configuration();
+			if (!config.isPosePrepassEnabled() || !config.isPoseCacheEnabled()) {
+				return;
+			}
+			// Reads the matrices of the world camera, the hand is rendered after this event
+			ClippingHelper current = ClippingHelperImpl.getInstance();
+			for (int i = 0; i < current.frustum.length; i++) {
+				System.arraycopy(current.frustum[i], 0, LAST_CLIPPING.frustum[i], 0, current.frustum[i].length);
+			}
+			hasLastClipping = true;
+		}
+
+		@SubscribeEvent
+		public static void atRenderTick(RenderTickEvent event) {
+			MCAnmConfiguration config = MCAnm.configuration();
+			if (event.phase != Phase.START || !config.isPosePrepassEnabled() || !config.isPoseCacheEnabled()) {
+				return;
+			}
+			Minecraft mc = Minecraft.getMinecraft();
+			Entity viewer = mc.getRenderViewEntity();
+			if (mc.world == null || viewer == null) {
+				// The next world starts without a frustum
+				hasLastClipping = false;
+				return;
+			}
+			if (!hasLastClipping) {
+				return;
+			}
+			float partialTick = event.renderTickTime;
+			double x = viewer.lastTickPosX + (viewer.posX - viewer.lastTickPosX) * partialTick;
+			double y = viewer.lastTickPosY + (viewer.posY - viewer.lastTickPosY) * partialTick;
+			double z = viewer.lastTickPosZ + (viewer.posZ - viewer.lastTickPosZ) * partialTick;
+			CAMERA.setPosition(x, y, z);
+			RenderManager manager = mc.getRenderManager();
+			for (Entity entity : mc.world.loadedEntityList) {
+				if (!(entity instanceof EntityLiving)) {
+					continue;
+				}
+				Render<Entity> render = manager.getEntityRenderObject(entity);
+				if (render instanceof RenderAnimatedModel && render.shouldRender(entity, CAMERA, x, y, z)) {
+					// The render has been registered for the class of the entity
+					@SuppressWarnings("unchecked")
+					RenderAnimatedModel<EntityLiving> animatedRender = (RenderAnimatedModel<EntityLiving>) render;
+					EntityLiving living = (EntityLiving) entity;
+					// The same position relative to the camera as in doRender
+					double dx = entity.lastTickPosX + (entity.posX - entity.lastTickPosX) * partialTick - x;
+					double dy = entity.lastTickPosY + (entity.posY - entity.lastTickPosY) * partialTick - y;
+					double dz = entity.lastTickPosZ + (entity.posZ - entity.lastTickPosZ) * partialTick - z;
+					int level = animatedRender.getLevelOfDetail(living, dx * dx + dy * dy + dz * dz);
+					animatedRender.prepare(living, partialTick, level, PosePrepass.INSTANCE);
+				}
+			}
+			PosePrepass.INSTANCE.run();
+		}
+	}
+
 	protected ModelAnimated model;
 	private IEntityAnimator<T> animator;
 
 	private RenderPassInformation userPassCache = new RenderPassInformation();
 	private RenderPass<T> passCache = new RenderPass<>(userPassCache, this);
+	private RenderPassInformation prepassCache = new RenderPassInformation();
 	private float partialTick;
 
 	public RenderAnimatedModel(
@@ -39,6 +129,35 @@ public class RenderAnimatedModel<T extends EntityLiving> extends RenderLiving<T>
 		this.animator = animator;
 	}
 
+	@Override
+	public void doRender(T entity, double x, double y, double z, float entityYaw, float partialTicks) {
+		passCache.setLevelOfDetail(getLevelOfDetail(entity, x * x + y * y + z * z));
+		super.doRender(entity, x, y, z, entityYaw, partialTicks);
+	}
+
+	/**
+	 * Chooses the level of detail the entity is rendered in. By default each of the configured distances the entity is
+	 * farther away than makes it one level coarser.
+	 *
+	 * @param entity
+	 *            the entity that is about to be rendered
+	 * @param distanceSq
+	 *            the squared distance of the entity to the camera
+	 * @return the level of detail, 0 for the full model
+	 */
+	protected int getLevelOfDetail(T entity, double distanceSq) {
+		MCAnmConfiguration config = MCAnm.configuration();
+		if (!config.isLevelOfDetailEnabled()) {
+			return 0;
+		}
+		int level = 0;
+		for (double distance : config.getLevelOfDetailDistances()) {
+			if (distanceSq >= distance * distance)
+				level++;
+		}
+		return level;
+	}
+
 	@Override
 	protected void renderModel(
 			T entity,
@@ -62,6 +181,50 @@ public class RenderAnimatedModel<T extends EntityLiving> extends RenderLiving<T>
 		super.renderModel(entity, uLimbSwing, interpolatedSwing, uRotfloat, headYaw, interpolatedPitch, scaleFactor);
 	}
 
+	/**
+	 * Asks the animator how the entity will be rendered this frame and queues its pose in the prepass. The arguments
+	 * for the animator are computed the same way as when the entity is rendered, any transformation it applies is
+	 * discarded. Does nothing unless the animator {@link IEntityAnimator#supportsPrepass(EntityLiving) supports} the
+	 * prepass.
+	 *
+	 * @param entity
+	 *            the entity that is about to be rendered
+	 * @param partialTick
+	 *            the partial tick of the frame
+	 * @param levelOfDetail
+	 *            the level of detail the entity will be rendered in, see
+	 *            {@link #getLevelOfDetail(EntityLiving, double)}
+	 * @param prepass
+	 *            the prepass to queue the pose in
+	 */
+	public void prepare(T entity, float partialTick, int levelOfDetail, PosePrepass prepass) {
+		if (!getAnimator().supportsPrepass(entity)) {
+			return;
+		}
+		float bodyYaw = interpolateRotation(entity.prevRenderYawOffset, entity.renderYawOffset, partialTick);
+		float headYaw = interpolateRotation(entity.prevRotationYawHead, entity.rotationYawHead, partialTick) - bodyYaw;
+		float pitch = entity.prevRotationPitch + (entity.rotationPitch - entity.prevRotationPitch) * partialTick;
+		float rotFloat = handleRotationFloat(entity, partialTick);
+		float swing = entity.prevLimbSwingAmount + (entity.limbSwingAmount - entity.prevLimbSwingAmount) * partialTick;
+		float limbSwing = entity.limbSwing - entity.limbSwingAmount * (1.0F - partialTick);
+		if (entity.isChild()) {
+			limbSwing *= 3.0F;
+		}
+		prepassCache.reset();
+		GlStateManager.pushMatrix();
+		IRenderPassInformation state = getAnimator().preRenderCallback(
+				entity,
+				prepassCache,
+				partialTick,
+				limbSwing,
+				Math.min(swing, 1.0F),
+				rotFloat,
+				headYaw,
+				pitch);
+		GlStateManager.popMatrix();
+		model.prepare(state, levelOfDetail, prepass);
+	}
+
 	@Override
 	public float prepareScale(T entitylivingbaseIn, float partialTicks) {
 		GlStateManager.enableRescaleNormal();
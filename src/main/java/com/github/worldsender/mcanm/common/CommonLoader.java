@@ -63,4 +63,22 @@ public class CommonLoader {
 		ClassLoader context = CallResolver.INSTANCE.getCallingClass().getClassLoader();
 		return new StoredAnimation(MCAnm.proxy.getSidedResource(resLoc, context));
 	}
+
+	/**
+	 * Same as {@link #loadAnimation(ResourceLocation)}, but the animation is baked. Every bone is sampled at the rate
+	 * given, and playing the animation back only interpolates between neighbouring samples.
+	 * 
+	 * @param resLoc
+	 *            the resource location to load from
+	 * @param samplesPerFrame
+	 *            the number of samples per frame of the animation
+	 * @param quantize
+	 *            whether to quantize the samples to 16 bits, which uses less memory but is less precise
+	 * @return
+	 * @see #loadAnimation(ResourceLocation)
+	 */
+	public static StoredAnimation loadBakedAnimation(ResourceLocation resLoc, float samplesPerFrame, boolean quantize) {
+		ClassLoader context = CallResolver.INSTANCE.getCallingClass().getClassLoader();
+		return new StoredAnimation(MCAnm.proxy.getSidedResource(resLoc, context), samplesPerFrame, quantize);
+	}
 }
@@ -66,4 +66,23 @@ public interface IAnimation {
 	 * @return if a transformation has been set
 	 */
 	public boolean storeCurrentTransformation(String bone, float frame, BoneTransformation transform);
+
+	/**
+	 * Binds this animation to a fixed list of bones. The result answers requests by the index of a bone in that list,
+	 * which implementations can use to resolve bone names once instead of every frame.<br>
+	 * The default implementation simply forwards to
+	 * {@link #storeCurrentTransformation(String, float, BoneTransformation)}.<br>
+	 * Skeletons and pose evaluators cache the binding of each animation instance they are given, compared by identity.
+	 * An animation created anew every frame is bound again every frame, so binding it should be cheap, see
+	 * {@link com.github.worldsender.mcanm.client.model.util.Animations#combined(IAnimation...)}. Each skeleton and pose
+	 * evaluator passes the same array of bone names every time, which implementations can use to share bindings.
+	 *
+	 * @param boneNames
+	 *            the names of the bones, the index of a bone is its channel in the returned animation
+	 * @return this animation, bound to the bones given
+	 */
+	public default IBoundAnimation bindTo(String[] boneNames) {
+		String[] channels = boneNames.clone();
+		return (channel, frame, transform) -> storeCurrentTransformation(channels[channel], frame, transform);
+	}
 }
@@ -0,0 +1,42 @@
+package com.github.worldsender.mcanm.common.animation;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+
+/**
+ * An {@link IAnimation} that has been bound to a fixed list of bones, see {@link IAnimation#bindTo(String[])}. Bones
+ * are identified by their index in that list (the channel) instead of their name, so sampling doesn't need any lookups.
+ */
+public interface IBoundAnimation {
+	/**
+	 * Same as {@link IAnimation#storeCurrentTransformation(String, float, BoneTransformation)} but for the bone bound
+	 * to the given channel.
+	 *
+	 * @param channel
+	 *            the index of the bone in the list this animation was bound to
+	 * @param frame
+	 *            the current frame in the animation
+	 * @param transform
+	 *            the transform to set
+	 * @return if a transformation has been set
+	 */
+	boolean storeCurrentTransformation(int channel, float frame, BoneTransformation transform);
+
+	/**
+	 * Samples the bone bound to the given channel into the context, either as its {@link TransformComponents} or as a
+	 * matrix. All scratch space needed is taken from the context.<br>
+	 * The default implementation stores the matrix from
+	 * {@link #storeCurrentTransformation(int, float, BoneTransformation)}. Implementations that have the components at
+	 * hand should override this.
+	 *
+	 * @param channel
+	 *            the index of the bone in the list this animation was bound to
+	 * @param frame
+	 *            the current frame in the animation
+	 * @param context
+	 *            the context of the caller
+	 * @return if a sample has been stored
+	 */
+	default boolean sample(int channel, float frame, SamplingContext context) {
+		return storeCurrentTransformation(channel, frame, context.beginMatrix());
+	}
+}
@@ -0,0 +1,76 @@
+package com.github.worldsender.mcanm.common.animation;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+/**
+ * Everything needed to sample a bone from an {@link IBoundAnimation}, owned by the caller and passed along so that
+ * sampling doesn't need thread locals or allocations. A context must only be used by one thread at a time, usually it
+ * lives as long as the skeleton it poses.<br>
+ * An animation stores a sample either as its {@link TransformComponents} or as a matrix, whichever it has at hand. The
+ * caller then reads the sample in the form it needs.
+ */
+public class SamplingContext {
+	private final float[] components = new float[TransformComponents.COMPONENTS];
+	private final BoneTransformation transform = new BoneTransformation();
+	private final float[] scratch = new float[2 * TransformComponents.COMPONENTS];
+	private boolean isMatrix = false;
+
+	/**
+	 * Starts a sample given as components.
+	 *
+	 * @return the array to store the components of the sample into, starting at index 0
+	 */
+	public float[] beginComponents() {
+		isMatrix = false;
+		return components;
+	}
+
+	/**
+	 * Starts a sample given as a matrix.
+	 *
+	 * @return the transformation to store the sample into
+	 */
+	public BoneTransformation beginMatrix() {
+		isMatrix = true;
+		return transform;
+	}
+
+	/**
+	 * @return space for the implementation of an animation, e.g. to decode neighbouring samples. Not preserved between
+	 *         samples.
+	 */
+	public float[] getScratch() {
+		return scratch;
+	}
+
+	/**
+	 * Reads the last sample as components, decomposing it if it was given as a matrix.
+	 *
+	 * @param dst
+	 *            the array to store the components into
+	 * @param offset
+	 *            the index of the first component in dst
+	 */
+	public void getComponents(float[] dst, int offset) {
+		if (isMatrix) {
+			TransformComponents.decompose(transform.matrix, dst, offset);
+		} else {
+			System.arraycopy(components, 0, dst, offset, TransformComponents.COMPONENTS);
+		}
+	}
+
+	/**
+	 * Reads the last sample as a matrix.
+	 *
+	 * @param dst
+	 *            the matrix to store the sample into
+	 */
+	public void getMatrix(Matrix3x4f dst) {
+		if (isMatrix) {
+			dst.set(transform.matrix);
+		} else {
+			TransformComponents.compose(components, 0, dst);
+		}
+	}
+}
@@ -3,7 +3,9 @@ package com.github.worldsender.mcanm.common.animation;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.github.worldsender.mcanm.MCAnm;
 import com.github.worldsender.mcanm.common.animation.parts.AnimatedTransform;
+import com.github.worldsender.mcanm.common.animation.parts.BakedTransform;
 import com.github.worldsender.mcanm.common.animation.stored.RawData;
 import com.github.worldsender.mcanm.common.animation.visitor.IAnimationVisitable;
 import com.github.worldsender.mcanm.common.animation.visitor.IAnimationVisitor;
@@ -12,6 +14,11 @@ import com.github.worldsender.mcanm.common.util.ReloadableData;
 
 public class StoredAnimation extends ReloadableData<IAnimationVisitable> implements IAnimation {
 	private Map<String, AnimatedTransform> animations;
+	/** The baked transforms of the bones in {@link #animations}, empty if the animation is not baked */
+	private Map<String, BakedTransform> bakedAnimations;
+	/** 0 if the animation is not baked */
+	private float samplesPerFrame;
+	private boolean quantize;
 
 	private class AnimationVisitor implements IAnimationVisitor {
 		private final Map<String, AnimatedTransform> visitedAnimations = new HashMap<>();
@@ -26,21 +33,198 @@ public class StoredAnimation extends ReloadableData<IAnimationVisitable> impleme
 
 		@Override
 		public void visitEnd() {
+			StoredAnimation.this.bakedAnimations = bake(visitedAnimations);
 			StoredAnimation.this.animations = visitedAnimations;
 		}
 	}
 
+	/**
+	 * Resolves the bone names to their {@link AnimatedTransform}s once. When the animation is reloaded the names are
+	 * resolved again on the next request. Each channel keeps a cursor, so that playing the animation forward doesn't
+	 * have to search for keyframes.
+	 */
+	private class BoundAnimation implements IBoundAnimation {
+		private final String[] boneNames;
+		private Map<String, AnimatedTransform> boundAnimations;
+		private AnimatedTransform[] channels;
+		private BakedTransform[] bakedChannels;
+		private AnimatedTransform.Cursor[] cursors;
+		/** For {@link #storeCurrentTransformation(int, float, BoneTransformation)}, which gets no context */
+		private final SamplingContext context = new SamplingContext();
+
+		public BoundAnimation(String[] boneNames) {
+			this.boneNames = boneNames.clone();
+			this.channels = new AnimatedTransform[boneNames.length];
+			this.bakedChannels = new BakedTransform[boneNames.length];
+			this.cursors = new AnimatedTransform.Cursor[boneNames.length];
+		}
+
+		private void checkBinding() {
+			Map<String, AnimatedTransform> currentAnimations = animations;
+			if (boundAnimations != currentAnimations) {
+				for (int i = 0; i < boneNames.length; i++) {
+					channels[i] = currentAnimations.get(boneNames[i]);
+					bakedChannels[i] = bakedAnimations.get(boneNames[i]);
+					cursors[i] = new AnimatedTransform.Cursor();
+				}
+				boundAnimations = currentAnimations;
+			}
+		}
+
+		@Override
+		public boolean storeCurrentTransformation(int channel, float frame, BoneTransformation transform) {
+			checkBinding();
+			BakedTransform baked = bakedChannels[channel];
+			if (baked != null) {
+				baked.storeTransformAt(frame, transform, context);
+				return true;
+			}
+			AnimatedTransform anim = channels[channel];
+			if (anim == null) {
+				return false;
+			}
+			anim.storeTransformAt(frame, transform, cursors[channel]);
+			return true;
+		}
+
+		@Override
+		public boolean sample(int channel, float frame, SamplingContext context) {
+			checkBinding();
+			BakedTransform baked = bakedChannels[channel];
+			if (baked != null) {
+				baked.storeComponentsAt(frame, context.beginComponents(), 0, context);
+				return true;
+			}
+			AnimatedTransform anim = channels[channel];
+			if (anim == null) {
+				return false;
+			}
+			if (anim.isStatic()) {
+				// Copies the precomputed matrix instead of evaluating the channels and composing it again
+				anim.storeTransformAt(frame, context.beginMatrix());
+				return true;
+			}
+			anim.storeComponentsAt(frame, context.beginComponents(), 0, cursors[channel]);
+			return true;
+		}
+	}
+
 	public StoredAnimation(IResourceLocation resource) {
-		super(resource, RawData::retrieveFrom, RawData.MISSING_DATA);
+		this(resource, 0f, false);
+	}
+
+	/**
+	 * Loads an animation that is baked, that is every bone is sampled at a fixed rate whenever the animation is
+	 * (re)loaded. Playing a baked animation only interpolates between neighbouring samples instead of evaluating the
+	 * curves of each bone, at the cost of precision.<br>
+	 * The curves of bones that hold their first and last keyframe before and after the animation are dropped after
+	 * baking. With quantized samples, this usually needs a fraction of the memory of the curves.
+	 *
+	 * @param resource
+	 *            the resource to load from
+	 * @param samplesPerFrame
+	 *            the number of samples per frame of the animation, 0 to not bake the animation
+	 * @param quantize
+	 *            whether to quantize the samples to 16 bits instead of storing them as floats
+	 */
+	public StoredAnimation(IResourceLocation resource, float samplesPerFrame, boolean quantize) {
+		super(resource, RawData::retrieveFrom, RawData.MISSING_DATA, samplesPerFrame, quantize);
 	}
 
 	@Override
 	protected void preInit(Object... args) {
 		this.animations = new HashMap<>();
+		this.bakedAnimations = new HashMap<>();
+		this.samplesPerFrame = Float.class.cast(args[0]);
+		this.quantize = Boolean.class.cast(args[1]);
+		if (!(samplesPerFrame >= 0)) {
+			throw new IllegalArgumentException("Samples per frame must not be negative, was " + samplesPerFrame);
+		}
+	}
+
+	private Map<String, BakedTransform> bake(Map<String, AnimatedTransform> transforms) {
+		Map<String, BakedTransform> baked = new HashMap<>();
+		if (samplesPerFrame == 0) {
+			return baked;
+		}
+		for (Map.Entry<String, AnimatedTransform> entry : transforms.entrySet()) {
+			BakedTransform bakedTransform = BakedTransform.bake(entry.getValue(), samplesPerFrame, quantize);
+			if (bakedTransform != null) {
+				baked.put(entry.getKey(), bakedTransform);
+			}
+		}
+		if (MCAnm.isDebug) {
+			MCAnm.logger().info(profileBaking(transforms, baked));
+		}
+		// The curves are only needed outside of the sampled range
+		for (Map.Entry<String, BakedTransform> entry : baked.entrySet()) {
+			if (entry.getValue().getSource() == null) {
+				transforms.remove(entry.getKey());
+			}
+		}
+		return baked;
+	}
+
+	/**
+	 * Samples all baked bones at each of their samples, once from the curves and once from the baked tracks, to compare
+	 * the memory use and speed of both.
+	 */
+	private String profileBaking(Map<String, AnimatedTransform> transforms, Map<String, BakedTransform> baked) {
+		BoneTransformation transform = new BoneTransformation();
+		SamplingContext context = new SamplingContext();
+		int bones = 0, splines = 0, samples = 0, bytes = 0;
+		long curveTime = 0, bakedTime = 0;
+		for (Map.Entry<String, BakedTransform> entry : baked.entrySet()) {
+			AnimatedTransform source = transforms.get(entry.getKey());
+			BakedTransform bakedTransform = entry.getValue();
+			float start = bakedTransform.getStartFrame();
+			// Sample between the baked samples, so that both paths have to interpolate
+			int sampleCount = bakedTransform.getSampleCount() - 1;
+			long time = System.nanoTime();
+			for (int i = 0; i < sampleCount; i++) {
+				source.storeTransformAt(start + (i + 0.5f) / samplesPerFrame, transform);
+			}
+			curveTime += System.nanoTime() - time;
+			time = System.nanoTime();
+			for (int i = 0; i < sampleCount; i++) {
+				bakedTransform.storeTransformAt(start + (i + 0.5f) / samplesPerFrame, transform, context);
+			}
+			bakedTime += System.nanoTime() - time;
+			bones++;
+			splines += source.getSplineCount();
+			samples += bakedTransform.getSampleCount();
+			bytes += bakedTransform.getSizeInBytes();
+		}
+		return String.format(
+				"Baked %d bones of %s (%d splines) into %d samples (%d bytes). "
+						+ "Sampling took %.3f ms from the curves, %.3f ms baked.",
+				bones,
+				getResourceLocation().getResourceName(),
+				splines,
+				samples,
+				bytes,
+				curveTime / 1e6,
+				bakedTime / 1e6);
+	}
+
+	/**
+	 * @return the memory used by the baked tracks in bytes, 0 if the animation is not baked
+	 */
+	public int getBakedSizeInBytes() {
+		int bytes = 0;
+		for (BakedTransform baked : bakedAnimations.values()) {
+			bytes += baked.getSizeInBytes();
+		}
+		return bytes;
 	}
 
 	@Override
 	public boolean storeCurrentTransformation(String bone, float frame, BoneTransformation transform) {
+		BakedTransform baked = this.bakedAnimations.get(bone);
+		if (baked != null) {
+			baked.storeTransformAt(frame, transform);
+			return true;
+		}
 		AnimatedTransform anim = this.animations.get(bone);
 		if (anim == null) {
 			return false;
@@ -49,9 +233,15 @@ public class StoredAnimation extends ReloadableData<IAnimationVisitable> impleme
 		return true;
 	}
 
+	@Override
+	public IBoundAnimation bindTo(String[] boneNames) {
+		return new BoundAnimation(boneNames);
+	}
+
 	@Override
 	protected void loadData(IAnimationVisitable data) {
 		animations.clear();
+		bakedAnimations.clear();
 		data.visitBy(this.new AnimationVisitor());
 	}
 }
@@ -0,0 +1,267 @@
+package com.github.worldsender.mcanm.common.animation;
+
+import javax.vecmath.Matrix4f;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+/**
+ * Operations on bone transformations stored as their components instead of as a matrix. The 10 components of a
+ * transformation are the translation (x, y, z), the unit rotation quaternion (x, y, z, w) and the scale (x, y, z), in
+ * this order, starting at some offset in a float array.<br>
+ * Components can be interpolated and added, which matrices can't. The matrix they describe is the one built by
+ * {@link BoneTransformation#BoneTransformation(javax.vecmath.Vector3f, javax.vecmath.Quat4f, javax.vecmath.Vector3f)}.
+ */
+public final class TransformComponents {
+	public static final int COMPONENTS = 10;
+	public static final int TRANSLATION = 0;
+	public static final int ROTATION = 3;
+	public static final int SCALE = 7;
+
+	private TransformComponents() {}
+
+	/**
+	 * Stores the identity transformation, that is the bind pose of a bone.
+	 */
+	public static void setIdentity(float[] dst, int offset) {
+		for (int i = 0; i < COMPONENTS; i++) {
+			dst[offset + i] = 0;
+		}
+		dst[offset + ROTATION + 3] = 1;
+		dst[offset + SCALE + 0] = 1;
+		dst[offset + SCALE + 1] = 1;
+		dst[offset + SCALE + 2] = 1;
+	}
+
+	/**
+	 * Builds the matrix described by the components.
+	 *
+	 * @param src
+	 *            the components
+	 * @param offset
+	 *            the index of the first component in src
+	 * @param dst
+	 *            the matrix to store the result into
+	 */
+	public static void compose(float[] src, int offset, Matrix4f dst) {
+		compose(
+				src[offset + TRANSLATION + 0],
+				src[offset + TRANSLATION + 1],
+				src[offset + TRANSLATION + 2],
+				src[offset + ROTATION + 0],
+				src[offset + ROTATION + 1],
+				src[offset + ROTATION + 2],
+				src[offset + ROTATION + 3],
+				src[offset + SCALE + 0],
+				src[offset + SCALE + 1],
+				src[offset + SCALE + 2],
+				dst);
+	}
+
+	/**
+	 * Same as {@link #compose(float[], int, Matrix4f)}, with the components given one by one.
+	 */
+	public static void compose(
+			float tx,
+			float ty,
+			float tz,
+			float x,
+			float y,
+			float z,
+			float w,
+			float sx,
+			float sy,
+			float sz,
+			Matrix4f dst) {
+		dst.m00 = (1 - 2 * y * y - 2 * z * z) * sx;
+		dst.m01 = 2 * (x * y - w * z) * sx;
+		dst.m02 = 2 * (x * z + w * y) * sx;
+		dst.m03 = tx;
+		dst.m10 = 2 * (x * y + w * z) * sy;
+		dst.m11 = (1 - 2 * x * x - 2 * z * z) * sy;
+		dst.m12 = 2 * (y * z - w * x) * sy;
+		dst.m13 = ty;
+		dst.m20 = 2 * (x * z - w * y) * sz;
+		dst.m21 = 2 * (y * z + w * x) * sz;
+		dst.m22 = (1 - 2 * x * x - 2 * y * y) * sz;
+		dst.m23 = tz;
+		dst.m30 = dst.m31 = dst.m32 = 0;
+		dst.m33 = 1;
+	}
+
+	/**
+	 * Same as {@link #compose(float[], int, Matrix4f)}, but builds an affine matrix.
+	 */
+	public static void compose(float[] src, int offset, Matrix3x4f dst) {
+		float x = src[offset + ROTATION + 0], y = src[offset + ROTATION + 1];
+		float z = src[offset + ROTATION + 2], w = src[offset + ROTATION + 3];
+		float sx = src[offset + SCALE + 0], sy = src[offset + SCALE + 1], sz = src[offset + SCALE + 2];
+		dst.m00 = (1 - 2 * y * y - 2 * z * z) * sx;
+		dst.m01 = 2 * (x * y - w * z) * sx;
+		dst.m02 = 2 * (x * z + w * y) * sx;
+		dst.m03 = src[offset + TRANSLATION + 0];
+		dst.m10 = 2 * (x * y + w * z) * sy;
+		dst.m11 = (1 - 2 * x * x - 2 * z * z) * sy;
+		dst.m12 = 2 * (y * z - w * x) * sy;
+		dst.m13 = src[offset + TRANSLATION + 1];
+		dst.m20 = 2 * (x * z - w * y) * sz;
+		dst.m21 = 2 * (y * z + w * x) * sz;
+		dst.m22 = (1 - 2 * x * x - 2 * y * y) * sz;
+		dst.m23 = src[offset + TRANSLATION + 2];
+	}
+
+	/**
+	 * Splits a matrix that has been built by {@link #compose(float[], int, Matrix4f)}, or any other matrix without
+	 * shear, into its components.
+	 *
+	 * @param src
+	 *            the matrix
+	 * @param dst
+	 *            the array to store the components into
+	 * @param offset
+	 *            the index of the first component in dst
+	 */
+	public static void decompose(Matrix4f src, float[] dst, int offset) {
+		float sx = (float) Math.sqrt(src.m00 * src.m00 + src.m01 * src.m01 + src.m02 * src.m02);
+		float sy = (float) Math.sqrt(src.m10 * src.m10 + src.m11 * src.m11 + src.m12 * src.m12);
+		float sz = (float) Math.sqrt(src.m20 * src.m20 + src.m21 * src.m21 + src.m22 * src.m22);
+		if (src.determinant() < 0) {
+			sx = -sx;
+		}
+		dst[offset + TRANSLATION + 0] = src.m03;
+		dst[offset + TRANSLATION + 1] = src.m13;
+		dst[offset + TRANSLATION + 2] = src.m23;
+		dst[offset + SCALE + 0] = sx;
+		dst[offset + SCALE + 1] = sy;
+		dst[offset + SCALE + 2] = sz;
+		float ix = sx == 0 ? 0 : 1 / sx, iy = sy == 0 ? 0 : 1 / sy, iz = sz == 0 ? 0 : 1 / sz;
+		float r00 = src.m00 * ix, r01 = src.m01 * ix, r02 = src.m02 * ix;
+		float r10 = src.m10 * iy, r11 = src.m11 * iy, r12 = src.m12 * iy;
+		float r20 = src.m20 * iz, r21 = src.m21 * iz, r22 = src.m22 * iz;
+		float trace = r00 + r11 + r22;
+		float x, y, z, w;
+		if (trace > 0) {
+			float s = (float) Math.sqrt(trace + 1) * 2;
+			w = s / 4;
+			x = (r21 - r12) / s;
+			y = (r02 - r20) / s;
+			z = (r10 - r01) / s;
+		} else if (r00 > r11 && r00 > r22) {
+			float s = (float) Math.sqrt(1 + r00 - r11 - r22) * 2;
+			w = (r21 - r12) / s;
+			x = s / 4;
+			y = (r01 + r10) / s;
+			z = (r02 + r20) / s;
+		} else if (r11 > r22) {
+			float s = (float) Math.sqrt(1 + r11 - r00 - r22) * 2;
+			w = (r02 - r20) / s;
+			x = (r01 + r10) / s;
+			y = s / 4;
+			z = (r12 + r21) / s;
+		} else {
+			float s = (float) Math.sqrt(1 + r22 - r00 - r11) * 2;
+			w = (r10 - r01) / s;
+			x = (r02 + r20) / s;
+			y = (r12 + r21) / s;
+			z = s / 4;
+		}
+		dst[offset + ROTATION + 0] = x;
+		dst[offset + ROTATION + 1] = y;
+		dst[offset + ROTATION + 2] = z;
+		dst[offset + ROTATION + 3] = w;
+		normalizeRotation(dst, offset);
+	}
+
+	/**
+	 * Interpolates between two transformations, linearly for translation and scale and normalized linearly for the
+	 * rotation, along the shorter way. The destination may be one of the sources.
+	 *
+	 * @param a
+	 *            the components at weight 0
+	 * @param offsetA
+	 *            the index of the first component in a
+	 * @param b
+	 *            the components at weight 1
+	 * @param offsetB
+	 *            the index of the first component in b
+	 * @param weight
+	 *            the weight of b
+	 * @param dst
+	 *            the array to store the result into
+	 * @param offset
+	 *            the index of the first component in dst
+	 */
+	public static void interpolate(
+			float[] a,
+			int offsetA,
+			float[] b,
+			int offsetB,
+			float weight,
+			float[] dst,
+			int offset) {
+		float f = weight, g = 1 - weight;
+		float dot = 0;
+		for (int i = ROTATION; i < SCALE; i++) {
+			dot += a[offsetA + i] * b[offsetB + i];
+		}
+		// q and -q are the same rotation
+		float fr = dot < 0 ? -f : f;
+		for (int i = 0; i < COMPONENTS; i++) {
+			float factor = i >= ROTATION && i < SCALE ? fr : f;
+			dst[offset + i] = g * a[offsetA + i] + factor * b[offsetB + i];
+		}
+		normalizeRotation(dst, offset);
+	}
+
+	/**
+	 * Adds a transformation on top of another one, scaled by a weight. The translation is added, the rotation is
+	 * applied after the base rotation and the scale multiplies the base scale. At weight 0 the base is not changed, at
+	 * weight 1 the full addition is applied.
+	 *
+	 * @param base
+	 *            the components to add to, also where the result is stored
+	 * @param offset
+	 *            the index of the first component in base
+	 * @param addition
+	 *            the components to add
+	 * @param offsetAddition
+	 *            the index of the first component in addition
+	 * @param weight
+	 *            how much of the addition to apply
+	 */
+	public static void add(float[] base, int offset, float[] addition, int offsetAddition, float weight) {
+		float g = 1 - weight;
+		for (int i = 0; i < 3; i++) {
+			base[offset + TRANSLATION + i] += weight * addition[offsetAddition + TRANSLATION + i];
+			base[offset + SCALE + i] *= g + weight * addition[offsetAddition + SCALE + i];
+		}
+		// Interpolate the addition from the identity rotation, the shorter way
+		float sign = addition[offsetAddition + ROTATION + 3] < 0 ? -weight : weight;
+		float bx = sign * addition[offsetAddition + ROTATION + 0];
+		float by = sign * addition[offsetAddition + ROTATION + 1];
+		float bz = sign * addition[offsetAddition + ROTATION + 2];
+		float bw = g + sign * addition[offsetAddition + ROTATION + 3];
+		float ax = base[offset + ROTATION + 0], ay = base[offset + ROTATION + 1];
+		float az = base[offset + ROTATION + 2], aw = base[offset + ROTATION + 3];
+		base[offset + ROTATION + 0] = aw * bx + ax * bw + ay * bz - az * by;
+		base[offset + ROTATION + 1] = aw * by - ax * bz + ay * bw + az * bx;
+		base[offset + ROTATION + 2] = aw * bz + ax * by - ay * bx + az * bw;
+		base[offset + ROTATION + 3] = aw * bw - ax * bx - ay * by - az * bz;
+		normalizeRotation(base, offset);
+	}
+
+	private static void normalizeRotation(float[] dst, int offset) {
+		float x = dst[offset + ROTATION + 0], y = dst[offset + ROTATION + 1];
+		float z = dst[offset + ROTATION + 2], w = dst[offset + ROTATION + 3];
+		float lengthSquared = x * x + y * y + z * z + w * w;
+		if (lengthSquared == 0) {
+			dst[offset + ROTATION + 3] = 1;
+			return;
+		}
+		float norm = (float) (1 / Math.sqrt(lengthSquared));
+		dst[offset + ROTATION + 0] = x * norm;
+		dst[offset + ROTATION + 1] = y * norm;
+		dst[offset + ROTATION + 2] = z * norm;
+		dst[offset + ROTATION + 3] = w * norm;
+	}
+}
@@ -3,12 +3,11 @@ package com.github.worldsender.mcanm.common.animation.parts;
 import java.io.DataInputStream;
 import java.io.IOException;
 
-import javax.vecmath.Quat4f;
-import javax.vecmath.Vector3f;
+import javax.vecmath.Matrix4f;
 
-import com.github.worldsender.mcanm.common.Utils;
 import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
 import com.github.worldsender.mcanm.common.animation.StoredAnimation;
+import com.github.worldsender.mcanm.common.animation.TransformComponents;
 import com.github.worldsender.mcanm.common.animation.parts.AnimatedValue.AnimatedValueBuilder;
 import com.github.worldsender.mcanm.common.exceptions.ModelFormatException;
 
@@ -44,10 +43,27 @@ public class AnimatedTransform {
 
 		public AnimatedTransform buildAndReset() {
 			AnimatedTransform ret = value;
+			ret.findStaticTransform();
 			return ret;
 		}
 	}
 
+	/**
+	 * The {@link AnimatedValue.Cursor}s for all channels of one transform.
+	 */
+	public static class Cursor {
+		private final AnimatedValue.Cursor loc_x = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor loc_y = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor loc_z = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor quat_x = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor quat_y = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor quat_z = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor quat_w = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor scale_x = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor scale_y = new AnimatedValue.Cursor();
+		private final AnimatedValue.Cursor scale_z = new AnimatedValue.Cursor();
+	}
+
 	private AnimatedValue loc_x;
 	private AnimatedValue loc_y;
 	private AnimatedValue loc_z;
@@ -59,9 +75,8 @@ public class AnimatedTransform {
 	private AnimatedValue scale_y;
 	private AnimatedValue scale_z;
 
-	private ThreadLocal<Vector3f> translationBuffer = ThreadLocal.withInitial(Vector3f::new);
-	private ThreadLocal<Quat4f> rotationBuffer = ThreadLocal.withInitial(Quat4f::new);
-	private ThreadLocal<Vector3f> scaleBuffer = ThreadLocal.withInitial(Vector3f::new);
+	/** Precomputed when all channels are constant, null otherwise */
+	private Matrix4f staticTransform;
 
 	/**
 	 * Reads a {@link AnimatedTransform} from the {@link DataInputStream} given.
@@ -71,6 +86,134 @@ public class AnimatedTransform {
 	private AnimatedTransform() {
 		loc_x = loc_y = loc_z = quat_x = quat_y = quat_z = AnimatedValue.CONSTANT_ZERO;
 		quat_w = scale_x = scale_y = scale_z = AnimatedValue.CONSTANT_ONE;
+		findStaticTransform();
+	}
+
+	private AnimatedValue[] getChannels() {
+		return new AnimatedValue[] { loc_x, loc_y, loc_z, quat_x, quat_y, quat_z, quat_w, scale_x, scale_y, scale_z };
+	}
+
+	private void findStaticTransform() {
+		staticTransform = null;
+		for (AnimatedValue channel : getChannels()) {
+			if (!channel.isConstant()) {
+				return;
+			}
+		}
+		BoneTransformation transform = new BoneTransformation();
+		storeTransformAt(0, transform);
+		staticTransform = transform.matrix;
+	}
+
+	/**
+	 * A transform is static if the bone doesn't move during the animation, that is all its channels are constant.
+	 *
+	 * @return true if the transformation is the same for all frames
+	 */
+	public boolean isStatic() {
+		return staticTransform != null;
+	}
+
+	/**
+	 * Finds the range of frames in which the transform changes. Outside of it, the channels hold the value of their
+	 * first or last keyframe.
+	 *
+	 * @return the first and the last keyframe of all channels, or null if the transform is static or the keyframes of
+	 *         a channel are unknown
+	 */
+	public float[] getKeyFrameRange() {
+		if (isStatic()) {
+			return null;
+		}
+		float first = Float.POSITIVE_INFINITY, last = Float.NEGATIVE_INFINITY;
+		for (AnimatedValue channel : getChannels()) {
+			if (channel.isConstant()) {
+				continue;
+			}
+			if (!channel.isKeyed()) {
+				return null;
+			}
+			first = Math.min(first, channel.getFirstKeyTime());
+			last = Math.max(last, channel.getLastKeyTime());
+		}
+		return new float[] { first, last };
+	}
+
+	/**
+	 * @return true if the transform before the first and after the last keyframe is the transform at that keyframe
+	 * @see #getKeyFrameRange()
+	 */
+	public boolean isConstantOutsideKeys() {
+		for (AnimatedValue channel : getChannels()) {
+			if (!channel.isConstantOutsideKeys()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the total number of splines of all channels
+	 */
+	public int getSplineCount() {
+		int count = 0;
+		for (AnimatedValue channel : getChannels()) {
+			count += channel.getSplineCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Stores the translation, the normalized rotation and the scale of the bone at the frame given, in this order. See
+	 * {@link TransformComponents}.
+	 *
+	 * @param frame
+	 *            the frame to evaluate
+	 * @param dst
+	 *            the array to store the 10 components into
+	 * @param offset
+	 *            the index of the first component in dst
+	 */
+	public void storeComponentsAt(float frame, float[] dst, int offset) {
+		dst[offset + 0] = loc_x.getValueAt(frame);
+		dst[offset + 1] = loc_y.getValueAt(frame);
+		dst[offset + 2] = loc_z.getValueAt(frame);
+		float qx = quat_x.getValueAt(frame), qy = quat_y.getValueAt(frame);
+		float qz = quat_z.getValueAt(frame), qw = quat_w.getValueAt(frame);
+		float norm = (float) (1 / Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+		dst[offset + 3] = qx * norm;
+		dst[offset + 4] = qy * norm;
+		dst[offset + 5] = qz * norm;
+		dst[offset + 6] = qw * norm;
+		dst[offset + 7] = scale_x.getValueAt(frame);
+		dst[offset + 8] = scale_y.getValueAt(frame);
+		dst[offset + 9] = scale_z.getValueAt(frame);
+	}
+
+	/**
+	 * Same as {@link #storeComponentsAt(float, float[], int)}, but the keyframes are looked up starting from the cursor
+	 * given.
+	 *
+	 * @param frame
+	 * @param dst
+	 * @param offset
+	 * @param cursor
+	 *            the cursor of the caller, updated to the frame given
+	 */
+	public void storeComponentsAt(float frame, float[] dst, int offset, Cursor cursor) {
+		dst[offset + 0] = loc_x.getValueAt(frame, cursor.loc_x);
+		dst[offset + 1] = loc_y.getValueAt(frame, cursor.loc_y);
+		dst[offset + 2] = loc_z.getValueAt(frame, cursor.loc_z);
+		float qx = quat_x.getValueAt(frame, cursor.quat_x), qy = quat_y.getValueAt(frame, cursor.quat_y);
+		float qz = quat_z.getValueAt(frame, cursor.quat_z), qw = quat_w.getValueAt(frame, cursor.quat_w);
+		float norm = (float) (1 / Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+		dst[offset + 3] = qx * norm;
+		dst[offset + 4] = qy * norm;
+		dst[offset + 5] = qz * norm;
+		dst[offset + 6] = qw * norm;
+		dst[offset + 7] = scale_x.getValueAt(frame, cursor.scale_x);
+		dst[offset + 8] = scale_y.getValueAt(frame, cursor.scale_y);
+		dst[offset + 9] = scale_z.getValueAt(frame, cursor.scale_z);
 	}
 
 	/**
@@ -83,13 +226,68 @@ public class AnimatedTransform {
 	 * @return
 	 */
 	public void storeTransformAt(float frame, BoneTransformation transform) {
-		Vector3f t = translationBuffer.get();
-		t.set(loc_x.getValueAt(frame), loc_y.getValueAt(frame), loc_z.getValueAt(frame));
-		Quat4f r = rotationBuffer.get();
-		r.set(quat_x.getValueAt(frame), quat_y.getValueAt(frame), quat_z.getValueAt(frame), quat_w.getValueAt(frame));
-		r.normalize();
-		Vector3f s = scaleBuffer.get();
-		s.set(scale_x.getValueAt(frame), scale_y.getValueAt(frame), scale_z.getValueAt(frame));
-		Utils.fromRTS(r, t, s, transform.matrix);
+		if (staticTransform != null) {
+			transform.matrix.set(staticTransform);
+			return;
+		}
+		compose(
+				loc_x.getValueAt(frame),
+				loc_y.getValueAt(frame),
+				loc_z.getValueAt(frame),
+				quat_x.getValueAt(frame),
+				quat_y.getValueAt(frame),
+				quat_z.getValueAt(frame),
+				quat_w.getValueAt(frame),
+				scale_x.getValueAt(frame),
+				scale_y.getValueAt(frame),
+				scale_z.getValueAt(frame),
+				transform.matrix);
+	}
+
+	/**
+	 * Same as {@link #storeTransformAt(float, BoneTransformation)}, but the keyframes are looked up starting from the
+	 * cursor given.
+	 *
+	 * @param frame
+	 * @param transform
+	 * @param cursor
+	 *            the cursor of the caller, updated to the frame given
+	 */
+	public void storeTransformAt(float frame, BoneTransformation transform, Cursor cursor) {
+		if (staticTransform != null) {
+			transform.matrix.set(staticTransform);
+			return;
+		}
+		compose(
+				loc_x.getValueAt(frame, cursor.loc_x),
+				loc_y.getValueAt(frame, cursor.loc_y),
+				loc_z.getValueAt(frame, cursor.loc_z),
+				quat_x.getValueAt(frame, cursor.quat_x),
+				quat_y.getValueAt(frame, cursor.quat_y),
+				quat_z.getValueAt(frame, cursor.quat_z),
+				quat_w.getValueAt(frame, cursor.quat_w),
+				scale_x.getValueAt(frame, cursor.scale_x),
+				scale_y.getValueAt(frame, cursor.scale_y),
+				scale_z.getValueAt(frame, cursor.scale_z),
+				transform.matrix);
+	}
+
+	/**
+	 * Normalizes the rotation and builds the matrix, without any scratch objects.
+	 */
+	private static void compose(
+			float tx,
+			float ty,
+			float tz,
+			float qx,
+			float qy,
+			float qz,
+			float qw,
+			float sx,
+			float sy,
+			float sz,
+			Matrix4f dst) {
+		float norm = (float) (1 / Math.sqrt(qx * qx + qy * qy + qz * qz + qw * qw));
+		TransformComponents.compose(tx, ty, tz, qx * norm, qy * norm, qz * norm, qw * norm, sx, sy, sz, dst);
 	}
 }
@@ -3,6 +3,7 @@ package com.github.worldsender.mcanm.common.animation.parts;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -13,13 +14,31 @@ import com.github.worldsender.mcanm.common.exceptions.ModelFormatException;
 public class AnimatedValue {
 	public static class AnimatedValueBuilder {
 		private AnimatedValue value = null;
+		private boolean isKeyed;
+		private float[] keyTimes = new float[16];
+		private int keyCount;
 
 		private void checkAvailable() {
 			value = new AnimatedValue(0.0f);
+			isKeyed = true;
+			keyCount = 0;
+		}
+
+		private void addKeyTime(float time) {
+			if (keyCount > 0 && time < keyTimes[keyCount - 1]) {
+				// Not sorted, binary search won't work
+				isKeyed = false;
+			}
+			if (keyCount == keyTimes.length) {
+				keyTimes = Arrays.copyOf(keyTimes, keyCount * 2);
+			}
+			keyTimes[keyCount++] = time;
 		}
 
 		public AnimatedValueBuilder addSpline(Spline spline) {
 			value.splines.add(spline);
+			// Arbitrary splines, we can't know where they start and end
+			isKeyed = false;
 			return this;
 		}
 
@@ -28,20 +47,19 @@ public class AnimatedValue {
 				throw new IllegalStateException("Can only red from stream with after a default value has been set");
 			}
 			int nbrFrames = dis.readUnsignedShort();
-			if (nbrFrames == 0) {
-				Vector2f point = new Vector2f(0, value.defaultValue);
-				value.splines.add(Spline.easeIn(Spline.EASE_IN_CONST, point, dis));
-				value.splines.add(Spline.easeOut(Spline.EASE_OUT_CONST, point, dis));
-			} else {
+			// Without any frames there are no splines, the value is constantly the default value
+			if (nbrFrames != 0) {
 				Vector2f left = null;
 				Vector2f right = Spline.readPoint(dis);
 				byte easeIn = dis.readByte();
 				value.splines.add(Spline.easeIn(easeIn, right, dis));
+				addKeyTime(right.x);
 				for (int i = 1; i < nbrFrames; ++i) {
 					left = right;
 					right = Spline.readPoint(dis);
 					byte interpolation = dis.readByte();
 					value.splines.add(Spline.interpolating(interpolation, left, right, dis));
+					addKeyTime(right.x);
 				}
 				byte easeOut = dis.readByte();
 				value.splines.add(Spline.easeOut(easeOut, right, dis));
@@ -59,15 +77,37 @@ public class AnimatedValue {
 			AnimatedValue ret = value;
 			value = null;
 			ret.splines = Collections.unmodifiableList(ret.splines);
+			ret.splineArray = ret.splines.toArray(new Spline[ret.splines.size()]);
+			// Spline i ends at key i, the last spline eases out from the last key
+			if (isKeyed && keyCount + 1 == ret.splineArray.length) {
+				ret.keyTimes = Arrays.copyOf(keyTimes, keyCount);
+			}
+			ret.findConstantValue();
 			return ret;
 		}
 	}
 
+	/**
+	 * Remembers the segment of the curve that was last evaluated. When an animation is played forward, the next frame
+	 * is usually in the same or in the next segment, which can then be found without searching.<br>
+	 * A cursor is only a hint and may be used with any {@link AnimatedValue}. Sharing it between threads is safe, but
+	 * makes it less effective.
+	 */
+	public static class Cursor {
+		private int segment = 0;
+	}
+
 	public static final AnimatedValue CONSTANT_ZERO = new AnimatedValue(0f);
 	public static final AnimatedValue CONSTANT_ONE = new AnimatedValue(1f);
 
 	/** The splines making up the full curve. */
 	private List<Spline> splines;
+	private Spline[] splineArray = new Spline[0];
+	/**
+	 * The sorted times of the keyframes, spline i covers (keyTimes[i - 1], keyTimes[i]]. null if the splines were not
+	 * read from keyframes.
+	 */
+	private float[] keyTimes = null;
 	/**
 	 * Reads the animated value from the {@link DataInputStream} given using keyframes. That are time, value pairs. Each
 	 * pair forms a keyframe. Between successive two keyframes is a spline that can be the graph of any
@@ -78,10 +118,76 @@ public class AnimatedValue {
 	 * @param is
 	 */
 	private float defaultValue;
+	/** Set if the value doesn't change over time, {@link #constantValue} is returned for all times then */
+	private boolean isConstant;
+	private float constantValue;
 
 	private AnimatedValue(float defaultValue) {
 		this.splines = new ArrayList<>();
 		this.defaultValue = defaultValue;
+		this.isConstant = true;
+		this.constantValue = defaultValue;
+	}
+
+	private void findConstantValue() {
+		if (splineArray.length == 0) {
+			isConstant = true;
+			constantValue = defaultValue;
+			return;
+		}
+		isConstant = false;
+		if (keyTimes == null) {
+			// Can't tell where the splines are in range
+			return;
+		}
+		// Evaluate each spline at the key it ends at, the last one at the key it starts at
+		float value = splineArray[0].getValueAt(keyTimes[0]);
+		for (int i = 0; i < splineArray.length; i++) {
+			Spline spline = splineArray[i];
+			float time = keyTimes[Math.min(i, keyTimes.length - 1)];
+			if (!spline.isConstant() || spline.getValueAt(time) != value) {
+				return;
+			}
+		}
+		isConstant = true;
+		constantValue = value;
+	}
+
+	/**
+	 * @return true if the value is the same at all times
+	 */
+	public boolean isConstant() {
+		return isConstant;
+	}
+
+	/**
+	 * @return true if the times of the keyframes are known, only then {@link #getFirstKeyTime()} and
+	 *         {@link #getLastKeyTime()} are meaningful
+	 */
+	public boolean isKeyed() {
+		return keyTimes != null;
+	}
+
+	/**
+	 * @return true if the value before the first and after the last keyframe is the value at that keyframe
+	 */
+	public boolean isConstantOutsideKeys() {
+		if (isConstant) {
+			return true;
+		}
+		return keyTimes != null && splineArray[0].isConstant() && splineArray[splineArray.length - 1].isConstant();
+	}
+
+	public float getFirstKeyTime() {
+		return keyTimes[0];
+	}
+
+	public float getLastKeyTime() {
+		return keyTimes[keyTimes.length - 1];
+	}
+
+	public int getSplineCount() {
+		return splineArray.length;
 	}
 
 	/**
@@ -92,7 +198,67 @@ public class AnimatedValue {
 	 * @return the corresponding y-value
 	 */
 	public float getValueAt(float time) {
-		for (Spline spline : this.splines) {
+		if (isConstant) {
+			return constantValue;
+		}
+		if (keyTimes != null) {
+			return splineArray[findSegment(time)].getValueAt(time);
+		}
+		return getValueLinear(time);
+	}
+
+	/**
+	 * Same as {@link #getValueAt(float)}, but first checks the segment the cursor points to and its successor before
+	 * searching. The cursor is updated to the segment the time is in.
+	 *
+	 * @param time
+	 *            the time/x-value on the curve
+	 * @param cursor
+	 *            the cursor of the caller
+	 * @return the corresponding y-value
+	 */
+	public float getValueAt(float time, Cursor cursor) {
+		if (isConstant) {
+			return constantValue;
+		}
+		if (keyTimes == null) {
+			return getValueLinear(time);
+		}
+		int segment = cursor.segment;
+		if (!isInSegment(time, segment) && !isInSegment(time, ++segment)) {
+			segment = findSegment(time);
+		}
+		cursor.segment = segment;
+		return splineArray[segment].getValueAt(time);
+	}
+
+	private boolean isInSegment(float time, int segment) {
+		float[] keys = keyTimes;
+		if (segment < 0 || segment > keys.length) {
+			return false;
+		}
+		return (segment == 0 || time > keys[segment - 1]) && (segment == keys.length || time <= keys[segment]);
+	}
+
+	/**
+	 * @return the index of the first key at or after the time given, the number of keys if there is none
+	 */
+	private int findSegment(float time) {
+		float[] keys = keyTimes;
+		int low = 0, high = keys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private float getValueLinear(float time) {
+		for (Spline spline : this.splineArray) {
 			if (spline.isInRange(time))
 				return spline.getValueAt(time);
 		}
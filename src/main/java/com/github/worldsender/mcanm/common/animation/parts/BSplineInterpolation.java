@@ -15,16 +15,117 @@ public class BSplineInterpolation extends Spline {
 		}
 	};
 
+	/**
+	 * The number of segments of the lookup table that seeds the newton iteration.
+	 */
+	private static final int LOOKUP_SEGMENTS = 8;
+	private static final int MAX_NEWTON_ITERATIONS = 4;
+
+	private static volatile boolean fastInversion = true;
+	private static volatile float inversionTolerance = 1e-4f;
+
 	private Vector2f left;
 	private Vector2f leftHandle;
 	private Vector2f rightHandle;
 	private Vector2f right;
+	// Polynom coefficients of the curve, x relative to left.x
+	private final float cx1, cx2, cx3;
+	private final float cy0, cy1, cy2, cy3;
+	/**
+	 * x (relative to left.x) at t = i / {@link #LOOKUP_SEGMENTS}, null if x is not monotonic in t
+	 */
+	private final float[] lookupTable;
 
 	public BSplineInterpolation(Vector2f left, Vector2f leftHandle, Vector2f rightHandle, Vector2f right) {
 		this.left = left;
 		this.leftHandle = leftHandle;
 		this.rightHandle = rightHandle;
 		this.right = right;
+
+		this.cx1 = 3.0f * (leftHandle.x - left.x);
+		this.cx2 = 3.0f * (left.x - 2.0f * leftHandle.x + rightHandle.x);
+		this.cx3 = right.x - left.x + 3.0f * (leftHandle.x - rightHandle.x);
+		this.cy0 = left.y;
+		this.cy1 = 3.0f * (leftHandle.y - left.y);
+		this.cy2 = 3.0f * (left.y - 2.0f * leftHandle.y + rightHandle.y);
+		this.cy3 = right.y - left.y + 3.0f * (leftHandle.y - rightHandle.y);
+		this.lookupTable = isMonotonic() ? buildLookupTable() : null;
+	}
+
+	/**
+	 * Enables or disables the fast inversion of the curve. When enabled, the parameter for a frame is found with a few
+	 * newton iterations seeded from a lookup table instead of solving the cubic equation. Frames where the iteration
+	 * does not converge within the tolerance still use the exact solution.
+	 *
+	 * @param enabled
+	 *            whether to use the fast inversion
+	 * @param tolerance
+	 *            the maximum distance, in frames, between the requested frame and the frame of the parameter found
+	 */
+	public static void setFastInversion(boolean enabled, float tolerance) {
+		if (!(tolerance > 0))
+			throw new IllegalArgumentException("Tolerance must be positive, was " + tolerance);
+		inversionTolerance = tolerance;
+		fastInversion = enabled;
+	}
+
+	private boolean isMonotonic() {
+		// The derivative is cx1 + 2 cx2 t + 3 cx3 t^2, non-negative at both ends and at its minimum if it has one
+		float endSlope = cx1 + 2 * cx2 + 3 * cx3;
+		if (cx1 < 0 || endSlope < 0)
+			return false;
+		if (cx3 <= 0)
+			return true;
+		float tMin = -cx2 / (3 * cx3);
+		return tMin <= 0 || tMin >= 1 || derivativeX(tMin) >= 0;
+	}
+
+	private float[] buildLookupTable() {
+		float[] table = new float[LOOKUP_SEGMENTS + 1];
+		for (int i = 0; i <= LOOKUP_SEGMENTS; i++) {
+			table[i] = valueX((float) i / LOOKUP_SEGMENTS);
+		}
+		return table;
+	}
+
+	private float valueX(float t) {
+		return t * (cx1 + t * (cx2 + t * cx3));
+	}
+
+	private float derivativeX(float t) {
+		return cx1 + t * (2 * cx2 + t * 3 * cx3);
+	}
+
+	private float valueY(float t) {
+		return cy0 + t * (cy1 + t * (cy2 + t * cy3));
+	}
+
+	/**
+	 * Inverts the curve with newton iterations, starting from the linear interpolation of the bracketing entries in the
+	 * lookup table.
+	 *
+	 * @return the parameter t, or NaN if the iteration did not converge
+	 */
+	private float findZeroFast(float x) {
+		float[] table = this.lookupTable;
+		int segment = 0;
+		while (segment < LOOKUP_SEGMENTS - 1 && table[segment + 1] < x) {
+			segment++;
+		}
+		float lower = table[segment], upper = table[segment + 1];
+		float fraction = upper > lower ? (x - lower) / (upper - lower) : 0;
+		float t = (segment + fraction) / LOOKUP_SEGMENTS;
+		float tolerance = inversionTolerance;
+		for (int i = 0; i < MAX_NEWTON_ITERATIONS; i++) {
+			float error = valueX(t) - x;
+			if (Math.abs(error) <= tolerance)
+				return t;
+			float slope = derivativeX(t);
+			if (slope <= 0)
+				return Float.NaN;
+			t = Math.min(Math.max(t - error / slope, 0), 1);
+		}
+		return Math.abs(valueX(t) - x) <= tolerance ? t : Float.NaN;
 	}
 
 	@Override
@@ -38,10 +139,21 @@ public class BSplineInterpolation extends Spline {
 			return this.left.y;
 		if (frame == this.right.x)
 			return this.right.y;
+		if (fastInversion && lookupTable != null) {
+			float t = findZeroFast(frame - this.left.x);
+			if (!Float.isNaN(t))
+				return valueY(t);
+		}
 		double t = findZero(this.left.x, this.leftHandle.x, this.rightHandle.x, this.right.x, frame);
 		return calcValue(this.left.y, this.leftHandle.y, this.rightHandle.y, this.right.y, t);
 	}
 
+	@Override
+	public boolean isConstant() {
+		return this.left.y == this.leftHandle.y && this.leftHandle.y == this.rightHandle.y
+				&& this.rightHandle.y == this.right.y;
+	}
+
 	/**
 	 * Finds a <code>t</code> for the input points in the range ]0..1[.<br>
 	 * This <code>t</code> is suitable to be used for the exact value calcuation.<br>
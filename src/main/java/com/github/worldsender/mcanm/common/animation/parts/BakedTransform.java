@@ -0,0 +1,302 @@
+package com.github.worldsender.mcanm.common.animation.parts;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+import com.github.worldsender.mcanm.common.animation.TransformComponents;
+
+/**
+ * An {@link AnimatedTransform} sampled at a fixed rate. Playing it back only interpolates between the two neighbouring
+ * samples, linearly for translation and scale and normalized linearly for the rotation, instead of evaluating the
+ * curves of all channels.<br>
+ * The samples are either stored as floats or quantized to 16 bits. Frames outside of the sampled range are taken from
+ * the original transform, unless it holds the values of its first and last keyframe there. In that case the first and
+ * last sample are used and the original transform is not retained.
+ */
+public abstract class BakedTransform {
+	protected static final int COMPONENTS = TransformComponents.COMPONENTS;
+
+	private final AnimatedTransform source;
+	private final float startFrame;
+	private final float samplesPerFrame;
+	private final int lastSample;
+
+	protected BakedTransform(AnimatedTransform source, float startFrame, float samplesPerFrame, int sampleCount) {
+		this.source = source.isConstantOutsideKeys() ? null : source;
+		this.startFrame = startFrame;
+		this.samplesPerFrame = samplesPerFrame;
+		this.lastSample = sampleCount - 1;
+	}
+
+	/**
+	 * Samples the transform given over the range of its keyframes.
+	 *
+	 * @param source
+	 *            the transform to bake
+	 * @param samplesPerFrame
+	 *            the number of samples per frame of the animation
+	 * @param quantize
+	 *            whether to quantize the samples to 16 bits, which needs less than half the memory
+	 * @return the baked transform, or null if the transform is static or its keyframes are unknown
+	 */
+	public static BakedTransform bake(AnimatedTransform source, float samplesPerFrame, boolean quantize) {
+		if (!(samplesPerFrame > 0)) {
+			throw new IllegalArgumentException("Samples per frame must be positive, was " + samplesPerFrame);
+		}
+		float[] range = source.getKeyFrameRange();
+		if (range == null) {
+			return null;
+		}
+		int sampleCount = (int) Math.ceil((range[1] - range[0]) * samplesPerFrame) + 1;
+		float[] samples = new float[sampleCount * COMPONENTS];
+		for (int i = 0; i < sampleCount; i++) {
+			source.storeComponentsAt(range[0] + i / samplesPerFrame, samples, i * COMPONENTS);
+		}
+		if (quantize) {
+			return new QuantizedTransform(source, range[0], samplesPerFrame, samples);
+		}
+		return new FloatTransform(source, range[0], samplesPerFrame, samples);
+	}
+
+	/**
+	 * Decodes the components of one sample.
+	 *
+	 * @param sample
+	 *            the index of the sample
+	 * @param dst
+	 *            the array to store the translation, the normalized rotation and the scale into
+	 * @param offset
+	 *            the index of the first component in dst
+	 */
+	protected abstract void decodeSample(int sample, float[] dst, int offset);
+
+	/**
+	 * @return the memory used by the samples in bytes
+	 */
+	public abstract int getSizeInBytes();
+
+	public int getSampleCount() {
+		return lastSample + 1;
+	}
+
+	public float getStartFrame() {
+		return startFrame;
+	}
+
+	public float getSamplesPerFrame() {
+		return samplesPerFrame;
+	}
+
+	/**
+	 * @return the transform that is used outside the sampled range, null if the first and last sample are used there
+	 */
+	public AnimatedTransform getSource() {
+		return source;
+	}
+
+	/**
+	 * Stores the transformation of the bone at the frame given, interpolated between the nearest two samples.
+	 *
+	 * @param frame
+	 *            the frame to evaluate
+	 * @param transform
+	 *            the transform to store the result into
+	 * @param context
+	 *            the context of the caller, its scratch space is used
+	 */
+	public void storeTransformAt(float frame, BoneTransformation transform, SamplingContext context) {
+		if (source != null && !isInRange(frame)) {
+			source.storeTransformAt(frame, transform);
+			return;
+		}
+		float[] buffer = context.getScratch();
+		storeComponentsAt(frame, buffer, 0, context);
+		TransformComponents.compose(buffer, 0, transform.matrix);
+	}
+
+	/**
+	 * Same as {@link #storeTransformAt(float, BoneTransformation, SamplingContext)}, for callers without a context. The
+	 * samples are decoded into a local array that doesn't outlive the call.
+	 *
+	 * @param frame
+	 *            the frame to evaluate
+	 * @param transform
+	 *            the transform to store the result into
+	 */
+	public void storeTransformAt(float frame, BoneTransformation transform) {
+		if (source != null && !isInRange(frame)) {
+			source.storeTransformAt(frame, transform);
+			return;
+		}
+		// Two decoded samples, then the interpolated one
+		float[] buffer = new float[3 * COMPONENTS];
+		storeComponentsAt(frame, buffer, 2 * COMPONENTS, buffer);
+		TransformComponents.compose(buffer, 2 * COMPONENTS, transform.matrix);
+	}
+
+	/**
+	 * Same as {@link #storeTransformAt(float, BoneTransformation, SamplingContext)}, but stores the
+	 * {@link TransformComponents}.
+	 *
+	 * @param frame
+	 *            the frame to evaluate
+	 * @param dst
+	 *            the array to store the components into, may be the scratch space of the context
+	 * @param offset
+	 *            the index of the first component in dst
+	 * @param context
+	 *            the context of the caller, its scratch space is used
+	 */
+	public void storeComponentsAt(float frame, float[] dst, int offset, SamplingContext context) {
+		storeComponentsAt(frame, dst, offset, context.getScratch());
+	}
+
+	/**
+	 * @param scratch
+	 *            holds the two neighbouring samples, at least 2 * {@link #COMPONENTS} long
+	 */
+	private void storeComponentsAt(float frame, float[] dst, int offset, float[] scratch) {
+		float position = (frame - startFrame) * samplesPerFrame;
+		if (!(position >= 0 && position <= lastSample)) {
+			if (source != null) {
+				source.storeComponentsAt(frame, dst, offset);
+				return;
+			}
+			position = position > 0 ? lastSample : 0;
+		}
+		int sample = Math.max(Math.min((int) position, lastSample - 1), 0);
+		decodeSample(sample, scratch, 0);
+		decodeSample(Math.min(sample + 1, lastSample), scratch, COMPONENTS);
+		TransformComponents.interpolate(scratch, 0, scratch, COMPONENTS, position - sample, dst, offset);
+	}
+
+	private boolean isInRange(float frame) {
+		float position = (frame - startFrame) * samplesPerFrame;
+		return position >= 0 && position <= lastSample;
+	}
+
+	/**
+	 * Stores all components as floats.
+	 */
+	private static class FloatTransform extends BakedTransform {
+		private final float[] samples;
+
+		public FloatTransform(AnimatedTransform source, float startFrame, float samplesPerFrame, float[] samples) {
+			super(source, startFrame, samplesPerFrame, samples.length / COMPONENTS);
+			this.samples = samples;
+		}
+
+		@Override
+		protected void decodeSample(int sample, float[] dst, int offset) {
+			System.arraycopy(samples, sample * COMPONENTS, dst, offset, COMPONENTS);
+		}
+
+		@Override
+		public int getSizeInBytes() {
+			return samples.length * 4;
+		}
+	}
+
+	/**
+	 * Stores the translation and scale quantized to 16 bits in the range each component covers, components that don't
+	 * change are only stored once. The rotation is stored with the smallest three components quantized to 15 bits and
+	 * the index of the largest one in the remaining 2 bits, the largest component is restored from the unit length.
+	 */
+	private static class QuantizedTransform extends BakedTransform {
+		/** The largest but one component of a unit quaternion has an absolute value of at most sqrt(1/2) */
+		private static final float ROTATION_RANGE = (float) Math.sqrt(0.5);
+		private static final int ROTATION_BITS = 15;
+		private static final int ROTATION_MAX = (1 << ROTATION_BITS) - 1;
+		private static final int SCALAR_MAX = 0xFFFF;
+		/** The components that are stored as quantized scalars */
+		private static final int[] SCALARS = { 0, 1, 2, 7, 8, 9 };
+
+		private final short[] data;
+		private final int stride;
+		/** The position of each scalar in the stride, -1 if it is constant */
+		private final int[] scalarOffsets = new int[SCALARS.length];
+		private final float[] scalarMin = new float[SCALARS.length];
+		private final float[] scalarStep = new float[SCALARS.length];
+		private final int rotationOffset;
+
+		public QuantizedTransform(AnimatedTransform source, float startFrame, float samplesPerFrame, float[] samples) {
+			super(source, startFrame, samplesPerFrame, samples.length / COMPONENTS);
+			int sampleCount = samples.length / COMPONENTS;
+			int nextOffset = 0;
+			for (int i = 0; i < SCALARS.length; i++) {
+				float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+				for (int j = 0; j < sampleCount; j++) {
+					float value = samples[j * COMPONENTS + SCALARS[i]];
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+				scalarMin[i] = min;
+				scalarStep[i] = (max - min) / SCALAR_MAX;
+				scalarOffsets[i] = max > min ? nextOffset++ : -1;
+			}
+			this.rotationOffset = nextOffset;
+			this.stride = nextOffset + 3;
+			this.data = new short[sampleCount * stride];
+			for (int j = 0; j < sampleCount; j++) {
+				int src = j * COMPONENTS, dst = j * stride;
+				for (int i = 0; i < SCALARS.length; i++) {
+					if (scalarOffsets[i] >= 0) {
+						float normalized = (samples[src + SCALARS[i]] - scalarMin[i]) / scalarStep[i];
+						data[dst + scalarOffsets[i]] = (short) Math.round(normalized);
+					}
+				}
+				encodeRotation(samples, src + 3, dst + rotationOffset);
+			}
+		}
+
+		private void encodeRotation(float[] samples, int src, int dst) {
+			int largest = 0;
+			for (int i = 1; i < 4; i++) {
+				if (Math.abs(samples[src + i]) > Math.abs(samples[src + largest]))
+					largest = i;
+			}
+			// q and -q are the same rotation, make the dropped component positive
+			float sign = samples[src + largest] < 0 ? -1 : 1;
+			long bits = largest;
+			for (int i = 0; i < 4; i++) {
+				if (i == largest)
+					continue;
+				float normalized = (sign * samples[src + i] / ROTATION_RANGE + 1) / 2;
+				long quantized = Math.round(Math.min(Math.max(normalized, 0), 1) * ROTATION_MAX);
+				bits = bits << ROTATION_BITS | quantized;
+			}
+			data[dst + 0] = (short) (bits >>> 32);
+			data[dst + 1] = (short) (bits >>> 16);
+			data[dst + 2] = (short) bits;
+		}
+
+		@Override
+		protected void decodeSample(int sample, float[] dst, int offset) {
+			int src = sample * stride;
+			for (int i = 0; i < SCALARS.length; i++) {
+				int scalarOffset = scalarOffsets[i];
+				float value = scalarMin[i];
+				if (scalarOffset >= 0)
+					value += (data[src + scalarOffset] & 0xFFFF) * scalarStep[i];
+				dst[offset + SCALARS[i]] = value;
+			}
+			src += rotationOffset;
+			long bits = (data[src] & 0xFFFFL) << 32 | (data[src + 1] & 0xFFFFL) << 16 | data[src + 2] & 0xFFFFL;
+			int largest = (int) (bits >>> (3 * ROTATION_BITS));
+			float squares = 0;
+			for (int i = 3; i >= 0; i--) {
+				if (i == largest)
+					continue;
+				float component = ((bits & ROTATION_MAX) * 2f / ROTATION_MAX - 1) * ROTATION_RANGE;
+				bits >>>= ROTATION_BITS;
+				dst[offset + 3 + i] = component;
+				squares += component * component;
+			}
+			dst[offset + 3 + largest] = (float) Math.sqrt(Math.max(1 - squares, 0));
+		}
+
+		@Override
+		public int getSizeInBytes() {
+			return data.length * 2;
+		}
+	}
+}
@@ -34,4 +34,9 @@ public class ConstantEaseIn extends Spline {
 	public float getValueAt(float frame) {
 		return this.right.y;
 	}
+
+	@Override
+	public boolean isConstant() {
+		return true;
+	}
 }
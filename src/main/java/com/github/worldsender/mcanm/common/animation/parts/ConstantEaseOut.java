@@ -28,4 +28,9 @@ public class ConstantEaseOut extends Spline {
 	public float getValueAt(float frame) {
 		return left.y;
 	}
+
+	@Override
+	public boolean isConstant() {
+		return true;
+	}
 }
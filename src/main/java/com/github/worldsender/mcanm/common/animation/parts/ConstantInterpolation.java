@@ -37,4 +37,9 @@ public class ConstantInterpolation extends Spline {
 	public float getValueAt(float frame) {
 		return frame < this.right.x ? this.left.y : this.right.y;
 	}
+
+	@Override
+	public boolean isConstant() {
+		return this.left.y == this.right.y;
+	}
 }
@@ -40,4 +40,9 @@ public class LinearInterpolation extends Spline {
 		return (this.right.x - frame) / (split) * this.left.y + //
 				(frame - this.left.x) / (split) * this.right.y;
 	}
+
+	@Override
+	public boolean isConstant() {
+		return this.left.y == this.right.y;
+	}
 }
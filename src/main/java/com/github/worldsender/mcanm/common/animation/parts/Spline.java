@@ -110,6 +110,16 @@ public abstract class Spline {
 	 */
 	public abstract float getValueAt(float frame);
 
+	/**
+	 * Returns if this spline has the same value for all frames in its range. Used to find channels of an animation
+	 * that don't change at all. Conservatively returns <code>false</code> unless overridden.
+	 *
+	 * @return true if {@link #getValueAt(float)} is constant in this spline's range
+	 */
+	public boolean isConstant() {
+		return false;
+	}
+
 	/**
 	 * Registers an {@link IEaseInSplineFactory} for the descriminator byte given.
 	 *
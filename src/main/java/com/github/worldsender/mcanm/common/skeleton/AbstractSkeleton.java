@@ -6,6 +6,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -15,6 +17,8 @@ import javax.vecmath.Vector3f;
 import org.apache.commons.lang3.ArrayUtils;
 
 import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
 import com.github.worldsender.mcanm.common.resource.IResource;
 import com.github.worldsender.mcanm.common.resource.IResourceLocation;
 import com.github.worldsender.mcanm.common.skeleton.parts.Bone;
@@ -23,9 +27,15 @@ import com.github.worldsender.mcanm.common.skeleton.stored.RawData;
 import com.github.worldsender.mcanm.common.skeleton.visitor.IBoneVisitor;
 import com.github.worldsender.mcanm.common.skeleton.visitor.ISkeletonVisitable;
 import com.github.worldsender.mcanm.common.skeleton.visitor.ISkeletonVisitor;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
 import com.github.worldsender.mcanm.common.util.ReloadableData;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 import net.minecraft.client.renderer.Tessellator;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
 
 public abstract class AbstractSkeleton extends ReloadableData<ISkeletonVisitable> implements ISkeleton {
 
@@ -126,21 +136,42 @@ public abstract class AbstractSkeleton extends ReloadableData<ISkeletonVisitable
 
 			AbstractSkeleton.this.bonesByIndex = bones = new Bone[size];
 			AbstractSkeleton.this.bonesBreadthFirst = new Bone[size];
+			AbstractSkeleton.this.parents = new int[size];
+			AbstractSkeleton.this.breadthFirstOrdering = breadthFirstOrdering;
+			AbstractSkeleton.this.pooledEvaluators.clear();
 			AbstractSkeleton.this.bonesByName.clear();
+			AbstractSkeleton.this.boundAnimations.invalidateAll();
 
 			for (int i = 0; i < size; i++) {
-				// We have to make the bone breadth first because the supplier accesses its parent bones
+				// We have to make the bone breadth first because the supplier accesses its parent bones. This is also
+				// where each bone computes its inverse bind matrix from its parent's, once per (re)load
 				int index = breadthFirstOrdering[i];
 				Bone b = Objects.requireNonNull(boneSuppliers.get(index).get());
 				bonesBreadthFirst[i] = bonesByIndex[index] = b;
 				bonesByName.put(b.name, b);
 			}
+			AbstractSkeleton.this.boneNames = Arrays.stream(bonesBreadthFirst).map(b -> b.name).toArray(String[]::new);
+			for (int i = 0; i < size; i++) {
+				int parent = parentList[i] & 0xFF;
+				parents[i] = parent == 0xFF ? -1 : parent;
+			}
 		}
 	}
 
 	private Bone[] bonesBreadthFirst;
+	/** The index of the bones in {@link #bonesBreadthFirst} */
+	private int[] breadthFirstOrdering;
 	private Bone[] bonesByIndex;
+	/** The index of each bone's parent, -1 for root bones */
+	private int[] parents;
 	private Map<String, Bone> bonesByName;
+	/** The names of {@link #bonesBreadthFirst}, the same array is passed to every animation that is bound */
+	private String[] boneNames;
+	/** Animations bound to the breadth first order of the bones. Keys are compared by identity */
+	private LoadingCache<IAnimation, IBoundAnimation> boundAnimations;
+	private SamplingContext samplingContext;
+	/** Evaluators returned by {@link #releasePoseEvaluator(PoseEvaluator)}, dropped when the skeleton is reloaded */
+	private Queue<PoseEvaluator> pooledEvaluators;
 
 	public AbstractSkeleton(IResourceLocation resLoc, Function<IResource, ISkeletonVisitable> readFunc) {
 		super(resLoc, readFunc, RawData.MISSING_DATA);
@@ -149,6 +180,15 @@ public abstract class AbstractSkeleton extends ReloadableData<ISkeletonVisitable
 	@Override
 	protected void preInit(Object... args) {
 		bonesByName = new HashMap<>();
+		samplingContext = new SamplingContext();
+		pooledEvaluators = new ConcurrentLinkedQueue<>();
+		boundAnimations = CacheBuilder.newBuilder().weakKeys().maximumSize(64)
+				.build(new CacheLoader<IAnimation, IBoundAnimation>() {
+					@Override
+					public IBoundAnimation load(IAnimation key) {
+						return bind(key);
+					}
+				});
 	}
 
 	@Override
@@ -167,14 +207,87 @@ public abstract class AbstractSkeleton extends ReloadableData<ISkeletonVisitable
 		return index < 0 || index >= bonesByIndex.length ? IBone.STATIC_BONE : bonesByIndex[index];
 	}
 
+	/**
+	 * Binds the animation to the bones of this skeleton. Animations passed to {@link #setup(IAnimation, float)} are
+	 * bound automatically and the result is cached, use this together with
+	 * {@link #setupBound(IBoundAnimation, float)} to manage the binding yourself. A bound animation becomes invalid
+	 * when the skeleton is reloaded.
+	 *
+	 * @param animation
+	 *            the animation to bind
+	 * @return the animation bound to this skeleton
+	 */
+	public IBoundAnimation bind(IAnimation animation) {
+		return animation.bindTo(boneNames);
+	}
+
+	/**
+	 * {@inheritDoc} The binding of the animation is cached by identity, pass the same instance every frame. See
+	 * {@link IAnimation#bindTo(String[])}.
+	 */
 	@Override
 	public void setup(IAnimation animation, float frame) {
-		for (Bone bone : bonesBreadthFirst) {
-			bone.setTransformation(animation, frame);
+		setupBound(boundAnimations.getUnchecked(animation), frame);
+	}
+
+	/**
+	 * Sets up the skeleton for an animation previously bound with {@link #bind(IAnimation)}. Not an overload of
+	 * {@link #setup(IAnimation, float)}, both parameter types are functional interfaces of the same shape.
+	 *
+	 * @param animation
+	 *            the bound animation
+	 * @param frame
+	 *            the frame in the animation
+	 */
+	public void setupBound(IBoundAnimation animation, float frame) {
+		// Parents come first, each bone only has to combine its own transformation with its parent's
+		for (int i = 0; i < bonesBreadthFirst.length; i++) {
+			bonesBreadthFirst[i].setTransformation(animation, i, frame, samplingContext);
 		}
 	}
 
+	/**
+	 * Creates an evaluator for poses of this skeleton that doesn't change the skeleton's bones and needs no client
+	 * classes, e.g. to pose many entities on the server. The evaluator becomes invalid when the skeleton is reloaded.
+	 *
+	 * @return a new evaluator for the current bones of this skeleton
+	 */
+	public PoseEvaluator createPoseEvaluator() {
+		int size = bonesByIndex.length;
+		String[] boneNames = new String[size];
+		Matrix3x4f[] localToParent = new Matrix3x4f[size];
+		Matrix3x4f[] inverseBind = new Matrix3x4f[size];
+		for (int i = 0; i < size; i++) {
+			boneNames[i] = bonesByIndex[i].name;
+			bonesByIndex[i].getLocalToParent(localToParent[i] = new Matrix3x4f());
+			bonesByIndex[i].getInverseBind(inverseBind[i] = new Matrix3x4f());
+		}
+		return new PoseEvaluator(boneNames, parents.clone(), breadthFirstOrdering.clone(), localToParent, inverseBind);
+	}
+
+	/**
+	 * Same as {@link #createPoseEvaluator()}, but reuses an evaluator that has been released before if there is one.
+	 * Thread-safe, e.g. for workers that pose entities in parallel.
+	 *
+	 * @return an evaluator for the current bones of this skeleton, only to be used by the caller until it is released
+	 */
+	public PoseEvaluator acquirePoseEvaluator() {
+		PoseEvaluator evaluator = pooledEvaluators.poll();
+		return evaluator == null ? createPoseEvaluator() : evaluator;
+	}
+
+	/**
+	 * Returns an evaluator from {@link #acquirePoseEvaluator()} so that it can be reused.
+	 *
+	 * @param evaluator
+	 *            the evaluator that is no longer used by the caller
+	 */
+	public void releasePoseEvaluator(PoseEvaluator evaluator) {
+		pooledEvaluators.offer(evaluator);
+	}
+
 	@Override
+	@SideOnly(Side.CLIENT)
 	public void debugDraw(Tessellator tess) {
 		return;
 		/*
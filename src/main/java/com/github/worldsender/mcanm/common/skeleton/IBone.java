@@ -1,25 +1,41 @@
 package com.github.worldsender.mcanm.common.skeleton;
 
-import javax.vecmath.Matrix4f;
 import javax.vecmath.Point4f;
 import javax.vecmath.Vector3f;
 
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
 public interface IBone {
 	public static final IBone STATIC_BONE = new IBone() {
 		@Override
 		public void transformNormal(Vector3f normal) {}
 
 		@Override
-		public void transformToLocal(Matrix4f matrix) {}
+		public void transformToLocal(Matrix3x4f matrix) {}
 
 		@Override
-		public void transformFromLocal(Matrix4f matrix) {}
+		public void transformFromLocal(Matrix3x4f matrix) {}
 
 		@Override
 		public void transform(Point4f position) {}
 
 		@Override
-		public void transform(Matrix4f matrix) {}
+		public void transform(Matrix3x4f matrix) {}
+
+		@Override
+		public void getTransformGlobal(Matrix3x4f out) {
+			out.setIdentity();
+		}
+
+		@Override
+		public void getTransformITGlobal(Matrix3x4f out) {
+			out.setIdentity();
+		}
+
+		@Override
+		public int getVersion() {
+			return 0;
+		}
 	};
 
 	/**
@@ -29,9 +45,9 @@ public interface IBone {
 	 * @param position
 	 *            the position to transform
 	 */
-	void transformFromLocal(Matrix4f matrix);
+	void transformFromLocal(Matrix3x4f matrix);
 
-	void transformToLocal(Matrix4f matrix);
+	void transformToLocal(Matrix3x4f matrix);
 
 	/**
 	 * Transforms the matrix given by the transformation currently acted out by the specified bone. The matrix describes
@@ -40,7 +56,7 @@ public interface IBone {
 	 * @param position
 	 *            the position to transform
 	 */
-	void transform(Matrix4f matrix);
+	void transform(Matrix3x4f matrix);
 
 	/**
 	 * Transforms the position given by the transformation currently acted out by the specified bone.
@@ -57,4 +73,30 @@ public interface IBone {
 	 *            the position to transform
 	 */
 	void transformNormal(Vector3f normal);
+
+	/**
+	 * Stores the transformation currently acted out by the specified bone in the matrix given. The matrix describes a
+	 * transformation relative to the skeleton's origin.
+	 *
+	 * @param out
+	 *            the matrix to store the transformation in
+	 */
+	void getTransformGlobal(Matrix3x4f out);
+
+	/**
+	 * Stores the inverse transpose of {@link #getTransformGlobal(Matrix3x4f)} in the matrix given. This is the
+	 * transformation to apply to normals, its translation is zero.
+	 *
+	 * @param out
+	 *            the matrix to store the transformation in
+	 */
+	void getTransformITGlobal(Matrix3x4f out);
+
+	/**
+	 * A counter that changes every time the transformation returned by {@link #getTransformGlobal(Matrix3x4f)} changes.
+	 * Comparing it to an earlier value tells if the bone has moved since then.
+	 *
+	 * @return the current version of the bone's transformation
+	 */
+	int getVersion();
 }
@@ -3,6 +3,8 @@ package com.github.worldsender.mcanm.common.skeleton;
 import com.github.worldsender.mcanm.common.animation.IAnimation;
 
 import net.minecraft.client.renderer.Tessellator;
+import net.minecraftforge.fml.relauncher.Side;
+import net.minecraftforge.fml.relauncher.SideOnly;
 
 public interface ISkeleton {
 	public static final ISkeleton EMPTY = new ISkeleton() {
@@ -21,6 +23,7 @@ public interface ISkeleton {
 		}
 
 		@Override
+		@SideOnly(Side.CLIENT)
 		public void debugDraw(Tessellator tess) {}
 	};
 
@@ -29,15 +32,18 @@ public interface ISkeleton {
 	IBone getBoneByIndex(int index);
 
 	/**
-	 * Sets up the Skeleton for the animation given
+	 * Sets up the Skeleton for the animation given. Bones whose transformation changes get a new
+	 * {@link IBone#getVersion() version}, so users can tell which bones actually moved since the last setup.
 	 */
 	void setup(IAnimation animation, float frame);
 
 	/**
-	 * Added for debug, don't actually use this, especially when on the server
+	 * Added for debug, don't actually use this. Only present on the client, so that skeletons can be loaded on a
+	 * dedicated server, see {@link PoseEvaluator}.
 	 * 
 	 * @param tess
 	 */
+	@SideOnly(Side.CLIENT)
 	void debugDraw(Tessellator tess);
 
 	@Override
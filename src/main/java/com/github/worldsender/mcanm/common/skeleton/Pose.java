@@ -0,0 +1,81 @@
+package com.github.worldsender.mcanm.common.skeleton;
+
+import javax.vecmath.Point4f;
+
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+/**
+ * The bone transformations of one skeleton in one pose, as computed by a {@link PoseEvaluator}. Each entity that is
+ * posed should keep its own pose around and have it updated whenever needed. Bones are addressed by their index in
+ * the skeleton, see {@link PoseEvaluator#getBoneIndex(String)}.
+ */
+public class Pose {
+	/** Transforms from the bone's space into global space, relative to the skeleton's origin */
+	final Matrix3x4f[] localToGlobal;
+	/** Transforms from the rest pose into the pose, both in global space */
+	final Matrix3x4f[] globalToGlobal;
+
+	Pose(int boneCount) {
+		this.localToGlobal = new Matrix3x4f[boneCount];
+		this.globalToGlobal = new Matrix3x4f[boneCount];
+		for (int i = 0; i < boneCount; i++) {
+			localToGlobal[i] = new Matrix3x4f();
+			globalToGlobal[i] = new Matrix3x4f();
+		}
+	}
+
+	public int getBoneCount() {
+		return localToGlobal.length;
+	}
+
+	/**
+	 * Same as {@link IBone#transformFromLocal(Matrix3x4f)}. This can be used to place something relative to a bone,
+	 * e.g. an item held in a hand.
+	 *
+	 * @param bone
+	 *            the index of the bone
+	 * @param matrix
+	 *            the transformation relative to the bone's origin
+	 */
+	public void transformFromLocal(int bone, Matrix3x4f matrix) {
+		matrix.mul(localToGlobal[bone], matrix);
+	}
+
+	/**
+	 * Same as {@link IBone#transform(Point4f)}. This can be used to find where a point in the rest pose of the model is
+	 * in this pose, e.g. the corners of a hitbox.
+	 *
+	 * @param bone
+	 *            the index of the bone
+	 * @param position
+	 *            the position to transform
+	 */
+	public void transform(int bone, Point4f position) {
+		globalToGlobal[bone].transform(position);
+	}
+
+	/**
+	 * Same as {@link IBone#getTransformGlobal(Matrix3x4f)}.
+	 *
+	 * @param bone
+	 *            the index of the bone
+	 * @param out
+	 *            the matrix to store the transformation in
+	 */
+	public void getTransformGlobal(int bone, Matrix3x4f out) {
+		out.set(globalToGlobal[bone]);
+	}
+
+	/**
+	 * Stores the origin of the bone in this pose, relative to the skeleton's origin.
+	 *
+	 * @param bone
+	 *            the index of the bone
+	 * @param out
+	 *            the point to store the origin in
+	 */
+	public void getOrigin(int bone, Point4f out) {
+		Matrix3x4f m = localToGlobal[bone];
+		out.set(m.m03, m.m13, m.m23, 1);
+	}
+}
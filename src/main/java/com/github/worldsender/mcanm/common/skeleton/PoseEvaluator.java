@@ -0,0 +1,231 @@
+package com.github.worldsender.mcanm.common.skeleton;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Evaluates poses of a skeleton into {@link Pose}s instead of into the bones of the skeleton, so one skeleton can pose
+ * any number of entities. Nothing in here touches client classes, which makes it usable on a dedicated server, e.g. to
+ * test hits against single bones or to attach something to a bone.<br>
+ * Poses can be evaluated one by one or queued and evaluated in a batch once per tick. A batch evaluates one bone for
+ * all queued poses before it moves on to the next bone, so the curves of that bone are only fetched into the cache
+ * once. An evaluator must only be used by one thread at a time, poses can be shared between evaluators of the same
+ * skeleton.
+ *
+ * @see AbstractSkeleton#createPoseEvaluator()
+ */
+public class PoseEvaluator {
+	private final String[] boneNames;
+	private final Map<String, Integer> boneIndices;
+	/** The index of each bone's parent, -1 for root bones */
+	private final int[] parents;
+	/** The bones in an order where parents come before their children */
+	private final int[] evaluationOrder;
+	private final Matrix3x4f[] localToParent;
+	private final Matrix3x4f[] inverseBind;
+	/** Animations bound to the bones. Keys are compared by identity */
+	private final LoadingCache<IAnimation, IBoundAnimation> boundAnimations;
+	private final SamplingContext context = new SamplingContext();
+	private final Matrix3x4f transformScratch = new Matrix3x4f();
+	private Pose scratchPose;
+	// The queued batch
+	private IBoundAnimation[] queuedAnimations = new IBoundAnimation[0];
+	private float[] queuedFrames = new float[0];
+	private Pose[] queuedPoses = new Pose[0];
+	private int queued = 0;
+
+	PoseEvaluator(
+			String[] boneNames,
+			int[] parents,
+			int[] evaluationOrder,
+			Matrix3x4f[] localToParent,
+			Matrix3x4f[] inverseBind) {
+		this.boneNames = boneNames;
+		this.parents = parents;
+		this.evaluationOrder = evaluationOrder;
+		this.localToParent = localToParent;
+		this.inverseBind = inverseBind;
+		this.boneIndices = new HashMap<>();
+		for (int i = 0; i < boneNames.length; i++) {
+			boneIndices.put(boneNames[i], i);
+		}
+		this.boundAnimations = CacheBuilder.newBuilder().weakKeys().maximumSize(64)
+				.build(new CacheLoader<IAnimation, IBoundAnimation>() {
+					@Override
+					public IBoundAnimation load(IAnimation key) {
+						return bind(key);
+					}
+				});
+	}
+
+	public int getBoneCount() {
+		return boneNames.length;
+	}
+
+	/**
+	 * @param boneName
+	 *            the name of the bone
+	 * @return the index of the bone in the poses of this evaluator, -1 if there is no such bone. This is the same
+	 *         index as in {@link ISkeleton#getBoneByIndex(int)}
+	 */
+	public int getBoneIndex(String boneName) {
+		Integer index = boneIndices.get(boneName);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return a new pose for this skeleton, in the rest pose until it is evaluated
+	 */
+	public Pose createPose() {
+		Pose pose = new Pose(boneNames.length);
+		for (int bone : evaluationOrder) {
+			evaluateBone(IdentityAnimation.INSTANCE, 0, pose, bone);
+		}
+		return pose;
+	}
+
+	/**
+	 * Saves allocating a pose for results that are only needed while the evaluator is used, e.g. to skin them right
+	 * away.
+	 *
+	 * @return a pose owned by this evaluator, in any state. It is shared by everyone who uses this evaluator
+	 */
+	public Pose getScratchPose() {
+		if (scratchPose == null) {
+			scratchPose = createPose();
+		}
+		return scratchPose;
+	}
+
+	/**
+	 * Binds the animation to the bones of the poses of this evaluator. Animations passed as {@link IAnimation} are
+	 * bound automatically and the result is cached.
+	 *
+	 * @param animation
+	 *            the animation to bind
+	 * @return the bound animation
+	 */
+	public IBoundAnimation bind(IAnimation animation) {
+		return animation.bindTo(boneNames);
+	}
+
+	/**
+	 * Evaluates the pose at the frame of the animation given right away. The binding of the animation is cached by
+	 * identity, pass the same instance every frame. See {@link IAnimation#bindTo(String[])}.
+	 *
+	 * @param animation
+	 *            the animation
+	 * @param frame
+	 *            the frame in the animation
+	 * @param pose
+	 *            the pose to store the result in
+	 */
+	public void evaluate(IAnimation animation, float frame, Pose pose) {
+		evaluateBound(boundAnimations.getUnchecked(animation), frame, pose);
+	}
+
+	/**
+	 * Same as {@link #evaluate(IAnimation, float, Pose)}, with an animation bound by {@link #bind(IAnimation)}. Not an
+	 * overload, both parameter types are functional interfaces of the same shape.
+	 */
+	public void evaluateBound(IBoundAnimation animation, float frame, Pose pose) {
+		checkPose(pose);
+		for (int bone : evaluationOrder) {
+			evaluateBone(animation, frame, pose, bone);
+		}
+	}
+
+	/**
+	 * Queues the pose to be evaluated with the next call to {@link #evaluateQueued()}.
+	 *
+	 * @param animation
+	 *            the animation
+	 * @param frame
+	 *            the frame in the animation
+	 * @param pose
+	 *            the pose to store the result in
+	 */
+	public void enqueue(IAnimation animation, float frame, Pose pose) {
+		enqueueBound(boundAnimations.getUnchecked(animation), frame, pose);
+	}
+
+	/**
+	 * Same as {@link #enqueue(IAnimation, float, Pose)}, with an animation bound by {@link #bind(IAnimation)}. Not an
+	 * overload, both parameter types are functional interfaces of the same shape.
+	 */
+	public void enqueueBound(IBoundAnimation animation, float frame, Pose pose) {
+		checkPose(pose);
+		if (queued == queuedPoses.length) {
+			int capacity = Math.max(16, queued * 2);
+			queuedAnimations = Arrays.copyOf(queuedAnimations, capacity);
+			queuedFrames = Arrays.copyOf(queuedFrames, capacity);
+			queuedPoses = Arrays.copyOf(queuedPoses, capacity);
+		}
+		queuedAnimations[queued] = animation;
+		queuedFrames[queued] = frame;
+		queuedPoses[queued] = pose;
+		queued++;
+	}
+
+	/**
+	 * Evaluates all queued poses and empties the queue.
+	 */
+	public void evaluateQueued() {
+		for (int bone : evaluationOrder) {
+			for (int j = 0; j < queued; j++) {
+				evaluateBone(queuedAnimations[j], queuedFrames[j], queuedPoses[j], bone);
+			}
+		}
+		Arrays.fill(queuedAnimations, 0, queued, null);
+		Arrays.fill(queuedPoses, 0, queued, null);
+		queued = 0;
+	}
+
+	private void checkPose(Pose pose) {
+		Preconditions.checkArgument(
+				pose.getBoneCount() == boneNames.length,
+				"pose has %s bones, expected %s",
+				pose.getBoneCount(),
+				boneNames.length);
+	}
+
+	/**
+	 * Same as what a bone does when the skeleton is set up, the parent of the bone must have been evaluated before.
+	 */
+	private void evaluateBone(IBoundAnimation animation, float frame, Pose pose, int bone) {
+		Matrix3x4f transformed = transformScratch;
+		if (animation.sample(bone, frame, context)) {
+			context.getMatrix(transformed);
+		} else {
+			transformed.setIdentity();
+		}
+		// world <- parent <- transformedLocal <- local
+		Matrix3x4f localToGlobal = pose.localToGlobal[bone];
+		localToGlobal.mul(localToParent[bone], transformed);
+		int parent = parents[bone];
+		if (parent >= 0) {
+			localToGlobal.mul(pose.localToGlobal[parent], localToGlobal);
+		}
+		pose.globalToGlobal[bone].mul(localToGlobal, inverseBind[bone]);
+	}
+
+	private static enum IdentityAnimation implements IBoundAnimation {
+		INSTANCE;
+
+		@Override
+		public boolean storeCurrentTransformation(int channel, float frame, BoneTransformation transform) {
+			return false;
+		}
+	}
+}
@@ -11,7 +11,10 @@ import javax.vecmath.Vector4f;
 import com.github.worldsender.mcanm.common.Utils;
 import com.github.worldsender.mcanm.common.animation.IAnimation;
 import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
 import com.github.worldsender.mcanm.common.skeleton.IBone;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
 
 public class Bone implements IBone {
 	private static final Matrix4f identity = new Matrix4f();
@@ -65,7 +68,7 @@ public class Bone implements IBone {
 		}
 
 		public Bone build() {
-			Matrix4f localToParent = Utils.fromRTS(rotation, offset, 1.0F, new Matrix4f());
+			Matrix3x4f localToParent = new Matrix3x4f(Utils.fromRTS(rotation, offset, 1.0F, new Matrix4f()));
 			if (parent != null)
 				return new ParentedBone(localToParent, name, parent);
 			return new Bone(localToParent, name);
@@ -75,40 +78,52 @@ public class Bone implements IBone {
 	private static class ParentedBone extends Bone {
 		private IBone parent;
 
-		protected ParentedBone(Matrix4f localToParent, String name, IBone parent) {
+		protected ParentedBone(Matrix3x4f localToParent, String name, IBone parent) {
 			super(localToParent, name);
 			this.parent = Objects.requireNonNull(parent, String.format("Parent of bone %s can't be null", this.name));
-		}
-
-		@Override
-		protected void globalToLocal(Matrix4f src) {
 			// local <- parent <- global
-			this.parent.transformToLocal(src);
-			super.globalToLocal(src);
+			this.inverseBind.setIdentity();
+			this.parent.transformToLocal(inverseBind);
+			this.inverseBind.mul(parentToLocal, inverseBind);
 		}
 
 		@Override
-		protected void localToGlobal(Matrix4f src) {
-			// world <- parent <- transformedLocal <- local
+		protected void localToGlobal(Matrix3x4f src) {
+			// world <- parent <- transformedLocal <- local, the parent has already been set up
 			super.localToGlobal(src);
 			this.parent.transformFromLocal(src);
 		}
+
+		@Override
+		protected int getParentVersion() {
+			return parent.getVersion();
+		}
 	}
 
-	protected final Matrix4f localToParent;
-	protected final Matrix4f parentToLocal;
+	protected final Matrix3x4f localToParent;
+	protected final Matrix3x4f parentToLocal;
 	public final String name;
 
-	protected Matrix4f transformedGlobalToGlobal = new Matrix4f(); // vertices
-	protected Matrix4f transformedGlobalToGlobalIT = new Matrix4f(); // normals
+	protected Matrix3x4f transformedGlobalToGlobal = new Matrix3x4f(); // vertices
+	protected Matrix3x4f transformedGlobalToGlobalIT = new Matrix3x4f(); // normals
+	/** Cached by {@link #setTransformation(IAnimation, float)} so that children don't have to walk up to the root */
+	protected Matrix3x4f currentLocalToGlobal = new Matrix3x4f();
+	/** Global to local space in the rest pose, only depends on the bone hierarchy */
+	protected final Matrix3x4f inverseBind;
+	private Matrix3x4f transformScratch = new Matrix3x4f();
+	private int version = 0;
+	/** The version of the parent the cached transforms were computed with */
+	private int lastParentVersion;
+	private boolean isTransformationValid = false;
 
 	protected BoneTransformation transformCache = new BoneTransformation();
-	protected Matrix4f transformed = transformCache.matrix;
+	protected Matrix3x4f transformed = new Matrix3x4f();
 
-	protected Bone(Matrix4f localMatrix, String name) {
-		this.localToParent = new Matrix4f(localMatrix);
-		this.parentToLocal = new Matrix4f(localMatrix);
+	protected Bone(Matrix3x4f localMatrix, String name) {
+		this.localToParent = new Matrix3x4f(localMatrix);
+		this.parentToLocal = new Matrix3x4f(localMatrix);
 		this.parentToLocal.invert();
+		this.inverseBind = new Matrix3x4f(parentToLocal);
 		this.name = Objects.requireNonNull(name);
 	}
 
@@ -118,7 +133,7 @@ public class Bone implements IBone {
 	 * @return the head of the bone
 	 */
 	public Vector4f getHead() {
-		Matrix4f localToGlobal = new Matrix4f(identity);
+		Matrix3x4f localToGlobal = new Matrix3x4f();
 		this.localToGlobal(localToGlobal);
 
 		Vector4f head = new Vector4f();
@@ -134,7 +149,7 @@ public class Bone implements IBone {
 	 * @return the tail of the bone
 	 */
 	public Vector4f getTail() {
-		Matrix4f localToGlobal = new Matrix4f(identity);
+		Matrix3x4f localToGlobal = new Matrix3x4f();
 		this.localToGlobal(localToGlobal);
 
 		Vector4f tail = new Vector4f();
@@ -144,14 +159,19 @@ public class Bone implements IBone {
 	}
 
 	public void resetTransform() {
-		transformed.set(identity);
-		transformedGlobalToGlobal.set(identity);
-		transformedGlobalToGlobalIT.set(identity);
+		isTransformationValid = false;
+		transformed.setIdentity();
+		updateCachedTransforms();
+		transformedGlobalToGlobal.setIdentity();
+		transformedGlobalToGlobalIT.setIdentity();
+		version++;
 	}
 
 	/**
-	 * Sets up this bone for the following calls to {@link #getLocalToWorld()}, {@link #getTransformGlobal()} and
-	 * {@link #getTransformITGlobal()}.
+	 * Sets up this bone for the following calls to {@link #getTransformGlobal(Matrix3x4f)} and
+	 * {@link #getTransformITGlobal(Matrix3x4f)}. The version of the bone is only incremented if the resulting
+	 * transformation is different from the previous one.<br>
+	 * The parent of this bone must have been set up before, its matrices are used to compute this bone's.
 	 *
 	 * @param anim
 	 *            the animation being executed
@@ -163,36 +183,77 @@ public class Bone implements IBone {
 	public void setTransformation(IAnimation anim, float frame) {
 		transformCache.matrix.set(identity);
 		anim.storeCurrentTransformation(this.name, frame, transformCache);
-		// transform = transformCache.matrix;
+		transformScratch.set(transformCache.matrix);
+		applyTransformation();
+	}
 
-		transformedGlobalToGlobal.setIdentity();
-		this.globalToLocal(transformedGlobalToGlobal);
-		this.localToGlobal(transformedGlobalToGlobal);
+	/**
+	 * Same as {@link #setTransformation(IAnimation, float)}, but the animation has already been bound to the bones of
+	 * the skeleton.
+	 *
+	 * @param anim
+	 *            the bound animation being executed
+	 * @param channel
+	 *            the channel of this bone in the bound animation
+	 * @param frame
+	 *            the frame in the animation
+	 * @param context
+	 *            the context to sample the animation with
+	 */
+	public void setTransformation(IBoundAnimation anim, int channel, float frame, SamplingContext context) {
+		if (anim.sample(channel, frame, context)) {
+			context.getMatrix(transformScratch);
+		} else {
+			transformScratch.setIdentity();
+		}
+		applyTransformation();
+	}
 
-		transformedGlobalToGlobalIT.set(transformedGlobalToGlobal);
-		transformedGlobalToGlobalIT.invert();
-		transformedGlobalToGlobalIT.transpose();
+	/**
+	 * Applies the local transformation stored in transformScratch.
+	 */
+	private void applyTransformation() {
+		int parentVersion = getParentVersion();
+		if (isTransformationValid && parentVersion == lastParentVersion && transformScratch.equals(transformed)) {
+			// Neither this bone nor its parent moved, e.g. a bone that is static in the animation
+			return;
+		}
+		isTransformationValid = true;
+		lastParentVersion = parentVersion;
+		transformed.set(transformScratch);
+
+		updateCachedTransforms();
+		transformScratch.mul(currentLocalToGlobal, inverseBind);
+		if (transformScratch.equals(transformedGlobalToGlobal)) {
+			return;
+		}
+		version++;
+		transformedGlobalToGlobal.set(transformScratch);
+
+		transformedGlobalToGlobalIT.setInverseTranspose(transformedGlobalToGlobal);
 	}
 
 	/**
-	 * Transforms the source matrix into local space and stores the resulting matrix back in the source.<br>
-	 *
-	 * @param src
-	 *            the matrix to transform
+	 * @return the version of the parent bone, a constant if there is none
 	 */
-	protected void globalToLocal(Matrix4f src) {
-		src.mul(parentToLocal, src);
+	protected int getParentVersion() {
+		return 0;
+	}
+
+	private void updateCachedTransforms() {
+		currentLocalToGlobal.setIdentity();
+		this.localToGlobal(currentLocalToGlobal);
 	}
 
 	/**
 	 * Transforms the source matrix from local into global space and stores the resulting matrix back in the source.<br>
-	 * This method is - contrary to {@link #globalToLocal(Matrix4f, Matrix4f)} sensitive to this bone's current
+	 * This method is - contrary to {@link #transformToLocal(Matrix3x4f)} sensitive to this bone's current
 	 * transformation.<br>
 	 *
 	 * @param src
 	 *            the matrix to transform
 	 */
-	protected void localToGlobal(Matrix4f src) {
+	protected void localToGlobal(Matrix3x4f src) {
 		src.mul(transformed, src);
 		src.mul(localToParent, src);
 	}
@@ -209,18 +270,18 @@ public class Bone implements IBone {
 	}
 
 	@Override
-	public void transformFromLocal(Matrix4f matrix) {
-		localToGlobal(matrix);
+	public void transformFromLocal(Matrix3x4f matrix) {
+		matrix.mul(currentLocalToGlobal, matrix);
 	}
 
 	@Override
-	public void transformToLocal(Matrix4f matrix) {
-		globalToLocal(matrix);
+	public void transformToLocal(Matrix3x4f matrix) {
+		matrix.mul(inverseBind, matrix);
 	}
 
 	@Override
-	public void transform(Matrix4f matrix) {
-		transformedGlobalToGlobal.mul(matrix, matrix);
+	public void transform(Matrix3x4f matrix) {
+		matrix.mul(transformedGlobalToGlobal, matrix);
 	}
 
 	/**
@@ -233,4 +294,39 @@ public class Bone implements IBone {
 	public void transformNormal(Vector3f normal) {
 		transformedGlobalToGlobalIT.transform(normal);
 	}
+
+	@Override
+	public void getTransformGlobal(Matrix3x4f out) {
+		out.set(transformedGlobalToGlobal);
+	}
+
+	@Override
+	public void getTransformITGlobal(Matrix3x4f out) {
+		out.set(transformedGlobalToGlobalIT);
+	}
+
+	@Override
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Stores the transformation from this bone's space into its parent's space in the rest pose.
+	 *
+	 * @param out
+	 *            the matrix to store the transformation in
+	 */
+	public void getLocalToParent(Matrix3x4f out) {
+		out.set(localToParent);
+	}
+
+	/**
+	 * Stores the transformation from global into this bone's space in the rest pose.
+	 *
+	 * @param out
+	 *            the matrix to store the transformation in
+	 */
+	public void getInverseBind(Matrix3x4f out) {
+		out.set(inverseBind);
+	}
 }
@@ -0,0 +1,364 @@
+package com.github.worldsender.mcanm.common.util;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.SingularMatrixException;
+import javax.vecmath.Tuple4f;
+import javax.vecmath.Vector3f;
+
+/**
+ * An affine transformation, that is a 4x4 matrix whose last row is always (0, 0, 0, 1). Only the upper three rows are
+ * stored, which saves a quarter of the work for multiplications and makes inverting a lot cheaper than
+ * {@link Matrix4f#invert()}.<br>
+ * Naming of the fields and the semantics of the methods follow {@link Matrix4f}.
+ */
+public class Matrix3x4f {
+	public float m00, m01, m02, m03;
+	public float m10, m11, m12, m13;
+	public float m20, m21, m22, m23;
+
+	/**
+	 * Constructs a new identity matrix. Note that this is different from {@link Matrix4f#Matrix4f()}.
+	 */
+	public Matrix3x4f() {
+		setIdentity();
+	}
+
+	public Matrix3x4f(Matrix3x4f m) {
+		set(m);
+	}
+
+	public Matrix3x4f(Matrix4f m) {
+		set(m);
+	}
+
+	public final void setIdentity() {
+		m00 = 1;
+		m01 = 0;
+		m02 = 0;
+		m03 = 0;
+		m10 = 0;
+		m11 = 1;
+		m12 = 0;
+		m13 = 0;
+		m20 = 0;
+		m21 = 0;
+		m22 = 1;
+		m23 = 0;
+	}
+
+	public final void set(Matrix3x4f m) {
+		m00 = m.m00;
+		m01 = m.m01;
+		m02 = m.m02;
+		m03 = m.m03;
+		m10 = m.m10;
+		m11 = m.m11;
+		m12 = m.m12;
+		m13 = m.m13;
+		m20 = m.m20;
+		m21 = m.m21;
+		m22 = m.m22;
+		m23 = m.m23;
+	}
+
+	/**
+	 * Sets this matrix to the upper three rows of the matrix given. The last row of m is assumed to be (0, 0, 0, 1).
+	 *
+	 * @param m
+	 *            an affine transformation
+	 */
+	public final void set(Matrix4f m) {
+		m00 = m.m00;
+		m01 = m.m01;
+		m02 = m.m02;
+		m03 = m.m03;
+		m10 = m.m10;
+		m11 = m.m11;
+		m12 = m.m12;
+		m13 = m.m13;
+		m20 = m.m20;
+		m21 = m.m21;
+		m22 = m.m22;
+		m23 = m.m23;
+	}
+
+	/**
+	 * Stores this matrix in the 4x4 matrix given, with the last row set to (0, 0, 0, 1).
+	 *
+	 * @param out
+	 *            the matrix to store this matrix in
+	 */
+	public final void get(Matrix4f out) {
+		out.m00 = m00;
+		out.m01 = m01;
+		out.m02 = m02;
+		out.m03 = m03;
+		out.m10 = m10;
+		out.m11 = m11;
+		out.m12 = m12;
+		out.m13 = m13;
+		out.m20 = m20;
+		out.m21 = m21;
+		out.m22 = m22;
+		out.m23 = m23;
+		out.m30 = 0;
+		out.m31 = 0;
+		out.m32 = 0;
+		out.m33 = 1;
+	}
+
+	/**
+	 * Stores the twelve values of this matrix row by row in the array given.
+	 *
+	 * @param out
+	 *            the array to write to
+	 * @param offset
+	 *            the index of the first value
+	 */
+	public final void get(float[] out, int offset) {
+		out[offset] = m00;
+		out[offset + 1] = m01;
+		out[offset + 2] = m02;
+		out[offset + 3] = m03;
+		out[offset + 4] = m10;
+		out[offset + 5] = m11;
+		out[offset + 6] = m12;
+		out[offset + 7] = m13;
+		out[offset + 8] = m20;
+		out[offset + 9] = m21;
+		out[offset + 10] = m22;
+		out[offset + 11] = m23;
+	}
+
+	/**
+	 * Stores the nine values of the upper left 3x3 matrix row by row in the array given. This is all that is needed to
+	 * transform normals.
+	 *
+	 * @param out
+	 *            the array to write to
+	 * @param offset
+	 *            the index of the first value
+	 */
+	public final void getRotationScale(float[] out, int offset) {
+		out[offset] = m00;
+		out[offset + 1] = m01;
+		out[offset + 2] = m02;
+		out[offset + 3] = m10;
+		out[offset + 4] = m11;
+		out[offset + 5] = m12;
+		out[offset + 6] = m20;
+		out[offset + 7] = m21;
+		out[offset + 8] = m22;
+	}
+
+	/**
+	 * Sets this matrix to the product of m1 and m2, this = m1 * m2. Either of the matrices may be this matrix.
+	 *
+	 * @param m1
+	 *            the left matrix
+	 * @param m2
+	 *            the right matrix
+	 */
+	public final void mul(Matrix3x4f m1, Matrix3x4f m2) {
+		float r00 = m1.m00 * m2.m00 + m1.m01 * m2.m10 + m1.m02 * m2.m20;
+		float r01 = m1.m00 * m2.m01 + m1.m01 * m2.m11 + m1.m02 * m2.m21;
+		float r02 = m1.m00 * m2.m02 + m1.m01 * m2.m12 + m1.m02 * m2.m22;
+		float r03 = m1.m00 * m2.m03 + m1.m01 * m2.m13 + m1.m02 * m2.m23 + m1.m03;
+		float r10 = m1.m10 * m2.m00 + m1.m11 * m2.m10 + m1.m12 * m2.m20;
+		float r11 = m1.m10 * m2.m01 + m1.m11 * m2.m11 + m1.m12 * m2.m21;
+		float r12 = m1.m10 * m2.m02 + m1.m11 * m2.m12 + m1.m12 * m2.m22;
+		float r13 = m1.m10 * m2.m03 + m1.m11 * m2.m13 + m1.m12 * m2.m23 + m1.m13;
+		float r20 = m1.m20 * m2.m00 + m1.m21 * m2.m10 + m1.m22 * m2.m20;
+		float r21 = m1.m20 * m2.m01 + m1.m21 * m2.m11 + m1.m22 * m2.m21;
+		float r22 = m1.m20 * m2.m02 + m1.m21 * m2.m12 + m1.m22 * m2.m22;
+		float r23 = m1.m20 * m2.m03 + m1.m21 * m2.m13 + m1.m22 * m2.m23 + m1.m23;
+		m00 = r00;
+		m01 = r01;
+		m02 = r02;
+		m03 = r03;
+		m10 = r10;
+		m11 = r11;
+		m12 = r12;
+		m13 = r13;
+		m20 = r20;
+		m21 = r21;
+		m22 = r22;
+		m23 = r23;
+	}
+
+	/**
+	 * Multiplies this matrix with m from the right, this = this * m.
+	 *
+	 * @param m
+	 *            the right matrix
+	 */
+	public final void mul(Matrix3x4f m) {
+		mul(this, m);
+	}
+
+	private float determinant3x3() {
+		return m00 * (m11 * m22 - m12 * m21) - m01 * (m10 * m22 - m12 * m20) + m02 * (m10 * m21 - m11 * m20);
+	}
+
+	/**
+	 * Inverts this matrix in place. As the matrix is affine, only the upper left 3x3 matrix has to be inverted, the
+	 * translation follows from it.
+	 *
+	 * @throws SingularMatrixException
+	 *             if the matrix can't be inverted
+	 */
+	public final void invert() {
+		invert(this);
+	}
+
+	/**
+	 * Sets this matrix to the inverse of the matrix given.
+	 *
+	 * @param m
+	 *            the matrix to invert, may be this matrix
+	 * @throws SingularMatrixException
+	 *             if the matrix can't be inverted
+	 */
+	public final void invert(Matrix3x4f m) {
+		float det = m.determinant3x3();
+		if (det == 0) {
+			throw new SingularMatrixException("Matrix is singular");
+		}
+		float invDet = 1 / det;
+		// The inverse of the 3x3 part is its adjugate divided by the determinant
+		float i00 = (m.m11 * m.m22 - m.m12 * m.m21) * invDet;
+		float i01 = (m.m02 * m.m21 - m.m01 * m.m22) * invDet;
+		float i02 = (m.m01 * m.m12 - m.m02 * m.m11) * invDet;
+		float i10 = (m.m12 * m.m20 - m.m10 * m.m22) * invDet;
+		float i11 = (m.m00 * m.m22 - m.m02 * m.m20) * invDet;
+		float i12 = (m.m02 * m.m10 - m.m00 * m.m12) * invDet;
+		float i20 = (m.m10 * m.m21 - m.m11 * m.m20) * invDet;
+		float i21 = (m.m01 * m.m20 - m.m00 * m.m21) * invDet;
+		float i22 = (m.m00 * m.m11 - m.m01 * m.m10) * invDet;
+		float tx = m.m03, ty = m.m13, tz = m.m23;
+		m00 = i00;
+		m01 = i01;
+		m02 = i02;
+		m03 = -(i00 * tx + i01 * ty + i02 * tz);
+		m10 = i10;
+		m11 = i11;
+		m12 = i12;
+		m13 = -(i10 * tx + i11 * ty + i12 * tz);
+		m20 = i20;
+		m21 = i21;
+		m22 = i22;
+		m23 = -(i20 * tx + i21 * ty + i22 * tz);
+	}
+
+	/**
+	 * Sets this matrix to the matrix that transforms normals the same way m transforms positions, that is the inverse
+	 * transpose of the upper left 3x3 matrix of m. The translation of this matrix is set to zero.<br>
+	 * The inverse transpose is the matrix of cofactors divided by the determinant, no transposing necessary.
+	 *
+	 * @param m
+	 *            the matrix to get the normal matrix of, may be this matrix
+	 * @throws SingularMatrixException
+	 *             if the matrix can't be inverted
+	 */
+	public final void setInverseTranspose(Matrix3x4f m) {
+		float det = m.determinant3x3();
+		if (det == 0) {
+			throw new SingularMatrixException("Matrix is singular");
+		}
+		float invDet = 1 / det;
+		float c00 = (m.m11 * m.m22 - m.m12 * m.m21) * invDet;
+		float c01 = (m.m12 * m.m20 - m.m10 * m.m22) * invDet;
+		float c02 = (m.m10 * m.m21 - m.m11 * m.m20) * invDet;
+		float c10 = (m.m02 * m.m21 - m.m01 * m.m22) * invDet;
+		float c11 = (m.m00 * m.m22 - m.m02 * m.m20) * invDet;
+		float c12 = (m.m01 * m.m20 - m.m00 * m.m21) * invDet;
+		float c20 = (m.m01 * m.m12 - m.m02 * m.m11) * invDet;
+		float c21 = (m.m02 * m.m10 - m.m00 * m.m12) * invDet;
+		float c22 = (m.m00 * m.m11 - m.m01 * m.m10) * invDet;
+		m00 = c00;
+		m01 = c01;
+		m02 = c02;
+		m03 = 0;
+		m10 = c10;
+		m11 = c11;
+		m12 = c12;
+		m13 = 0;
+		m20 = c20;
+		m21 = c21;
+		m22 = c22;
+		m23 = 0;
+	}
+
+	/**
+	 * Transforms the tuple given in place. The w-component is left unchanged, as the last row is (0, 0, 0, 1).
+	 *
+	 * @param t
+	 *            the point or vector to transform
+	 */
+	public final void transform(Tuple4f t) {
+		float x = t.x, y = t.y, z = t.z, w = t.w;
+		t.x = m00 * x + m01 * y + m02 * z + m03 * w;
+		t.y = m10 * x + m11 * y + m12 * z + m13 * w;
+		t.z = m20 * x + m21 * y + m22 * z + m23 * w;
+	}
+
+	/**
+	 * Transforms the vector given in place, ignoring the translation.
+	 *
+	 * @param v
+	 *            the vector to transform
+	 */
+	public final void transform(Vector3f v) {
+		float x = v.x, y = v.y, z = v.z;
+		v.x = m00 * x + m01 * y + m02 * z;
+		v.y = m10 * x + m11 * y + m12 * z;
+		v.z = m20 * x + m21 * y + m22 * z;
+	}
+
+	public boolean equals(Matrix3x4f m) {
+		return m != null && m00 == m.m00 && m01 == m.m01 && m02 == m.m02 && m03 == m.m03 && m10 == m.m10
+				&& m11 == m.m11 && m12 == m.m12 && m13 == m.m13 && m20 == m.m20 && m21 == m.m21 && m22 == m.m22
+				&& m23 == m.m23;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof Matrix3x4f && equals((Matrix3x4f) obj);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = 1;
+		result = 31 * result + Float.floatToIntBits(m00);
+		result = 31 * result + Float.floatToIntBits(m01);
+		result = 31 * result + Float.floatToIntBits(m02);
+		result = 31 * result + Float.floatToIntBits(m03);
+		result = 31 * result + Float.floatToIntBits(m10);
+		result = 31 * result + Float.floatToIntBits(m11);
+		result = 31 * result + Float.floatToIntBits(m12);
+		result = 31 * result + Float.floatToIntBits(m13);
+		result = 31 * result + Float.floatToIntBits(m20);
+		result = 31 * result + Float.floatToIntBits(m21);
+		result = 31 * result + Float.floatToIntBits(m22);
+		result = 31 * result + Float.floatToIntBits(m23);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%f, %f, %f, %f\n%f, %f, %f, %f\n%f, %f, %f, %f\n",
+				m00,
+				m01,
+				m02,
+				m03,
+				m10,
+				m11,
+				m12,
+				m13,
+				m20,
+				m21,
+				m22,
+				m23);
+	}
+}
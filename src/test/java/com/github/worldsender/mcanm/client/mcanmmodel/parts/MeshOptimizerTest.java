@@ -0,0 +1,115 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.vecmath.Vector3f;
+
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
+
+public class MeshOptimizerTest {
+	private static final int GRID_SIZE = 16;
+	private static final int LEVEL_COUNT = 3;
+
+	@Test
+	public void testTrianglesAreKept() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[] indices = shuffled(TestMeshes.grid(GRID_SIZE, points));
+		short[] optimized = MeshOptimizer.optimizeTriangleOrder(indices, points.size());
+		assertEquals(triangleSet(indices), triangleSet(optimized));
+		assertEquals(indices.length, optimized.length);
+	}
+
+	@Test
+	public void testCacheMissesAreReduced() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[] indices = shuffled(TestMeshes.grid(GRID_SIZE, points));
+		short[] optimized = MeshOptimizer.optimizeTriangleOrder(indices, points.size());
+		assertTrue(averageCacheMissRatio(optimized) < 0.5 * averageCacheMissRatio(indices));
+	}
+
+	@Test
+	public void testVerticesAreOrderedByFirstUse() {
+		short[] indices = { 4, 2, 3, 3, 2, 0 };
+		int[] newIndices = MeshOptimizer.optimizeVertexOrder(6, indices);
+		assertTrue(Arrays.equals(new int[] { 3, 4, 1, 2, 0, 5 }, newIndices));
+	}
+
+	@Test
+	public void testLevelsUseVertexPrefixes() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[][] levels = MeshSimplifier.simplify(points, TestMeshes.grid(GRID_SIZE, points), LEVEL_COUNT);
+		List<List<List<Vector3f>>> before = new ArrayList<>();
+		for (short[] level : levels) {
+			before.add(sortedTriangles(points, level));
+		}
+		short[][] optimized = MeshOptimizer.optimize(points, levels);
+		for (int l = 0; l < optimized.length; l++) {
+			Set<Integer> used = TestMeshes.usedVertices(optimized[l]);
+			// The used vertices are exactly the first ones
+			assertEquals(used.size() - 1, (int) Collections.max(used));
+			assertEquals(before.get(l), sortedTriangles(points, optimized[l]));
+			if (l > 0 && levels[l] == levels[l - 1]) {
+				assertSame(optimized[l - 1], optimized[l]);
+			}
+		}
+	}
+
+	private static short[] shuffled(short[] indices) {
+		List<Integer> order = new ArrayList<>();
+		for (int t = 0; t < indices.length / 3; t++) {
+			order.add(t);
+		}
+		Collections.shuffle(order, new Random(42));
+		short[] shuffled = new short[indices.length];
+		for (int t = 0; t < order.size(); t++) {
+			System.arraycopy(indices, order.get(t) * 3, shuffled, t * 3, 3);
+		}
+		return shuffled;
+	}
+
+	private static Set<List<Short>> triangleSet(short[] indices) {
+		Set<List<Short>> triangles = new HashSet<>();
+		for (int t = 0; t < indices.length; t += 3) {
+			triangles.add(Arrays.asList(indices[t], indices[t + 1], indices[t + 2]));
+		}
+		return triangles;
+	}
+
+	private static List<List<Vector3f>> sortedTriangles(List<TesselationPoint> points, short[] indices) {
+		List<List<Vector3f>> triangles = TestMeshes.trianglePositions(points, indices);
+		triangles.sort((a, b) -> a.toString().compareTo(b.toString()));
+		return triangles;
+	}
+
+	/**
+	 * Simulates a FIFO cache of 16 vertices.
+	 *
+	 * @return the number of cache misses per triangle
+	 */
+	private static double averageCacheMissRatio(short[] indices) {
+		List<Short> cache = new ArrayList<>();
+		int misses = 0;
+		for (short index : indices) {
+			if (cache.contains(index))
+				continue;
+			misses++;
+			cache.add(index);
+			if (cache.size() > 16) {
+				cache.remove(0);
+			}
+		}
+		return misses / (indices.length / 3.0);
+	}
+}
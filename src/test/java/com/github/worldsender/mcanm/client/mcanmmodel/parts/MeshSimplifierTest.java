@@ -0,0 +1,82 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.vecmath.Vector3f;
+
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
+
+public class MeshSimplifierTest {
+	private static final int GRID_SIZE = 16;
+	private static final int LEVEL_COUNT = 3;
+
+	@Test
+	public void testSmallMeshIsNotSimplified() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[] indices = TestMeshes.grid(2, points);
+		short[][] levels = MeshSimplifier.simplify(points, indices, LEVEL_COUNT);
+		for (short[] level : levels) {
+			assertSame(indices, level);
+		}
+	}
+
+	@Test
+	public void testLevelsGetCoarser() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[] indices = TestMeshes.grid(GRID_SIZE, points);
+		short[][] levels = MeshSimplifier.simplify(points, indices, LEVEL_COUNT);
+		assertSame(indices, levels[0]);
+		assertTrue(levels.length == LEVEL_COUNT + 1);
+		assertTrue(levels[1].length / 3 <= (indices.length / 3) >> 1);
+		for (int l = 1; l < levels.length; l++) {
+			assertTrue(levels[l].length <= levels[l - 1].length);
+			assertTrue(levels[l].length % 3 == 0);
+		}
+	}
+
+	@Test
+	public void testLevelsAreNested() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[][] levels = MeshSimplifier.simplify(points, TestMeshes.grid(GRID_SIZE, points), LEVEL_COUNT);
+		for (int l = 1; l < levels.length; l++) {
+			Set<Integer> finer = TestMeshes.usedVertices(levels[l - 1]);
+			assertTrue(finer.containsAll(TestMeshes.usedVertices(levels[l])));
+		}
+	}
+
+	@Test
+	public void testBorderIsKept() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[][] levels = MeshSimplifier.simplify(points, TestMeshes.grid(GRID_SIZE, points), LEVEL_COUNT);
+		for (short[] level : levels) {
+			Set<Integer> used = TestMeshes.usedVertices(level);
+			for (int v = 0; v < points.size(); v++) {
+				Vector3f coords = points.get(v).coords;
+				boolean isBorder = coords.x == 0 || coords.x == 1 || coords.y == 0 || coords.y == 1;
+				assertTrue(!isBorder || used.contains(v));
+			}
+		}
+	}
+
+	@Test
+	public void testTrianglesDontFlip() {
+		List<TesselationPoint> points = new ArrayList<>();
+		short[][] levels = MeshSimplifier.simplify(points, TestMeshes.grid(GRID_SIZE, points), LEVEL_COUNT);
+		for (short[] level : levels) {
+			for (List<Vector3f> corners : TestMeshes.trianglePositions(points, level)) {
+				Vector3f u = new Vector3f(), v = new Vector3f(), normal = new Vector3f();
+				u.sub(corners.get(1), corners.get(0));
+				v.sub(corners.get(2), corners.get(0));
+				normal.cross(u, v);
+				assertTrue(normal.z > 0);
+			}
+		}
+	}
+}
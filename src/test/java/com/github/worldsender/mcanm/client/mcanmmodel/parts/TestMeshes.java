@@ -0,0 +1,83 @@
+package com.github.worldsender.mcanm.client.mcanmmodel.parts;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.vecmath.Vector2f;
+import javax.vecmath.Vector3f;
+
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.BoneBinding;
+import com.github.worldsender.mcanm.client.mcanmmodel.visitor.TesselationPoint;
+
+/**
+ * Small meshes for the tests of the mesh processing.
+ */
+final class TestMeshes {
+	private TestMeshes() {}
+
+	/**
+	 * A slightly curved square grid bound to a single bone.
+	 *
+	 * @param size
+	 *            the number of quads along each side
+	 * @param points
+	 *            the list to add the vertices to
+	 * @return the indices of the triangles
+	 */
+	public static short[] grid(int size, List<TesselationPoint> points) {
+		for (int y = 0; y <= size; y++) {
+			for (int x = 0; x <= size; x++) {
+				float u = (float) x / size, v = (float) y / size;
+				TesselationPoint point = new TesselationPoint();
+				point.coords = new Vector3f(u, v, 0.1f * (u - 0.5f) * (u - 0.5f));
+				point.normal = new Vector3f(0, 0, 1);
+				point.texCoords = new Vector2f(u, v);
+				BoneBinding binding = new BoneBinding();
+				binding.boneIndex = 0;
+				binding.bindingValue = 1;
+				point.boneBindings = new BoneBinding[] { binding };
+				points.add(point);
+			}
+		}
+		short[] indices = new short[size * size * 6];
+		int i = 0;
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				int v = y * (size + 1) + x;
+				int[] quad = { v, v + 1, v + size + 1, v + 1, v + size + 2, v + size + 1 };
+				for (int corner : quad) {
+					indices[i++] = (short) corner;
+				}
+			}
+		}
+		return indices;
+	}
+
+	/**
+	 * @return the vertices used by the triangles
+	 */
+	public static Set<Integer> usedVertices(short[] indices) {
+		Set<Integer> used = new HashSet<>();
+		for (short index : indices) {
+			used.add(index & 0xFFFF);
+		}
+		return used;
+	}
+
+	/**
+	 * @return the positions of the corners of each triangle, to compare meshes independent of the vertex order
+	 */
+	public static List<List<Vector3f>> trianglePositions(List<TesselationPoint> points, short[] indices) {
+		List<List<Vector3f>> triangles = new ArrayList<>();
+		for (int t = 0; t < indices.length; t += 3) {
+			List<Vector3f> corners = new ArrayList<>();
+			for (int c = 0; c < 3; c++) {
+				corners.add(points.get(indices[t + c] & 0xFFFF).coords);
+			}
+			triangles.add(corners);
+		}
+		return triangles;
+	}
+}
@@ -0,0 +1,97 @@
+package com.github.worldsender.mcanm.client.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.IBoundAnimation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+
+public class AnimationsTest {
+	private static final String[] BONES = { "a", "b" };
+
+	/**
+	 * Translates the one bone it knows by x and counts how often it is bound.
+	 */
+	private static class CountingAnimation implements IAnimation {
+		private final String bone;
+		private final float x;
+		private int bindCount = 0;
+
+		public CountingAnimation(String bone, float x) {
+			this.bone = bone;
+			this.x = x;
+		}
+
+		@Override
+		public boolean storeCurrentTransformation(String bone, float frame, BoneTransformation transform) {
+			if (!this.bone.equals(bone)) {
+				return false;
+			}
+			transform.matrix.setIdentity();
+			transform.matrix.m03 = x;
+			return true;
+		}
+
+		@Override
+		public IBoundAnimation bindTo(String[] boneNames) {
+			bindCount++;
+			return IAnimation.super.bindTo(boneNames);
+		}
+	}
+
+	private static float sampleX(IBoundAnimation bound, int channel) {
+		BoneTransformation transform = new BoneTransformation();
+		assertTrue(bound.storeCurrentTransformation(channel, 0, transform));
+		return transform.matrix.m03;
+	}
+
+	@Test
+	public void testFirstChoiceWins() {
+		CountingAnimation first = new CountingAnimation("a", 1), second = new CountingAnimation("a", 2);
+		CountingAnimation other = new CountingAnimation("b", 3);
+		IBoundAnimation bound = Animations.combined(first, second, other).bindTo(BONES);
+		assertEquals(1, sampleX(bound, 0), 0);
+		assertEquals(3, sampleX(bound, 1), 0);
+		SamplingContext context = new SamplingContext();
+		assertTrue(bound.sample(1, 0, context));
+		assertFalse(Animations.combined(second).bindTo(BONES).sample(1, 0, context));
+	}
+
+	@Test
+	public void testRecombiningDoesNotBindTheChoicesAgain() {
+		CountingAnimation first = new CountingAnimation("a", 1), second = new CountingAnimation("b", 2);
+		for (int frame = 0; frame < 10; frame++) {
+			IBoundAnimation bound = Animations.combined(first, second).bindTo(BONES);
+			assertEquals(1, sampleX(bound, 0), 0);
+			assertEquals(2, sampleX(bound, 1), 0);
+		}
+		assertEquals(1, first.bindCount);
+		assertEquals(1, second.bindCount);
+		// Other bones get their own binding
+		sampleX(Animations.combined(first).bindTo(BONES.clone()), 0);
+		assertEquals(2, first.bindCount);
+	}
+
+	@Test
+	public void testChangedChoicesAreFollowed() {
+		List<IAnimation> choices = new ArrayList<>();
+		choices.add(new CountingAnimation("a", 1));
+		IBoundAnimation bound = Animations.combined(choices).bindTo(BONES);
+		assertEquals(1, sampleX(bound, 0), 0);
+		assertFalse(bound.storeCurrentTransformation(1, 0, new BoneTransformation()));
+		choices.add(0, new CountingAnimation("a", 4));
+		choices.add(new CountingAnimation("b", 5));
+		assertEquals(4, sampleX(bound, 0), 0);
+		assertEquals(5, sampleX(bound, 1), 0);
+		choices.clear();
+		assertFalse(bound.storeCurrentTransformation(0, 0, new BoneTransformation()));
+	}
+}
@@ -0,0 +1,170 @@
+package com.github.worldsender.mcanm.common.animation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import javax.vecmath.Matrix4f;
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+public class TransformComponentsTest {
+	private static final int COMPONENTS = TransformComponents.COMPONENTS;
+	private static final int ROTATION = TransformComponents.ROTATION;
+	private static final float EPSILON = 1e-5f;
+
+	private final Random random = new Random(42);
+
+	private float[] randomComponents() {
+		float[] components = new float[COMPONENTS];
+		for (int i = 0; i < 3; i++) {
+			components[TransformComponents.TRANSLATION + i] = random.nextFloat() * 10 - 5;
+			components[TransformComponents.SCALE + i] = 0.2f + random.nextFloat() * 2;
+		}
+		Quat4f rotation = new Quat4f(
+				random.nextFloat() - 0.5f,
+				random.nextFloat() - 0.5f,
+				random.nextFloat() - 0.5f,
+				random.nextFloat() - 0.5f);
+		rotation.normalize();
+		components[ROTATION + 0] = rotation.x;
+		components[ROTATION + 1] = rotation.y;
+		components[ROTATION + 2] = rotation.z;
+		components[ROTATION + 3] = rotation.w;
+		return components;
+	}
+
+	private static void assertMatrixEquals(Matrix4f expected, Matrix4f actual) {
+		for (int row = 0; row < 4; row++) {
+			for (int column = 0; column < 4; column++) {
+				assertEquals(expected.getElement(row, column), actual.getElement(row, column), EPSILON);
+			}
+		}
+	}
+
+	/**
+	 * Compares two components, the rotations q and -q being the same.
+	 */
+	private static void assertComponentsEqual(float[] expected, float[] actual) {
+		float dot = 0;
+		for (int i = ROTATION; i < TransformComponents.SCALE; i++) {
+			dot += expected[i] * actual[i];
+		}
+		for (int i = 0; i < COMPONENTS; i++) {
+			boolean isRotation = i >= ROTATION && i < TransformComponents.SCALE;
+			float sign = isRotation && dot < 0 ? -1 : 1;
+			assertEquals(expected[i], sign * actual[i], EPSILON);
+		}
+	}
+
+	@Test
+	public void testIdentity() {
+		float[] identity = new float[COMPONENTS];
+		TransformComponents.setIdentity(identity, 0);
+		Matrix4f matrix = new Matrix4f();
+		TransformComponents.compose(identity, 0, matrix);
+		Matrix4f expected = new Matrix4f();
+		expected.setIdentity();
+		assertMatrixEquals(expected, matrix);
+	}
+
+	@Test
+	public void testComposeMatchesBoneTransformation() {
+		for (int i = 0; i < 100; i++) {
+			float[] c = randomComponents();
+			Matrix4f matrix = new Matrix4f();
+			TransformComponents.compose(c, 0, matrix);
+			BoneTransformation expected = new BoneTransformation(
+					new Vector3f(c[0], c[1], c[2]),
+					new Quat4f(c[3], c[4], c[5], c[6]),
+					new Vector3f(c[7], c[8], c[9]));
+			assertMatrixEquals(expected.matrix, matrix);
+
+			Matrix3x4f affine = new Matrix3x4f();
+			TransformComponents.compose(c, 0, affine);
+			Matrix4f fromAffine = new Matrix4f();
+			affine.get(fromAffine);
+			assertMatrixEquals(matrix, fromAffine);
+		}
+	}
+
+	@Test
+	public void testDecomposeInvertsCompose() {
+		for (int i = 0; i < 100; i++) {
+			float[] components = randomComponents();
+			if (i % 2 == 1) {
+				// Mirrored, the negative scale is put on the x axis
+				components[TransformComponents.SCALE] *= -1;
+			}
+			Matrix4f matrix = new Matrix4f();
+			TransformComponents.compose(components, 0, matrix);
+			float[] decomposed = new float[COMPONENTS + 3];
+			TransformComponents.decompose(matrix, decomposed, 3);
+			Matrix4f recomposed = new Matrix4f();
+			TransformComponents.compose(decomposed, 3, recomposed);
+			assertMatrixEquals(matrix, recomposed);
+			if (i % 2 == 0) {
+				float[] unshifted = new float[COMPONENTS];
+				System.arraycopy(decomposed, 3, unshifted, 0, COMPONENTS);
+				assertComponentsEqual(components, unshifted);
+			}
+		}
+	}
+
+	@Test
+	public void testInterpolate() {
+		float[] a = randomComponents(), b = randomComponents();
+		float[] result = new float[COMPONENTS];
+		TransformComponents.interpolate(a, 0, b, 0, 0, result, 0);
+		assertComponentsEqual(a, result);
+		TransformComponents.interpolate(a, 0, b, 0, 1, result, 0);
+		assertComponentsEqual(b, result);
+		TransformComponents.interpolate(a, 0, b, 0, 0.5f, result, 0);
+		for (int i = 0; i < 3; i++) {
+			assertEquals((a[i] + b[i]) / 2, result[i], EPSILON);
+		}
+		// The same rotation with a negated quaternion is not a half turn away
+		float[] negated = a.clone();
+		for (int i = ROTATION; i < TransformComponents.SCALE; i++) {
+			negated[i] = -negated[i];
+		}
+		TransformComponents.interpolate(a, 0, negated, 0, 0.5f, result, 0);
+		assertComponentsEqual(a, result);
+	}
+
+	@Test
+	public void testAdd() {
+		float[] base = randomComponents(), addition = randomComponents();
+		float[] result = base.clone();
+		TransformComponents.add(result, 0, addition, 0, 0);
+		assertComponentsEqual(base, result);
+
+		float[] identity = new float[COMPONENTS];
+		TransformComponents.setIdentity(identity, 0);
+		result = base.clone();
+		TransformComponents.add(result, 0, identity, 0, 0.7f);
+		assertComponentsEqual(base, result);
+
+		result = base.clone();
+		TransformComponents.add(result, 0, addition, 0, 1);
+		Quat4f expectedRotation = new Quat4f(base[3], base[4], base[5], base[6]);
+		expectedRotation.mul(new Quat4f(addition[3], addition[4], addition[5], addition[6]));
+		float[] expected = {
+				base[0] + addition[0],
+				base[1] + addition[1],
+				base[2] + addition[2],
+				expectedRotation.x,
+				expectedRotation.y,
+				expectedRotation.z,
+				expectedRotation.w,
+				base[7] * addition[7],
+				base[8] * addition[8],
+				base[9] * addition[9] };
+		assertComponentsEqual(expected, result);
+	}
+}
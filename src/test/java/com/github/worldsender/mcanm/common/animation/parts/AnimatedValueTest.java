@@ -0,0 +1,128 @@
+package com.github.worldsender.mcanm.common.animation.parts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.common.animation.parts.AnimatedValue.AnimatedValueBuilder;
+
+public class AnimatedValueTest {
+	private static final int KEY_COUNT = 40;
+
+	/**
+	 * Never in range. Added after the keyframes it makes the value unkeyed, so that it is looked up by the linear scan.
+	 */
+	private static final Spline NEVER_IN_RANGE = new Spline() {
+		@Override
+		public boolean isInRange(float frame) {
+			return false;
+		}
+
+		@Override
+		public float getValueAt(float frame) {
+			throw new IllegalArgumentException();
+		}
+	};
+
+	private float[] times;
+	private float[] values;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(42);
+		times = new float[KEY_COUNT];
+		values = new float[KEY_COUNT];
+		float time = 0;
+		for (int i = 0; i < KEY_COUNT; i++) {
+			time += 0.5f + random.nextInt(8);
+			times[i] = time;
+			values[i] = random.nextFloat() * 10 - 5;
+		}
+	}
+
+	private AnimatedValue linearScan(byte interpolation) throws IOException {
+		return new AnimatedValueBuilder().setDefaultValue(0)
+				.fromStream(TestChannels.read(TestChannels.channel(interpolation, times, values)))
+				.addSpline(NEVER_IN_RANGE).buildAndReset();
+	}
+
+	private float[] probeTimes() {
+		float first = times[0] - 5, last = times[KEY_COUNT - 1] + 5;
+		float[] probes = new float[KEY_COUNT + 1000];
+		for (int i = 0; i < 1000; i++) {
+			probes[i] = first + (last - first) * i / 999;
+		}
+		// Exactly at the keys, where two splines are in range
+		System.arraycopy(times, 0, probes, 1000, KEY_COUNT);
+		return probes;
+	}
+
+	@Test
+	public void testKeysAreFound() throws IOException {
+		AnimatedValue value = TestChannels.value(Spline.INTERPOLATION_LINEAR, times, values);
+		assertTrue(value.isKeyed());
+		assertFalse(value.isConstant());
+		assertEquals(times[0], value.getFirstKeyTime(), 0);
+		assertEquals(times[KEY_COUNT - 1], value.getLastKeyTime(), 0);
+		assertFalse(linearScan(Spline.INTERPOLATION_LINEAR).isKeyed());
+	}
+
+	@Test
+	public void testBinarySearchMatchesLinearScan() throws IOException {
+		for (byte interpolation : new byte[] { Spline.INTERPOLATION_LINEAR, Spline.INTERPOLATION_BSPLINE }) {
+			AnimatedValue value = TestChannels.value(interpolation, times, values);
+			AnimatedValue reference = linearScan(interpolation);
+			for (float time : probeTimes()) {
+				assertEquals(reference.getValueAt(time), value.getValueAt(time), 0);
+			}
+		}
+	}
+
+	@Test
+	public void testCursorMatchesSearch() throws IOException {
+		AnimatedValue value = TestChannels.value(Spline.INTERPOLATION_BSPLINE, times, values);
+		AnimatedValue.Cursor cursor = new AnimatedValue.Cursor();
+		// Played forward, then backward, then in random order
+		for (float time : probeTimes()) {
+			assertEquals(value.getValueAt(time), value.getValueAt(time, cursor), 0);
+		}
+		float[] probes = probeTimes();
+		for (int i = probes.length - 1; i >= 0; i--) {
+			assertEquals(value.getValueAt(probes[i]), value.getValueAt(probes[i], cursor), 0);
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < 1000; i++) {
+			float time = probes[random.nextInt(probes.length)];
+			assertEquals(value.getValueAt(time), value.getValueAt(time, cursor), 0);
+		}
+	}
+
+	@Test
+	public void testCursorIsOnlyAHint() throws IOException {
+		AnimatedValue value = TestChannels.value(Spline.INTERPOLATION_LINEAR, times, values);
+		AnimatedValue shorter = TestChannels
+				.value(Spline.INTERPOLATION_LINEAR, new float[] { 0, 1 }, new float[] { 2, 3 });
+		AnimatedValue.Cursor cursor = new AnimatedValue.Cursor();
+		float last = times[KEY_COUNT - 1];
+		assertEquals(value.getValueAt(last), value.getValueAt(last, cursor), 0);
+		// The cursor points past the keys of the shorter value
+		assertEquals(shorter.getValueAt(0.5f), shorter.getValueAt(0.5f, cursor), 0);
+	}
+
+	@Test
+	public void testConstantChannel() throws IOException {
+		float[] constant = new float[KEY_COUNT];
+		Arrays.fill(constant, 1.5f);
+		AnimatedValue value = TestChannels.value(Spline.INTERPOLATION_BSPLINE, times, constant);
+		assertTrue(value.isConstant());
+		assertEquals(1.5f, value.getValueAt(times[3] + 0.25f), 0);
+		assertTrue(TestChannels.value(Spline.INTERPOLATION_LINEAR, new float[0], new float[0]).isConstant());
+	}
+}
@@ -0,0 +1,104 @@
+package com.github.worldsender.mcanm.common.animation.parts;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.lwjgl.util.vector.Vector2f;
+
+public class BSplineInterpolationTest {
+	private static final float TOLERANCE = 1e-4f;
+	private static final int PROBES = 1000;
+
+	private static final Vector2f LEFT = new Vector2f(2, -1);
+	private static final Vector2f RIGHT = new Vector2f(10, 3);
+
+	@BeforeClass
+	public static void setUpClass() throws ClassNotFoundException {
+		// Spline registers the factories of its subclasses, initializing a subclass first would register null
+		Class.forName(Spline.class.getName());
+	}
+
+	@After
+	public void tearDown() {
+		BSplineInterpolation.setFastInversion(true, TOLERANCE);
+	}
+
+	private static float valueAt(float t, float a, float b, float c, float d) {
+		float s = 1 - t;
+		return s * s * s * a + 3 * s * s * t * b + 3 * s * t * t * c + t * t * t * d;
+	}
+
+	@Test
+	public void testFindZeroInvertsTheCurve() {
+		float x1 = LEFT.x, x2 = 2.5f, x3 = 9, x4 = RIGHT.x;
+		for (int i = 0; i <= PROBES; i++) {
+			float t = (float) i / PROBES;
+			double found = BSplineInterpolation.findZero(x1, x2, x3, x4, valueAt(t, x1, x2, x3, x4));
+			assertEquals(t, found, 1e-3);
+		}
+	}
+
+	@Test
+	public void testNewtonMatchesFindZero() {
+		// Handles close to the keys in time, so that the inversion is far from linear
+		float[][] handles = { { 2.5f, 6 }, { 9.5f, -4 }, { 5, 1 }, { 2, 10 }, { 10, -1 } };
+		for (float[] handle : handles) {
+			Vector2f leftHandle = new Vector2f(handle[0], handle[1]);
+			Vector2f rightHandle = new Vector2f(handle[0] == 5 ? 7 : 12 - handle[0], -handle[1]);
+			BSplineInterpolation spline = new BSplineInterpolation(LEFT, leftHandle, rightHandle, RIGHT);
+			float maxSlope = 0;
+			for (int i = 0; i < PROBES; i++) {
+				float t = (float) i / PROBES, dt = 1f / PROBES;
+				float dx = valueAt(t + dt, LEFT.x, leftHandle.x, rightHandle.x, RIGHT.x)
+						- valueAt(t, LEFT.x, leftHandle.x, rightHandle.x, RIGHT.x);
+				float dy = valueAt(t + dt, LEFT.y, leftHandle.y, rightHandle.y, RIGHT.y)
+						- valueAt(t, LEFT.y, leftHandle.y, rightHandle.y, RIGHT.y);
+				maxSlope = dx > 0 ? Math.max(maxSlope, Math.abs(dy / dx)) : maxSlope;
+			}
+			for (int i = 0; i <= PROBES; i++) {
+				float frame = LEFT.x + (RIGHT.x - LEFT.x) * i / PROBES;
+				BSplineInterpolation.setFastInversion(false, TOLERANCE);
+				float exact = spline.getValueAt(frame);
+				BSplineInterpolation.setFastInversion(true, TOLERANCE);
+				float fast = spline.getValueAt(frame);
+				// The frame of the parameter found is off by at most the tolerance
+				assertEquals(exact, fast, TOLERANCE * maxSlope * 1.1f + 1e-4f);
+			}
+		}
+	}
+
+	@Test
+	public void testKeysAreExact() {
+		BSplineInterpolation spline = new BSplineInterpolation(
+				LEFT,
+				new Vector2f(3, 5),
+				new Vector2f(8, -5),
+				RIGHT);
+		assertEquals(LEFT.y, spline.getValueAt(LEFT.x), 0);
+		assertEquals(RIGHT.y, spline.getValueAt(RIGHT.x), 0);
+	}
+
+	@Test
+	public void testNonMonotonicCurveUsesFindZero() {
+		// The handles cross, so x is not monotonic in t and the fast inversion is skipped
+		BSplineInterpolation spline = new BSplineInterpolation(
+				LEFT,
+				new Vector2f(12, 0),
+				new Vector2f(0, 2),
+				RIGHT);
+		for (int i = 0; i <= PROBES; i++) {
+			float frame = LEFT.x + (RIGHT.x - LEFT.x) * i / PROBES;
+			BSplineInterpolation.setFastInversion(false, TOLERANCE);
+			float exact = spline.getValueAt(frame);
+			BSplineInterpolation.setFastInversion(true, TOLERANCE);
+			assertEquals(exact, spline.getValueAt(frame), 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testToleranceMustBePositive() {
+		BSplineInterpolation.setFastInversion(true, 0);
+	}
+}
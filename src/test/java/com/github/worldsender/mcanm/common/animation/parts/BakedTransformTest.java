@@ -0,0 +1,172 @@
+package com.github.worldsender.mcanm.common.animation.parts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation.BoneTransformation;
+import com.github.worldsender.mcanm.common.animation.SamplingContext;
+import com.github.worldsender.mcanm.common.animation.TransformComponents;
+import com.github.worldsender.mcanm.common.animation.parts.AnimatedTransform.AnimatedTransformBuilder;
+
+public class BakedTransformTest {
+	private static final int COMPONENTS = TransformComponents.COMPONENTS;
+	private static final float[] TIMES = { 0, 1, 2, 3, 4, 5, 6 };
+	/** The rotation at each key, including ties of the largest component and negative largest components */
+	private static final float[][] ROTATIONS = {
+			{ 0, 0, 0, 1 },
+			{ 0.5f, 0.5f, 0.5f, 0.5f },
+			{ -0.70710677f, 0, 0, 0.70710677f },
+			{ 0.1f, -0.9f, 0.3f, -0.2f },
+			{ 0, 0, 0, -1 },
+			{ 0.3f, 0.3f, -0.6f, 0.3f },
+			{ 0.01f, 0.02f, 0.03f, 0.99f } };
+	/**
+	 * Each of the smallest three is off by at most half a step of 15 bits in [-sqrt(1/2), sqrt(1/2)]. The largest one
+	 * is restored from them and is off by at most their summed errors, when all four are equal
+	 */
+	private static final float ROTATION_ERROR = 3 * 0.5f * 2 * (float) Math.sqrt(0.5) / 0x7FFF * 1.1f;
+	private static final float[][] TRANSLATIONS = {
+			{ 0, 5, -3, 2, 2, 7, 1 },
+			{ 1, 1, 1, 1, 1, 1, 1 },
+			{ 0, 0.5f, 1, 1.5f, -20, 0, 3 } };
+	private static final float[][] SCALES = {
+			{ 1, 1, 2, 1, 0.5f, 1, 1 },
+			{ 1, 1, 1, 1, 1, 1, 1 },
+			{ 1, 1.1f, 0.9f, 1, 1, 1, 3 } };
+
+	private AnimatedTransform source;
+	private final SamplingContext context = new SamplingContext();
+
+	@Before
+	public void setUp() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bytes);
+		for (float[] translation : TRANSLATIONS) {
+			TestChannels.writeChannel(dos, Spline.INTERPOLATION_LINEAR, TIMES, translation);
+		}
+		for (int i = 0; i < 4; i++) {
+			float[] channel = new float[TIMES.length];
+			for (int k = 0; k < TIMES.length; k++) {
+				float[] q = ROTATIONS[k];
+				channel[k] = q[i] / (float) Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+			}
+			TestChannels.writeChannel(dos, Spline.INTERPOLATION_LINEAR, TIMES, channel);
+		}
+		for (float[] scale : SCALES) {
+			TestChannels.writeChannel(dos, Spline.INTERPOLATION_BSPLINE, TIMES, scale);
+		}
+		source = new AnimatedTransformBuilder().fromStream(TestChannels.read(bytes.toByteArray())).buildAndReset();
+	}
+
+	/**
+	 * @return the largest difference of the components of two rotations, q and -q being the same
+	 */
+	private static float rotationError(float[] a, float[] b) {
+		float same = 0, negated = 0;
+		for (int i = TransformComponents.ROTATION; i < TransformComponents.SCALE; i++) {
+			same = Math.max(same, Math.abs(a[i] - b[i]));
+			negated = Math.max(negated, Math.abs(a[i] + b[i]));
+		}
+		return Math.min(same, negated);
+	}
+
+	@Test
+	public void testFloatSamplesMatchSource() {
+		BakedTransform baked = BakedTransform.bake(source, 4, false);
+		assertEquals(TIMES.length * 4 - 3, baked.getSampleCount());
+		float[] expected = new float[COMPONENTS], actual = new float[COMPONENTS];
+		for (int i = 0; i < baked.getSampleCount(); i++) {
+			float frame = i / 4f;
+			source.storeComponentsAt(frame, expected, 0);
+			baked.storeComponentsAt(frame, actual, 0, context);
+			for (int c = 0; c < COMPONENTS; c++) {
+				assertEquals(expected[c], actual[c], 1e-6f);
+			}
+		}
+	}
+
+	@Test
+	public void testQuantizationError() {
+		BakedTransform baked = BakedTransform.bake(source, 4, true);
+		float[] expected = new float[COMPONENTS], actual = new float[COMPONENTS];
+		float[] min = new float[COMPONENTS], max = new float[COMPONENTS];
+		for (int i = 0; i < baked.getSampleCount(); i++) {
+			source.storeComponentsAt(i / 4f, expected, 0);
+			for (int c = 0; c < COMPONENTS; c++) {
+				min[c] = i == 0 ? expected[c] : Math.min(min[c], expected[c]);
+				max[c] = i == 0 ? expected[c] : Math.max(max[c], expected[c]);
+			}
+		}
+		for (int i = 0; i < baked.getSampleCount(); i++) {
+			float frame = i / 4f;
+			source.storeComponentsAt(frame, expected, 0);
+			baked.storeComponentsAt(frame, actual, 0, context);
+			for (int c : new int[] { 0, 1, 2, 7, 8, 9 }) {
+				// Half a step of the 16 bit range of the component
+				float step = (max[c] - min[c]) / 0xFFFF;
+				assertEquals(expected[c], actual[c], step / 2 + 1e-5f * Math.abs(expected[c]));
+			}
+			assertTrue(rotationError(expected, actual) < ROTATION_ERROR);
+		}
+	}
+
+	@Test
+	public void testKeyRotationsRoundTrip() {
+		BakedTransform baked = BakedTransform.bake(source, 1, true);
+		float[] expected = new float[COMPONENTS], actual = new float[COMPONENTS];
+		for (float time : TIMES) {
+			source.storeComponentsAt(time, expected, 0);
+			baked.storeComponentsAt(time, actual, 0, context);
+			assertTrue(rotationError(expected, actual) < ROTATION_ERROR);
+			float length = 0;
+			for (int i = TransformComponents.ROTATION; i < TransformComponents.SCALE; i++) {
+				length += actual[i] * actual[i];
+			}
+			assertEquals(1, length, 1e-5f);
+		}
+	}
+
+	@Test
+	public void testWithoutContextMatchesContext() {
+		BakedTransform baked = BakedTransform.bake(source, 4, true);
+		BoneTransformation expected = new BoneTransformation(), actual = new BoneTransformation();
+		for (int i = -4; i < baked.getSampleCount() + 4; i++) {
+			float frame = i / 4f + 0.1f;
+			baked.storeTransformAt(frame, expected, context);
+			baked.storeTransformAt(frame, actual);
+			assertTrue(expected.matrix.epsilonEquals(actual.matrix, 0));
+		}
+	}
+
+	@Test
+	public void testQuantizedIsSmaller() {
+		BakedTransform floats = BakedTransform.bake(source, 4, false);
+		BakedTransform quantized = BakedTransform.bake(source, 4, true);
+		assertTrue(quantized.getSizeInBytes() * 2 < floats.getSizeInBytes());
+	}
+
+	@Test
+	public void testOutsideOfTheKeys() {
+		BakedTransform baked = BakedTransform.bake(source, 4, true);
+		// The channels ease in and out constantly, so the source is not needed outside of the keys
+		assertNull(baked.getSource());
+		float[] first = new float[COMPONENTS], before = new float[COMPONENTS];
+		float[] last = new float[COMPONENTS], after = new float[COMPONENTS];
+		baked.storeComponentsAt(TIMES[0], first, 0, context);
+		baked.storeComponentsAt(TIMES[0] - 10, before, 0, context);
+		baked.storeComponentsAt(TIMES[TIMES.length - 1], last, 0, context);
+		baked.storeComponentsAt(TIMES[TIMES.length - 1] + 10, after, 0, context);
+		for (int c = 0; c < COMPONENTS; c++) {
+			assertEquals(first[c], before[c], 0);
+			assertEquals(last[c], after[c], 0);
+		}
+	}
+}
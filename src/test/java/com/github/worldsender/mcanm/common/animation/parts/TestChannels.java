@@ -0,0 +1,71 @@
+package com.github.worldsender.mcanm.common.animation.parts;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.github.worldsender.mcanm.common.animation.parts.AnimatedValue.AnimatedValueBuilder;
+
+/**
+ * Writes animation channels in the format of the stored animations, for the tests of the animation parts.
+ */
+final class TestChannels {
+	private TestChannels() {}
+
+	/**
+	 * Writes a channel through the keys given, that eases in and out constantly.
+	 *
+	 * @param dos
+	 *            the stream to write to
+	 * @param interpolation
+	 *            the interpolation between the keys, bezier curves get handles at a quarter of the way to the
+	 *            neighbouring keys with the value of the key, so that they ease in and out of each key
+	 * @param times
+	 *            the sorted times of the keys
+	 * @param values
+	 *            the values of the keys
+	 */
+	public static void writeChannel(DataOutputStream dos, byte interpolation, float[] times, float[] values)
+			throws IOException {
+		dos.writeShort(times.length);
+		for (int i = 0; i < times.length; i++) {
+			dos.writeFloat(times[i]);
+			dos.writeFloat(values[i]);
+			if (i == 0) {
+				dos.writeByte(Spline.EASE_IN_CONST);
+				continue;
+			}
+			dos.writeByte(interpolation);
+			if (interpolation == Spline.INTERPOLATION_BSPLINE) {
+				float quarter = (times[i] - times[i - 1]) / 4;
+				dos.writeFloat(times[i - 1] + quarter);
+				dos.writeFloat(values[i - 1]);
+				dos.writeFloat(times[i] - quarter);
+				dos.writeFloat(values[i]);
+			}
+		}
+		if (times.length > 0) {
+			dos.writeByte(Spline.EASE_OUT_CONST);
+		}
+	}
+
+	/**
+	 * @return the bytes of a channel written by {@link #writeChannel(DataOutputStream, byte, float[], float[])}
+	 */
+	public static byte[] channel(byte interpolation, float[] times, float[] values) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writeChannel(new DataOutputStream(bytes), interpolation, times, values);
+		return bytes.toByteArray();
+	}
+
+	public static DataInputStream read(byte[] bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
+	public static AnimatedValue value(byte interpolation, float[] times, float[] values) throws IOException {
+		return new AnimatedValueBuilder().setDefaultValue(0).fromStream(read(channel(interpolation, times, values)))
+				.buildAndReset();
+	}
+}
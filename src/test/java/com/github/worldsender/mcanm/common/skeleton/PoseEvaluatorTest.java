@@ -0,0 +1,154 @@
+package com.github.worldsender.mcanm.common.skeleton;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import javax.vecmath.Quat4f;
+import javax.vecmath.Vector3f;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.worldsender.mcanm.common.animation.IAnimation;
+import com.github.worldsender.mcanm.common.resource.IResource;
+import com.github.worldsender.mcanm.common.resource.IResourceLocation;
+import com.github.worldsender.mcanm.common.skeleton.visitor.IBoneVisitor;
+import com.github.worldsender.mcanm.common.skeleton.visitor.ISkeletonVisitable;
+import com.github.worldsender.mcanm.common.util.Matrix3x4f;
+
+public class PoseEvaluatorTest {
+	private static final int BONE_COUNT = 20;
+	private static final float EPSILON = 1e-4f;
+	private static final float[] FRAMES = { 0, 1, 2.5f, 7.25f };
+
+	/**
+	 * Visits the skeleton right away, the visitable is passed to the skeleton directly and no resource is opened.
+	 */
+	private static final IResourceLocation LOCATION = new IResourceLocation() {
+		@Override
+		public IResource open() throws IOException {
+			return null;
+		}
+
+		@Override
+		public void registerReloadListener(Consumer<IResourceLocation> reloadListener) {
+			reloadListener.accept(this);
+		}
+
+		@Override
+		public String getResourceName() {
+			return "<test skeleton>";
+		}
+
+		@Override
+		public boolean shouldCache() {
+			return false;
+		}
+	};
+
+	/**
+	 * Rotates, translates and scales each bone depending on the frame, but leaves every third bone static.
+	 */
+	private static final IAnimation ANIMATION = (bone, frame, transform) -> {
+		int index = Integer.parseInt(bone.substring(1));
+		if (index % 3 == 0) {
+			return false;
+		}
+		Quat4f rotation = new Quat4f((float) Math.sin(frame + index), 0.3f, (float) Math.cos(frame * index), 1);
+		rotation.normalize();
+		transform.matrix.set(rotation, new Vector3f(frame, index * 0.1f, -frame), 1 + 0.01f * frame);
+		return true;
+	};
+
+	private AbstractSkeleton skeleton;
+
+	/**
+	 * Creates a random tree of bones. The bones are stored in a random order, so that children may come before their
+	 * parents.
+	 */
+	@Before
+	public void createSkeleton() {
+		Random random = new Random(42);
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < BONE_COUNT; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, random);
+		// Bone i in the tree is stored at index order.get(i), its parent comes before it in the tree
+		byte[] parents = new byte[BONE_COUNT];
+		Quat4f[] rotations = new Quat4f[BONE_COUNT];
+		Vector3f[] offsets = new Vector3f[BONE_COUNT];
+		for (int i = 0; i < BONE_COUNT; i++) {
+			int index = order.get(i);
+			parents[index] = i == 0 ? -1 : (byte) (int) order.get(random.nextInt(i));
+			Quat4f rotation = new Quat4f(
+					random.nextFloat(),
+					random.nextFloat(),
+					random.nextFloat(),
+					random.nextFloat());
+			rotation.normalize();
+			rotations[index] = rotation;
+			offsets[index] = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+		}
+		ISkeletonVisitable visitable = visitor -> {
+			for (int i = 0; i < BONE_COUNT; i++) {
+				IBoneVisitor boneVisitor = visitor.visitBone("b" + i);
+				if (parents[i] != -1) {
+					boneVisitor.visitParent(parents[i]);
+				}
+				boneVisitor.visitLocalRotation(rotations[i]);
+				boneVisitor.visitLocalOffset(offsets[i]);
+				boneVisitor.visitEnd();
+			}
+			visitor.visitEnd();
+		};
+		skeleton = new AbstractSkeleton(LOCATION, resource -> visitable) {};
+	}
+
+	private void assertPoseEqualsSkeleton(Pose pose) {
+		Matrix3x4f expected = new Matrix3x4f(), actual = new Matrix3x4f();
+		float[] expectedValues = new float[12], actualValues = new float[12];
+		for (int bone = 0; bone < BONE_COUNT; bone++) {
+			skeleton.getBoneByIndex(bone).getTransformGlobal(expected);
+			pose.getTransformGlobal(bone, actual);
+			expected.get(expectedValues, 0);
+			actual.get(actualValues, 0);
+			for (int i = 0; i < 12; i++) {
+				assertEquals("bone " + bone, expectedValues[i], actualValues[i], EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void testEvaluateMatchesSetup() {
+		PoseEvaluator evaluator = skeleton.createPoseEvaluator();
+		Pose pose = evaluator.createPose();
+		for (float frame : FRAMES) {
+			skeleton.setup(ANIMATION, frame);
+			evaluator.evaluate(ANIMATION, frame, pose);
+			assertPoseEqualsSkeleton(pose);
+			evaluator.evaluateBound(evaluator.bind(ANIMATION), frame, pose);
+			assertPoseEqualsSkeleton(pose);
+		}
+	}
+
+	@Test
+	public void testEvaluateQueuedMatchesSetup() {
+		PoseEvaluator evaluator = skeleton.createPoseEvaluator();
+		Pose[] poses = new Pose[FRAMES.length];
+		for (int i = 0; i < FRAMES.length; i++) {
+			evaluator.enqueue(ANIMATION, FRAMES[i], poses[i] = evaluator.createPose());
+		}
+		evaluator.evaluateQueued();
+		for (int i = 0; i < FRAMES.length; i++) {
+			skeleton.setup(ANIMATION, FRAMES[i]);
+			assertPoseEqualsSkeleton(poses[i]);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.github.worldsender.mcanm.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import javax.vecmath.AxisAngle4f;
+import javax.vecmath.Matrix3f;
+import javax.vecmath.Matrix4f;
+import javax.vecmath.SingularMatrixException;
+import javax.vecmath.Vector3f;
+
+import org.junit.Test;
+
+public class Matrix3x4fTest {
+	private static final float EPSILON = 1e-4f;
+
+	private final Random random = new Random(42);
+
+	private float randomFloat(float min, float max) {
+		return min + random.nextFloat() * (max - min);
+	}
+
+	/**
+	 * @return a random rotation, followed by a non-uniform scale and a translation
+	 */
+	private Matrix4f randomTransform() {
+		Vector3f axis = new Vector3f(randomFloat(-1, 1), randomFloat(-1, 1), randomFloat(-1, 1));
+		axis.normalize();
+		Matrix3f rotationScale = new Matrix3f();
+		rotationScale.set(new AxisAngle4f(axis, randomFloat(0, (float) (2 * Math.PI))));
+		Matrix3f scale = new Matrix3f();
+		scale.m00 = randomFloat(0.2f, 3);
+		scale.m11 = randomFloat(0.2f, 3);
+		scale.m22 = randomFloat(0.2f, 3);
+		rotationScale.mul(scale);
+		Vector3f translation = new Vector3f(randomFloat(-5, 5), randomFloat(-5, 5), randomFloat(-5, 5));
+		return new Matrix4f(rotationScale, translation, 1);
+	}
+
+	/**
+	 * @return a random affine matrix, well conditioned because of its dominant diagonal
+	 */
+	private Matrix4f randomAffine() {
+		Matrix4f m = new Matrix4f();
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 4; column++) {
+				m.setElement(row, column, randomFloat(-1, 1));
+			}
+			m.setElement(row, row, m.getElement(row, row) + (random.nextBoolean() ? 4 : -4));
+		}
+		m.m33 = 1;
+		return m;
+	}
+
+	private static void assertMatrixEquals(Matrix4f expected, Matrix3x4f actual) {
+		Matrix4f actual4 = new Matrix4f();
+		actual.get(actual4);
+		for (int row = 0; row < 4; row++) {
+			for (int column = 0; column < 4; column++) {
+				assertEquals(expected.getElement(row, column), actual4.getElement(row, column), EPSILON);
+			}
+		}
+	}
+
+	private void checkInvert(Matrix4f m) {
+		Matrix4f expected = new Matrix4f(m);
+		expected.invert();
+
+		Matrix3x4f inverse = new Matrix3x4f();
+		inverse.invert(new Matrix3x4f(m));
+		assertMatrixEquals(expected, inverse);
+
+		Matrix3x4f inPlace = new Matrix3x4f(m);
+		inPlace.invert();
+		assertMatrixEquals(expected, inPlace);
+	}
+
+	private void checkInverseTranspose(Matrix4f m) {
+		Matrix4f expected = new Matrix4f(m);
+		expected.invert();
+		expected.transpose();
+		// Normals are not translated
+		expected.m03 = expected.m13 = expected.m23 = 0;
+		expected.m30 = expected.m31 = expected.m32 = 0;
+
+		Matrix3x4f normalMatrix = new Matrix3x4f();
+		normalMatrix.setInverseTranspose(new Matrix3x4f(m));
+		assertMatrixEquals(expected, normalMatrix);
+
+		Matrix3x4f inPlace = new Matrix3x4f(m);
+		inPlace.setInverseTranspose(inPlace);
+		assertMatrixEquals(expected, inPlace);
+	}
+
+	@Test
+	public void testInvertIdentity() {
+		Matrix4f identity = new Matrix4f();
+		identity.setIdentity();
+		checkInvert(identity);
+		checkInverseTranspose(identity);
+	}
+
+	@Test
+	public void testInvertNonUniformScale() {
+		Matrix4f m = new Matrix4f();
+		m.setIdentity();
+		m.m00 = 2;
+		m.m11 = 0.5f;
+		m.m22 = 4;
+		m.m03 = 1;
+		m.m13 = -3;
+		m.m23 = 2;
+		checkInvert(m);
+		checkInverseTranspose(m);
+		for (int i = 0; i < 100; i++) {
+			Matrix4f transform = randomTransform();
+			checkInvert(transform);
+			checkInverseTranspose(transform);
+		}
+	}
+
+	@Test
+	public void testInvertRandom() {
+		for (int i = 0; i < 100; i++) {
+			Matrix4f m = randomAffine();
+			checkInvert(m);
+			checkInverseTranspose(m);
+		}
+	}
+
+	@Test
+	public void testInverseTimesMatrixIsIdentity() {
+		Matrix4f identity = new Matrix4f();
+		identity.setIdentity();
+		for (int i = 0; i < 100; i++) {
+			Matrix3x4f m = new Matrix3x4f(randomAffine());
+			Matrix3x4f product = new Matrix3x4f(m);
+			product.invert();
+			product.mul(m);
+			assertMatrixEquals(identity, product);
+		}
+	}
+
+	@Test
+	public void testSingular() {
+		Matrix4f singular = new Matrix4f();
+		singular.setIdentity();
+		// Third column is the sum of the first two
+		singular.m00 = 1;
+		singular.m01 = 2;
+		singular.m02 = 3;
+		singular.m10 = 4;
+		singular.m11 = 5;
+		singular.m12 = 9;
+		singular.m20 = 7;
+		singular.m21 = 8;
+		singular.m22 = 15;
+		singular.m03 = 1;
+		Matrix3x4f m = new Matrix3x4f(singular);
+		Matrix3x4f unchanged = new Matrix3x4f(m);
+		try {
+			m.invert();
+			fail("singular matrix was inverted");
+		} catch (SingularMatrixException expected) {}
+		assertTrue("failed inversion changed the matrix", unchanged.equals(m));
+
+		Matrix3x4f normalMatrix = new Matrix3x4f();
+		try {
+			normalMatrix.setInverseTranspose(m);
+			fail("singular matrix was inverted");
+		} catch (SingularMatrixException expected) {}
+		Matrix3x4f identity = new Matrix3x4f();
+		assertTrue("failed inversion changed the matrix", identity.equals(normalMatrix));
+
+		Matrix3x4f zero = new Matrix3x4f();
+		zero.m00 = zero.m11 = zero.m22 = 0;
+		try {
+			zero.invert();
+			fail("zero matrix was inverted");
+		} catch (SingularMatrixException expected) {}
+	}
+}